@@ -13,14 +13,11 @@ public class AndroidLauncher extends AndroidApplication {
         super.onCreate(savedInstanceState);
         AndroidApplicationConfiguration configuration = new AndroidApplicationConfiguration();
         configuration.useImmersiveMode = true; // Recommended, but not required.
-        initialize(new FightofRngRage(), configuration);
+        // Pausing no longer exits the app: GameScreen saves the match on pause and
+        // picks it up again on resume (or on the next launch if the process was killed).
+        FightofRngRage game = new FightofRngRage();
+        // Give the simulation its own core when the device has more than one
+        game.threadedSimulation = Runtime.getRuntime().availableProcessors() > 1;
+        initialize(game, configuration);
     }
-
-    @Override
-    protected void onPause() {
-        super.onPause();
-        // Exit the app when switching away
-        finish();
-        System.exit(0);
-    }
-}
\ No newline at end of file
+}
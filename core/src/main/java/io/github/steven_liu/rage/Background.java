@@ -1,168 +1,334 @@
 package io.github.steven_liu.rage;
 
 import com.badlogic.gdx.graphics.Color;
-import com.badlogic.gdx.graphics.glutils.ShapeRenderer;
 import com.badlogic.gdx.math.MathUtils;
+import com.badlogic.gdx.math.RandomXS128;
+
+import java.util.Locale;
 
 /**
- * Draws one of three randomly chosen backgrounds for the fight arena.
+ * Builds the background for the fight arena, a slice at a time so stages can be many
+ * screens wide. There are three kinds of stage:
  * 0 = Green hills, 1 = Desert flatland, 2 = Valley dip
+ * <p>
+ * A stage comes from a seed: the seed picks the kind and varies its colours, sizes,
+ * spacing and scattered details, so every seed gives a different stage and the same
+ * seed always gives the same one.
+ * <p>
+ * Each slice is recorded into a {@link ShapeChunk}; {@link StageRenderer} decides which
+ * slices exist and draws them. Scattered details (cacti, mountains) are placed from a
+ * hash of the seed and slice index, so a slice that is released and rebuilt looks the
+ * same.
  */
 public class Background {
 
     public enum Type { HILLS, DESERT, VALLEY }
 
+    /** Width of one slice in world units. */
+    public static final float CHUNK_WIDTH = 400f;
+    /** How far a slice's shapes can reach past its edges; used to widen culling. */
+    public static final float MAX_OVERHANG = 260f;
+
+    private static final Type[] TYPES = Type.values();
+
     private final Type type;
+    private final long seed;
+    private final boolean seeded;
     private final float worldWidth;
     private final float worldHeight;
 
+    // ── Variation; the unseeded constructor keeps the original look ──────
+    private final Color sky = new Color(), far = new Color(), near = new Color(), ground = new Color();
+    private float farRadius = 60f, farSpacing = 160f;      // hills: distant row
+    private float nearRadius = 90f, nearSpacing = 200f;    // hills: near row; desert: dunes use the near pair
+    private int maxDetails = 2;                            // cacti / mountains per slice
+    private float detailScale = 1f;                        // cactus and mountain size
+    private float tuftSpacing = 65f;                       // valley grass
+    private float sunX = 0.6f;                             // desert sun, fraction of the stage
+
     public Background(float worldWidth, float worldHeight) {
+        this(worldWidth, worldHeight, randomType());
+    }
+
+    /** Use a specific background in its original look, e.g. for the single-screen arena. */
+    public Background(float worldWidth, float worldHeight, Type type) {
         this.worldWidth = worldWidth;
         this.worldHeight = worldHeight;
+        this.type = type;
+        this.seed = 0;
+        this.seeded = false;
+        baseColors();
+    }
+
+    /** A stage generated from {@code seed}; the kind is {@link #typeForSeed(long)}. */
+    public Background(float worldWidth, float worldHeight, long seed) {
+        this.worldWidth = worldWidth;
+        this.worldHeight = worldHeight;
+        this.type = typeForSeed(seed);
+        this.seed = seed;
+        this.seeded = true;
+        baseColors();
+
+        RandomXS128 random = new RandomXS128(seed);
+        tint(sky, random, 0.06f);
+        tint(far, random, 0.12f);
+        tint(near, random, 0.12f);
+        tint(ground, random, 0.08f);
+        farRadius = 45f + 30f * random.nextFloat();
+        farSpacing = farRadius * (2.2f + random.nextFloat());
+        nearRadius = type == Type.DESERT ? 40f + 20f * random.nextFloat() : 70f + 40f * random.nextFloat();
+        nearSpacing = nearRadius * (2f + random.nextFloat());
+        maxDetails = 1 + random.nextInt(3);
+        detailScale = 0.75f + 0.5f * random.nextFloat();
+        tuftSpacing = 50f + 30f * random.nextFloat();
+        sunX = 0.2f + 0.6f * random.nextFloat();
+    }
+
+    /** The kind of stage a seed generates. */
+    public static Type typeForSeed(long seed) {
+        // SplitMix64 finalizer, so neighbouring seeds don't get the same stage
+        long z = seed + 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        z ^= z >>> 31;
+        return TYPES[(int) Long.remainderUnsigned(z, TYPES.length)];
+    }
 
-        // Randomly pick one of the three backgrounds
+    /** A fresh seed for a new stage. */
+    public static long randomSeed() {
+        return MathUtils.random.nextLong();
+    }
+
+    /** Randomly pick one of the three backgrounds. */
+    public static Type randomType() {
         int roll = MathUtils.random(2);
         switch (roll) {
-            case 0:  type = Type.HILLS;  break;
-            case 1:  type = Type.DESERT; break;
-            default: type = Type.VALLEY; break;
+            case 0:  return Type.HILLS;
+            case 1:  return Type.DESERT;
+            default: return Type.VALLEY;
+        }
+    }
+
+    public int chunkCount() {
+        return MathUtils.ceil(worldWidth / CHUNK_WIDTH);
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    /** Identifies what this background looks like; equal keys build identical slices. */
+    public String cacheKey() {
+        String look = seeded ? Long.toHexString(seed) : type.name().toLowerCase(Locale.ROOT);
+        return look + "-" + (int) worldWidth + "x" + (int) worldHeight;
+    }
+
+    public float getWorldWidth() {
+        return worldWidth;
+    }
+
+    public float getWorldHeight() {
+        return worldHeight;
+    }
+
+    /** Colour above the top of the world, shown when the camera zooms out. */
+    public void skyColor(Color out) {
+        out.set(sky);
+    }
+
+    /** The original palette: sky, distant layer, near layer, ground. */
+    private void baseColors() {
+        switch (type) {
+            case HILLS:
+                sky.set(0.53f, 0.81f, 0.98f, 1f);
+                far.set(0.2f, 0.55f, 0.2f, 1f);
+                near.set(0.3f, 0.75f, 0.3f, 1f);
+                ground.set(0.35f, 0.8f, 0.35f, 1f);
+                break;
+            case DESERT:
+                sky.set(0.55f, 0.78f, 0.93f, 1f);
+                far.set(0.95f, 0.85f, 0.65f, 1f);   // horizon haze
+                near.set(0.80f, 0.68f, 0.45f, 1f);  // dunes
+                ground.set(0.87f, 0.76f, 0.54f, 1f);
+                break;
+            case VALLEY:
+                sky.set(0.6f, 0.78f, 0.95f, 1f);
+                far.set(0.55f, 0.5f, 0.65f, 1f);    // mountains
+                near.set(0.35f, 0.65f, 0.3f, 1f);   // slopes
+                ground.set(0.3f, 0.6f, 0.25f, 1f);
+                break;
         }
     }
 
-    /** Draw the background. Call inside shapeRenderer.begin(Filled) ... end(). */
-    public void draw(ShapeRenderer sr) {
+    /** Shift a colour's brightness and warmth a little. */
+    private static void tint(Color c, RandomXS128 random, float amount) {
+        float light = 1f + (random.nextFloat() * 2f - 1f) * amount;
+        float warm = (random.nextFloat() * 2f - 1f) * amount * 0.5f;
+        c.set(c.r * light + warm, c.g * light, c.b * light - warm, 1f).clamp();
+    }
+
+    /** Record slice {@code index} of the background into {@code chunk}. */
+    public void build(int index, ShapeChunk chunk) {
+        chunk.clear();
+        chunk.index = index;
+        chunk.x0 = index * CHUNK_WIDTH;
+        chunk.x1 = Math.min(worldWidth, chunk.x0 + CHUNK_WIDTH);
         switch (type) {
-            case HILLS:  drawHills(sr);  break;
-            case DESERT: drawDesert(sr); break;
-            case VALLEY: drawValley(sr); break;
+            case HILLS:  buildHills(chunk);  break;
+            case DESERT: buildDesert(chunk); break;
+            case VALLEY: buildValley(chunk); break;
         }
     }
 
     // ── Green Hills ──────────────────────────────────────────────────────
 
-    private void drawHills(ShapeRenderer sr) {
+    private void buildHills(ShapeChunk c) {
+        float w = c.x1 - c.x0;
+
         // Sky — light blue
-        sr.setColor(0.53f, 0.81f, 0.98f, 1f);
-        sr.rect(0, 0, worldWidth, worldHeight);
+        c.layer(0);
+        c.color(sky);
+        c.rect(c.x0, 0, w, worldHeight);
 
         // Distant hills — darker green, smaller bumps in the back
-        Color farHill = new Color(0.2f, 0.55f, 0.2f, 1f);
-        sr.setColor(farHill);
-        drawHillRow(sr, worldHeight * 0.45f, 60f, 5);
+        c.layer(1);
+        c.color(far);
+        buildHillRow(c, worldHeight * 0.45f, farRadius, farSpacing);
 
         // Near hills — bright green, larger bumps in front
-        Color nearHill = new Color(0.3f, 0.75f, 0.3f, 1f);
-        sr.setColor(nearHill);
-        drawHillRow(sr, worldHeight * 0.30f, 90f, 4);
+        c.layer(2);
+        c.color(near);
+        buildHillRow(c, worldHeight * 0.30f, nearRadius, nearSpacing);
 
         // Ground — flat green grass
-        sr.setColor(0.35f, 0.8f, 0.35f, 1f);
-        sr.rect(0, 0, worldWidth, worldHeight * 0.25f);
+        c.layer(3);
+        c.color(ground);
+        c.rect(c.x0, 0, w, worldHeight * 0.25f);
     }
 
-    /** Draws a row of half-circle hills across the screen. */
-    private void drawHillRow(ShapeRenderer sr, float baseY, float hillRadius, int count) {
-        float spacing = worldWidth / count;
-        for (int i = 0; i <= count; i++) {
-            float cx = i * spacing;
+    /** A row of half-circle hills every {@code spacing} units along the whole stage. */
+    private void buildHillRow(ShapeChunk c, float baseY, float hillRadius, float spacing) {
+        for (float cx = firstMultiple(c.x0, spacing, 0); cx < c.x1 || (c.x1 == worldWidth && cx <= c.x1); cx += spacing) {
             // Draw a half-circle by using a full circle placed at baseY
-            sr.circle(cx, baseY, hillRadius, 48);
+            c.circle(cx, baseY, hillRadius, 48);
         }
         // Fill the gap below the hills to the bottom
-        sr.rect(0, 0, worldWidth, baseY);
+        c.rect(c.x0, 0, c.x1 - c.x0, baseY);
     }
 
     // ── Desert Flatland ──────────────────────────────────────────────────
 
-    private void drawDesert(ShapeRenderer sr) {
+    private void buildDesert(ShapeChunk c) {
+        float w = c.x1 - c.x0;
+
+        c.layer(0);
         // Sky — warm gradient from pale orange-yellow at horizon to light blue at top
-        sr.setColor(0.55f, 0.78f, 0.93f, 1f);
-        sr.rect(0, worldHeight * 0.5f, worldWidth, worldHeight * 0.5f);
+        c.color(sky);
+        c.rect(c.x0, worldHeight * 0.5f, w, worldHeight * 0.5f);
 
         // Horizon haze — warm orange tint
-        sr.setColor(0.95f, 0.85f, 0.65f, 1f);
-        sr.rect(0, worldHeight * 0.30f, worldWidth, worldHeight * 0.25f);
+        c.color(far);
+        c.rect(c.x0, worldHeight * 0.30f, w, worldHeight * 0.25f);
 
         // Sand ground — flat tan
-        sr.setColor(0.87f, 0.76f, 0.54f, 1f);
-        sr.rect(0, 0, worldWidth, worldHeight * 0.30f);
+        c.color(ground);
+        c.rect(c.x0, 0, w, worldHeight * 0.30f);
 
         // Distant sand dunes — slightly darker tan bumps
-        sr.setColor(0.80f, 0.68f, 0.45f, 1f);
+        c.layer(1);
+        c.color(near);
         float duneBase = worldHeight * 0.28f;
-        float duneRadius = 50f;
-        for (int i = 0; i < 6; i++) {
-            float cx = i * (worldWidth / 5f) + 40f;
-            sr.circle(cx, duneBase, duneRadius, 48);
+        for (float cx = firstMultiple(c.x0, nearSpacing, 40f); cx < c.x1; cx += nearSpacing) {
+            c.circle(cx, duneBase, nearRadius, 48);
         }
-        // Fill below dunes
-        sr.setColor(0.87f, 0.76f, 0.54f, 1f);
-        sr.rect(0, 0, worldWidth, duneBase);
 
-        // Sun — bright yellow circle in the sky
-        sr.setColor(1f, 0.95f, 0.4f, 1f);
-        sr.circle(worldWidth * 0.75f, worldHeight * 0.80f, 35f, 48);
+        // Fill below dunes
+        c.layer(2);
+        c.color(ground);
+        c.rect(c.x0, 0, w, duneBase);
+
+        // Sun — one bright yellow circle somewhere over the stage
+        float sun = worldWidth * sunX;
+        if (sun >= c.x0 && sun < c.x1) {
+            c.color(1f, 0.95f, 0.4f);
+            c.circle(sun, worldHeight * 0.80f, 35f, 48);
+        }
 
-        // Cactus silhouettes — simple dark green rectangles
-        sr.setColor(0.2f, 0.45f, 0.15f, 1f);
-        drawCactus(sr, worldWidth * 0.15f, worldHeight * 0.30f, 8f, 50f);
-        drawCactus(sr, worldWidth * 0.65f, worldHeight * 0.30f, 6f, 40f);
-        drawCactus(sr, worldWidth * 0.85f, worldHeight * 0.30f, 7f, 45f);
+        // Cactus silhouettes — a few per slice, simple dark green rectangles
+        c.layer(3);
+        c.color(0.2f, 0.45f, 0.15f);
+        int cacti = 1 + (int) (hash(c.index, 0) * maxDetails);
+        for (int i = 0; i < cacti; i++) {
+            float x = c.x0 + 20f + hash(c.index, 1 + i) * (c.x1 - c.x0 - 40f);
+            float size = hash(c.index, 4 + i) * detailScale;
+            buildCactus(c, x, worldHeight * 0.30f, 6f + 2f * size, 40f + 10f * size);
+        }
     }
 
     /** Simple cactus: a vertical trunk with two small arms. */
-    private void drawCactus(ShapeRenderer sr, float x, float groundY, float w, float h) {
+    private void buildCactus(ShapeChunk c, float x, float groundY, float w, float h) {
         // Trunk
-        sr.rect(x - w / 2, groundY, w, h);
+        c.rect(x - w / 2, groundY, w, h);
         // Left arm
-        sr.rect(x - w / 2 - w, groundY + h * 0.5f, w, w);
-        sr.rect(x - w / 2 - w, groundY + h * 0.5f, w, h * 0.25f);
+        c.rect(x - w / 2 - w, groundY + h * 0.5f, w, w);
+        c.rect(x - w / 2 - w, groundY + h * 0.5f, w, h * 0.25f);
         // Right arm
-        sr.rect(x + w / 2, groundY + h * 0.35f, w, w);
-        sr.rect(x + w / 2, groundY + h * 0.35f, w, h * 0.3f);
+        c.rect(x + w / 2, groundY + h * 0.35f, w, w);
+        c.rect(x + w / 2, groundY + h * 0.35f, w, h * 0.3f);
     }
 
     // ── Valley Dip ───────────────────────────────────────────────────────
 
-    private void drawValley(ShapeRenderer sr) {
-        // Sky — soft blue
-        sr.setColor(0.6f, 0.78f, 0.95f, 1f);
-        sr.rect(0, 0, worldWidth, worldHeight);
+    private void buildValley(ShapeChunk c) {
+        float w = c.x1 - c.x0;
 
-        // Distant mountains — grayish purple
-        sr.setColor(0.55f, 0.5f, 0.65f, 1f);
-        drawMountain(sr, worldWidth * 0.1f, worldHeight * 0.55f, 200f, 180f);
-        drawMountain(sr, worldWidth * 0.5f, worldHeight * 0.55f, 250f, 200f);
-        drawMountain(sr, worldWidth * 0.85f, worldHeight * 0.55f, 180f, 160f);
+        // Sky — soft blue
+        c.layer(0);
+        c.color(sky);
+        c.rect(c.x0, 0, w, worldHeight);
+
+        // Distant mountains — grayish purple, a few peaks per slice
+        c.layer(1);
+        c.color(far);
+        float baseY = worldHeight * 0.55f;
+        for (int i = 0; i < maxDetails; i++) {
+            float cx = c.x0 + (i + hash(c.index, i)) * (w / maxDetails);
+            float halfWidth = Math.min(250f, (150f + 70f * hash(c.index, 3 + i)) * detailScale);
+            buildMountain(c, cx, baseY, halfWidth, halfWidth * (0.7f + 0.3f * hash(c.index, 6 + i)));
+        }
 
         // Fill below mountain base — must reach up to the triangle base line
-        sr.setColor(0.55f, 0.5f, 0.65f, 1f);
-        sr.rect(0, 0, worldWidth, worldHeight * 0.55f);
-
-        // Valley walls — green slopes on both sides, dipping in the middle
-        sr.setColor(0.35f, 0.65f, 0.3f, 1f);
-
-        // Left slope: rises from center-left to the left edge
-        drawSlope(sr, 0, worldHeight * 0.50f, worldWidth * 0.3f, worldHeight * 0.20f);
-
-        // Right slope: rises from center-right to the right edge
-        drawSlope(sr, worldWidth * 0.7f, worldHeight * 0.20f, worldWidth, worldHeight * 0.50f);
+        c.rect(c.x0, 0, w, baseY);
+
+        // Valley walls — green slopes rising at both ends of the stage
+        c.layer(2);
+        c.color(near);
+        float slope = 240f;
+        if (c.x0 < slope) {
+            // Left slope: rises from the valley floor to the left edge
+            buildSlope(c, 0, worldHeight * 0.50f, slope, worldHeight * 0.20f);
+        }
+        if (c.x1 > worldWidth - slope) {
+            // Right slope: rises from the valley floor to the right edge
+            buildSlope(c, worldWidth - slope, worldHeight * 0.20f, worldWidth, worldHeight * 0.50f);
+        }
 
-        // Valley floor — darker green flat area in the middle
-        sr.setColor(0.3f, 0.6f, 0.25f, 1f);
-        sr.rect(0, 0, worldWidth, worldHeight * 0.20f);
+        // Valley floor — darker green flat area
+        c.layer(3);
+        c.color(ground);
+        c.rect(c.x0, 0, w, worldHeight * 0.20f);
 
-        // Grass tufts — small green circles along the valley floor
-        sr.setColor(0.25f, 0.55f, 0.2f, 1f);
-        for (int i = 0; i < 12; i++) {
-            float gx = worldWidth * 0.05f + i * (worldWidth * 0.9f / 11f);
-            sr.circle(gx, worldHeight * 0.20f, 8f, 24);
+        // Grass tufts — small green circles along the valley floor, a shade darker
+        c.layer(4);
+        c.color(ground.r * 0.85f, ground.g * 0.92f, ground.b * 0.8f);
+        for (float gx = firstMultiple(c.x0, tuftSpacing, 40f); gx < c.x1; gx += tuftSpacing) {
+            c.circle(gx, worldHeight * 0.20f, 8f, 24);
         }
     }
 
     /** Simple triangle mountain. */
-    private void drawMountain(ShapeRenderer sr, float cx, float baseY, float halfWidth, float height) {
-        sr.triangle(
+    private void buildMountain(ShapeChunk c, float cx, float baseY, float halfWidth, float height) {
+        c.triangle(
             cx - halfWidth, baseY,
             cx + halfWidth, baseY,
             cx, baseY + height
@@ -170,10 +336,26 @@ public class Background {
     }
 
     /** A sloped trapezoid from (x1, y1) to (x2, y2) filled down to y=0. */
-    private void drawSlope(ShapeRenderer sr, float x1, float y1, float x2, float y2) {
+    private void buildSlope(ShapeChunk c, float x1, float y1, float x2, float y2) {
         // Two triangles forming a trapezoid: (x1,0) -> (x1,y1) -> (x2,y2) -> (x2,0)
-        sr.triangle(x1, 0, x1, y1, x2, y2);
-        sr.triangle(x1, 0, x2, y2, x2, 0);
+        c.triangle(x1, 0, x1, y1, x2, y2);
+        c.triangle(x1, 0, x2, y2, x2, 0);
+    }
+
+    // ── Helpers ──────────────────────────────────────────────────────────
+
+    /** The first x at or after {@code from} that lies on the grid {@code offset + k * spacing}. */
+    private static float firstMultiple(float from, float spacing, float offset) {
+        return offset + MathUtils.ceil((from - offset) / spacing) * spacing;
+    }
+
+    /** A stable pseudo-random value in [0, 1) for the seed, a slice and a detail number. */
+    private float hash(int index, int n) {
+        int h = index * 0x9E3779B1 + n * 0x85EBCA6B + (int) (seed ^ (seed >>> 32)) * 0xC2B2AE35;
+        h ^= h >>> 15;
+        h *= 0x2C1B3C6D;
+        h ^= h >>> 12;
+        return (h >>> 8) / (float) (1 << 24);
     }
 
     public Type getType() {
@@ -0,0 +1,29 @@
+package io.github.steven_liu.rage;
+
+/**
+ * Steps every body in a {@link Bodies} the way {@link Player#update} steps one
+ * player, bit for bit.
+ */
+public interface BatchIntegrator {
+
+    /** Optional SIMD implementation, in the {@code simd} module; needs Java 16+ and {@code jdk.incubator.vector}. */
+    String VECTOR_CLASS = "io.github.steven_liu.rage.simd.VectorBatchIntegrator";
+
+    void integrate(Bodies bodies, float delta, float groundY, float minX, float maxX);
+
+    /** Human-readable name, for logs and benchmarks. */
+    String name();
+
+    /**
+     * The SIMD integrator if it is on the classpath and the JVM can run it, otherwise
+     * the scalar one. Android and Java 8 always get the scalar one.
+     */
+    static BatchIntegrator best() {
+        try {
+            return (BatchIntegrator) Class.forName(VECTOR_CLASS).getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            // Not packaged, class file too new, or the incubator module isn't added
+            return new ScalarBatchIntegrator();
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package io.github.steven_liu.rage;
+
+/**
+ * Fighter physics state laid out one array per field, for stepping many bodies at
+ * once with a {@link BatchIntegrator}. Holds only what {@link Player#update} touches.
+ */
+public final class Bodies {
+
+    public final float[] x, y, vx, vy, radius;
+    public final boolean[] grounded;
+    /** Bodies in use, from index 0. */
+    public int count;
+
+    public Bodies(int capacity) {
+        x = new float[capacity];
+        y = new float[capacity];
+        vx = new float[capacity];
+        vy = new float[capacity];
+        radius = new float[capacity];
+        grounded = new boolean[capacity];
+    }
+
+    public int capacity() {
+        return x.length;
+    }
+
+    /** Copy a player's physics state into slot {@code i}. */
+    public void set(int i, Player p) {
+        x[i] = p.x;
+        y[i] = p.y;
+        vx[i] = p.vx;
+        vy[i] = p.vy;
+        radius[i] = p.radius;
+        grounded[i] = p.grounded;
+    }
+
+    /** Copy slot {@code i} back into a player. */
+    public void get(int i, Player p) {
+        p.x = x[i];
+        p.y = y[i];
+        p.vx = vx[i];
+        p.vy = vy[i];
+        p.radius = radius[i];
+        p.grounded = grounded[i];
+    }
+}
@@ -0,0 +1,65 @@
+package io.github.steven_liu.rage;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.graphics.GL20;
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.TextureData;
+import com.badlogic.gdx.utils.BufferUtils;
+import com.badlogic.gdx.utils.Disposable;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+
+/**
+ * Tells whether the GL context has been recreated, which Android does when it drops
+ * the EGL context while the app is in the background. libGDX reloads managed textures
+ * into the new context by itself, but unmanaged ones (baked stage slices) are left with
+ * dead handles, and a handle can't be tested for that: the new context may have handed
+ * out the same number again.
+ * <p>
+ * So this is a 1x1 managed texture whose data counts its own uploads. libGDX uploads it
+ * once when it is made and again every time it reloads managed textures, so any upload
+ * after the first means a new context.
+ */
+final class ContextSentinel implements Disposable {
+
+    private final Texture texture;
+    private int uploads;
+    private int seen;
+
+    ContextSentinel() {
+        texture = new Texture(new Data());
+        seen = uploads;
+    }
+
+    /** Whether the context has been recreated since the last call (or since this was made). */
+    boolean contextLost() {
+        if (uploads == seen) return false;
+        seen = uploads;
+        return true;
+    }
+
+    @Override
+    public void dispose() {
+        texture.dispose();
+    }
+
+    private final class Data implements TextureData {
+        @Override public TextureDataType getType() { return TextureDataType.Custom; }
+        @Override public boolean isPrepared() { return true; }
+        @Override public void prepare() {}
+        @Override public Pixmap consumePixmap() { throw new GdxRuntimeException("Custom texture data"); }
+        @Override public boolean disposePixmap() { return false; }
+        @Override public int getWidth() { return 1; }
+        @Override public int getHeight() { return 1; }
+        @Override public Pixmap.Format getFormat() { return Pixmap.Format.RGBA8888; }
+        @Override public boolean useMipMaps() { return false; }
+        @Override public boolean isManaged() { return true; }
+
+        @Override
+        public void consumeCustomData(int target) {
+            uploads++;
+            Gdx.gl.glTexImage2D(target, 0, GL20.GL_RGBA, 1, 1, 0, GL20.GL_RGBA, GL20.GL_UNSIGNED_BYTE,
+                BufferUtils.newByteBuffer(4));
+        }
+    }
+}
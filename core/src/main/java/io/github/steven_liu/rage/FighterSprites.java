@@ -0,0 +1,152 @@
+package io.github.steven_liu.rage;
+
+import com.badlogic.gdx.graphics.g2d.Animation;
+import com.badlogic.gdx.graphics.g2d.SpriteBatch;
+import com.badlogic.gdx.graphics.g2d.TextureAtlas;
+import com.badlogic.gdx.graphics.g2d.TextureAtlas.AtlasRegion;
+import com.badlogic.gdx.utils.Disposable;
+
+/**
+ * Animated fighters, their shadows and dust puffs, all drawn from one texture atlas
+ * so a whole layer goes out in a single {@link SpriteBatch} flush.
+ * <p>
+ * The atlas is packed at build time ({@code lwjgl3:packTextures}) from the frames in
+ * {@code assets-raw/fighters}. Frames face right and are mirrored for
+ * {@link Player#facing} {@code -1}. The animation follows the player's state: idle,
+ * run while moving on the ground, jump while rising, fall while dropping.
+ */
+public class FighterSprites implements Disposable {
+
+    public static final String ATLAS = "atlas/fighters.atlas";
+
+    // Frames are 96px squares whose body is a 36px-radius circle; scale that to the player's radius
+    private static final float BODY_RADIUS = 36f;
+    private static final float BODY_BOTTOM = 2f;  // empty rows under the feet
+
+    private static final float IDLE_FRAME = 0.15f;
+    private static final float RUN_FRAME = 0.08f;
+    private static final float DUST_FRAME = 0.06f;
+
+    // Below this speed a grounded player counts as standing
+    private static final float RUN_THRESHOLD = 1f;
+
+    private static final int MAX_DUST = 8;
+
+    /** One fighter's look and where it is in its animation. */
+    private static final class Fighter {
+        final Animation<AtlasRegion> idle, run, jump, fall;
+        float stateTime;
+        Animation<AtlasRegion> current;
+        boolean wasGrounded = true;
+
+        Fighter(TextureAtlas atlas, String skin) {
+            idle = new Animation<>(IDLE_FRAME, atlas.findRegions(skin + "_idle"), Animation.PlayMode.LOOP);
+            run = new Animation<>(RUN_FRAME, atlas.findRegions(skin + "_run"), Animation.PlayMode.LOOP);
+            jump = new Animation<>(1f, atlas.findRegions(skin + "_jump"));
+            fall = new Animation<>(1f, atlas.findRegions(skin + "_fall"));
+            current = idle;
+        }
+    }
+
+    private final TextureAtlas atlas;
+    private final Fighter[] fighters;
+    private final AtlasRegion shadow;
+    private final Animation<AtlasRegion> dust;
+
+    // Dust puffs, reused in place
+    private final float[] dustX = new float[MAX_DUST];
+    private final float[] dustY = new float[MAX_DUST];
+    private final float[] dustTime = new float[MAX_DUST];
+    private int nextDust;
+
+    /** @param skins atlas name prefix per player index, e.g. {@code "red"} and {@code "blue"} */
+    public FighterSprites(String... skins) {
+        atlas = new TextureAtlas(ATLAS);
+        GpuResources.track(atlas, GpuResources.bytes(atlas));
+        fighters = new Fighter[skins.length];
+        for (int i = 0; i < skins.length; i++) fighters[i] = new Fighter(atlas, skins[i]);
+        shadow = atlas.findRegion("shadow");
+        dust = new Animation<>(DUST_FRAME, atlas.findRegions("dust"));
+        for (int i = 0; i < MAX_DUST; i++) dustTime[i] = Float.MAX_VALUE;
+    }
+
+    /** Advance the animation of the fighter at {@code index} from its player's current state. */
+    public void update(int index, Player player, float delta) {
+        Fighter f = fighters[index];
+        Animation<AtlasRegion> next;
+        if (!player.grounded) next = player.vy > 0 ? f.jump : f.fall;
+        else next = Math.abs(player.vx) > RUN_THRESHOLD ? f.run : f.idle;
+        if (next != f.current) {
+            f.current = next;
+            f.stateTime = 0;
+        } else {
+            f.stateTime += delta;
+        }
+
+        // Kick up dust when leaving or touching the ground
+        if (player.grounded != f.wasGrounded) {
+            spawnDust(player.x, player.y - player.radius);
+            f.wasGrounded = player.grounded;
+        }
+    }
+
+    /** Advance the dust puffs; call once per frame. */
+    public void updateEffects(float delta) {
+        for (int i = 0; i < MAX_DUST; i++) dustTime[i] += delta;
+    }
+
+    /** Ground shadows and dust. Call between {@code batch.begin()} and {@code end()}. */
+    public void drawEffects(SpriteBatch batch, Player[] players, float groundY) {
+        for (Player p : players) {
+            // Shrinks as the player rises
+            float height = p.y - p.radius - groundY;
+            float scale = Math.max(0.4f, 1f - height / 300f);
+            float w = p.radius * 2.2f * scale;
+            float h = p.radius * 0.5f * scale;
+            batch.draw(shadow, p.x - w / 2f, groundY - h / 2f, w, h);
+        }
+        float dustScale = Match.PLAYER_RADIUS / BODY_RADIUS;
+        for (int i = 0; i < MAX_DUST; i++) {
+            if (dust.isAnimationFinished(dustTime[i])) continue;
+            AtlasRegion r = dust.getKeyFrame(dustTime[i]);
+            drawRegion(batch, r, dustX[i], dustY[i], dustScale, false);
+        }
+    }
+
+    /** The fighters themselves. Call between {@code batch.begin()} and {@code end()}. */
+    public void drawFighters(SpriteBatch batch, Player[] players) {
+        for (int i = 0; i < players.length; i++) {
+            Player p = players[i];
+            Fighter f = fighters[i];
+            float scale = p.radius / BODY_RADIUS;
+            AtlasRegion r = f.current.getKeyFrame(f.stateTime);
+            drawRegion(batch, r, p.x, p.y - p.radius - BODY_BOTTOM * scale, scale, p.facing < 0);
+        }
+    }
+
+    /**
+     * Draw a frame with its bottom centre at (x, bottom). The packer strips transparent
+     * borders, so the region is placed by its offset inside the original frame.
+     */
+    private static void drawRegion(SpriteBatch batch, AtlasRegion r, float x, float bottom, float scale, boolean flip) {
+        float w = r.packedWidth * scale;
+        float h = r.packedHeight * scale;
+        float offsetX = flip ? r.originalWidth - r.offsetX - r.packedWidth : r.offsetX;
+        float left = x - r.originalWidth * scale / 2f + offsetX * scale;
+        float y = bottom + r.offsetY * scale;
+        if (flip) batch.draw(r, left + w, y, -w, h);
+        else batch.draw(r, left, y, w, h);
+    }
+
+    private void spawnDust(float x, float y) {
+        dustX[nextDust] = x;
+        dustY[nextDust] = y - 4f;
+        dustTime[nextDust] = 0;
+        nextDust = (nextDust + 1) % MAX_DUST;
+    }
+
+    @Override
+    public void dispose() {
+        GpuResources.dispose(atlas);
+    }
+}
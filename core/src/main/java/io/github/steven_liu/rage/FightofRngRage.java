@@ -1,12 +1,168 @@
 package io.github.steven_liu.rage;
 
+import com.badlogic.gdx.Application;
 import com.badlogic.gdx.Game;
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.Preferences;
+import com.badlogic.gdx.Screen;
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.utils.Base64Coder;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+import com.badlogic.gdx.utils.TimeUtils;
 
 /** {@link com.badlogic.gdx.ApplicationListener} implementation shared by all platforms. */
 public class FightofRngRage extends Game {
 
+    private static final String TAG = "FightofRngRage";
+    private static final String PREFS_NAME = "FightofRngRage";
+    private static final String PREF_SAVED_MATCH = "savedMatch";
+    private static final String STAGE_CACHE_DIR = "stage-cache";
+    // Seconds of frame trace written by writeTrace
+    private static final float TRACE_SECONDS = 10f;
+
+    /** Step matches on a separate {@link SimulationThread} instead of the GL thread. Set by the launcher. */
+    public boolean threadedSimulation;
+
+    /** Bake stage slices into textures off the GL thread. Off draws them as shapes every frame. */
+    public boolean bakeStages = true;
+
+    // Start times, cleared once the following frame has been drawn
+    private long createNanos;
+    private long resumeNanos;
+
+    // Last measurements, in milliseconds
+    public float coldStartMillis;
+    public float resumeMillis;
+
     @Override
     public void create() {
-        setScreen(new TitleScreen(this));
+        createNanos = TimeUtils.nanoTime();
+        StartupTrace.mark("gl context ready");
+
+        // Android may have killed the process while we were in the background
+        MatchState saved = loadSavedMatch();
+        if (saved != null) {
+            setScreen(new GameScreen(this, saved));
+        } else {
+            setScreen(new TitleScreen(this));
+        }
+    }
+
+    @Override
+    public void render() {
+        super.render();
+
+        if (createNanos != 0) {
+            coldStartMillis = TimeUtils.timeSinceNanos(createNanos) / 1_000_000f;
+            Gdx.app.log(TAG, "create to first frame: " + coldStartMillis + " ms");
+            createNanos = 0;
+            StartupTrace.finish();
+        }
+        if (resumeNanos != 0) {
+            resumeMillis = TimeUtils.timeSinceNanos(resumeNanos) / 1_000_000f;
+            Gdx.app.log(TAG, "resume to first frame: " + resumeMillis + " ms");
+            resumeNanos = 0;
+        }
+    }
+
+    /**
+     * Switch screens and dispose the one being left. Nothing keeps an old screen to go
+     * back to, so it would otherwise hold its batches, fonts and textures forever.
+     */
+    @Override
+    public void setScreen(Screen screen) {
+        Screen old = getScreen();
+        if (screen != null) GpuResources.setOwner(screen);
+        super.setScreen(screen);
+        if (old != null && old != screen) old.dispose();
+        GpuResources.log();
+    }
+
+    @Override
+    public void dispose() {
+        super.dispose();
+        // Game only hides the last screen
+        if (getScreen() != null) getScreen().dispose();
+    }
+
+    @Override
+    public void resume() {
+        resumeNanos = TimeUtils.nanoTime();
+        super.resume();
+        // The live screen came back, so the copy saved on pause is stale
+        if (Gdx.app.getType() == Application.ApplicationType.Android) clearSavedMatch();
+    }
+
+    /**
+     * Where baked stage slices are kept between runs: the app's private storage on
+     * Android, a hidden folder in the user's home on desktop. Null if it can't be created.
+     */
+    public FileHandle stageCacheDir() {
+        FileHandle dir = dataFile(STAGE_CACHE_DIR);
+        try {
+            dir.mkdirs();
+        } catch (GdxRuntimeException e) {
+            Gdx.app.error(TAG, "No stage cache", e);
+            return null;
+        }
+        return dir.isDirectory() ? dir : null;
+    }
+
+    /**
+     * Write the last few seconds of {@link FrameTrace} to a JSON file next to the stage
+     * cache, for opening in Perfetto.
+     * @return the file written, or null if it couldn't be
+     */
+    public FileHandle writeTrace() {
+        StringBuilder json = new StringBuilder(1 << 20);
+        FrameTrace.writeJson(json, TRACE_SECONDS);
+        FileHandle file = dataFile("trace-" + TimeUtils.millis() + ".json");
+        try {
+            file.writeString(json.toString(), false, "UTF-8");
+        } catch (GdxRuntimeException e) {
+            Gdx.app.error(TAG, "Could not write trace", e);
+            return null;
+        }
+        Gdx.app.log(TAG, "Frame trace written to " + file.file().getAbsolutePath());
+        return file;
+    }
+
+    // The app's private storage on Android, a hidden folder in the user's home on desktop
+    private static FileHandle dataFile(String path) {
+        return Gdx.app.getType() == Application.ApplicationType.Desktop
+            ? Gdx.files.external("." + PREFS_NAME + "/" + path)
+            : Gdx.files.local(path);
+    }
+
+    /**
+     * Persist a paused match so it survives the process being killed. Only needed on
+     * Android; on desktop the paused screen simply stays alive.
+     */
+    public void saveMatch(MatchState state) {
+        if (Gdx.app.getType() != Application.ApplicationType.Android) return;
+        Preferences prefs = Gdx.app.getPreferences(PREFS_NAME);
+        prefs.putString(PREF_SAVED_MATCH, new String(Base64Coder.encode(state.toBytes())));
+        prefs.flush();
+    }
+
+    /** @return the match saved by {@link #saveMatch}, or null. The saved copy is removed. */
+    private MatchState loadSavedMatch() {
+        Preferences prefs = Gdx.app.getPreferences(PREFS_NAME);
+        String encoded = prefs.getString(PREF_SAVED_MATCH, null);
+        if (encoded == null) return null;
+
+        clearSavedMatch();
+        try {
+            return MatchState.fromBytes(Base64Coder.decode(encoded));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private void clearSavedMatch() {
+        Preferences prefs = Gdx.app.getPreferences(PREFS_NAME);
+        if (!prefs.contains(PREF_SAVED_MATCH)) return;
+        prefs.remove(PREF_SAVED_MATCH);
+        prefs.flush();
     }
 }
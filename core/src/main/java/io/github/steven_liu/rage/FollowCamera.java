@@ -0,0 +1,72 @@
+package io.github.steven_liu.rage;
+
+import com.badlogic.gdx.graphics.OrthographicCamera;
+import com.badlogic.gdx.math.MathUtils;
+
+/**
+ * Keeps both fighters in frame on a stage wider than the screen: centres between
+ * them and zooms out as they move apart, easing towards the target so the view
+ * doesn't jitter. The ground stays at the bottom edge and the view never leaves the
+ * stage.
+ */
+public class FollowCamera {
+
+    // Space kept between each fighter and the edge of the view
+    private static final float EDGE_MARGIN = 160f;
+    private static final float MAX_ZOOM = 1.6f;
+    // Higher is snappier; the camera covers ~63% of the gap in 1/EASE seconds
+    private static final float EASE = 4f;
+
+    private final OrthographicCamera camera;
+    private final float viewWidth, viewHeight;
+    private final float stageWidth;
+
+    public FollowCamera(OrthographicCamera camera, float viewWidth, float viewHeight, float stageWidth) {
+        this.camera = camera;
+        this.viewWidth = viewWidth;
+        this.viewHeight = viewHeight;
+        this.stageWidth = stageWidth;
+    }
+
+    /** Jump straight to the framing for these players, e.g. when a match starts. */
+    public void snap(Player a, Player b) {
+        camera.zoom = targetZoom(a, b);
+        camera.position.x = targetX(a, b, camera.zoom);
+        camera.position.y = viewHeight * camera.zoom / 2f;
+        camera.update();
+    }
+
+    public void update(Player a, Player b, float delta) {
+        float t = 1f - (float) Math.exp(-EASE * delta);
+        camera.zoom = MathUtils.lerp(camera.zoom, targetZoom(a, b), t);
+        camera.position.x = MathUtils.lerp(camera.position.x, targetX(a, b, camera.zoom), t);
+        // Zooming happens around the bottom edge, so the ground doesn't move
+        camera.position.y = viewHeight * camera.zoom / 2f;
+        camera.position.x = clampX(camera.position.x, camera.zoom);
+        camera.update();
+    }
+
+    /** Left edge of what the camera sees. */
+    public float left() {
+        return camera.position.x - viewWidth * camera.zoom / 2f;
+    }
+
+    /** Right edge of what the camera sees. */
+    public float right() {
+        return camera.position.x + viewWidth * camera.zoom / 2f;
+    }
+
+    private float targetZoom(Player a, Player b) {
+        float needed = Math.abs(a.x - b.x) + 2f * EDGE_MARGIN;
+        return MathUtils.clamp(needed / viewWidth, 1f, Math.min(MAX_ZOOM, stageWidth / viewWidth));
+    }
+
+    private float targetX(Player a, Player b, float zoom) {
+        return clampX((a.x + b.x) / 2f, zoom);
+    }
+
+    private float clampX(float x, float zoom) {
+        float half = viewWidth * zoom / 2f;
+        return MathUtils.clamp(x, half, Math.max(half, stageWidth - half));
+    }
+}
@@ -0,0 +1,134 @@
+package io.github.steven_liu.rage;
+
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.TimeUtils;
+
+/**
+ * Always-on timings of the phases of each frame and tick, kept in fixed rings so the
+ * last several seconds can be dumped after a hitch. {@link #writeJson} produces Chrome
+ * trace-event JSON, which Perfetto ({@code ui.perfetto.dev}) and {@code chrome://tracing}
+ * open directly.
+ * <p>
+ * Each thread records into its own {@link Track}, so recording takes no locks: two
+ * {@code nanoTime} reads and three array stores per phase.
+ */
+public final class FrameTrace {
+
+    // Phases; the index is what a track records
+    public static final int FRAME = 0;
+    public static final int INPUT = 1;
+    public static final int PLAYER_UPDATE = 2;
+    public static final int COLLISION = 3;
+    public static final int STAGE = 4;
+    public static final int SPRITES = 5;
+    public static final int HUD_BARS = 6;
+    public static final int HUD_TEXT = 7;
+    public static final int TOUCH_CONTROLS = 8;
+    public static final int TICK = 9;
+
+    private static final String[] PHASE_NAMES = {
+        "frame", "input", "Player.update", "collision", "stage draw", "sprites draw",
+        "Hud.drawBars", "Hud.drawText", "TouchControls.draw", "tick",
+    };
+
+    // Events kept per track: at ~10 phases a frame, about 13 s at 60 fps
+    private static final int CAPACITY = 8192;
+    // Slots this close to the write position may be mid-overwrite while dumping, so they are skipped
+    private static final int DUMP_MARGIN = 64;
+
+    private static final Array<Track> tracks = new Array<>(false, 4);
+
+    /** One thread's ring of finished phases. Only that thread may record into it. */
+    public static final class Track {
+        final String name;
+        final int id;
+        final long[] starts = new long[CAPACITY];
+        final int[] durations = new int[CAPACITY];
+        final byte[] phases = new byte[CAPACITY];
+        volatile long written;
+
+        Track(String name, int id) {
+            this.name = name;
+            this.id = id;
+        }
+
+        /** @return the start time, to hand to {@link #end}. */
+        public long begin() {
+            return TimeUtils.nanoTime();
+        }
+
+        /** Record a phase that began at {@code start} (from {@link #begin}) and ends now. */
+        public void end(int phase, long start) {
+            long now = TimeUtils.nanoTime();
+            long n = written;
+            int i = (int) (n & (CAPACITY - 1));
+            starts[i] = start;
+            durations[i] = (int) Math.min(Integer.MAX_VALUE, now - start);
+            phases[i] = (byte) phase;
+            written = n + 1;
+        }
+    }
+
+    private FrameTrace() {}
+
+    /** A new track, shown in the trace under {@code name}. Create one per thread and keep it. */
+    public static synchronized Track track(String name) {
+        Track track = new Track(name, tracks.size + 1);
+        tracks.add(track);
+        return track;
+    }
+
+    /** Stop showing a track, e.g. when its thread ends. */
+    public static synchronized void remove(Track track) {
+        tracks.removeValue(track, true);
+    }
+
+    /**
+     * Write the phases that started in the last {@code seconds} as a Chrome trace.
+     * Times are microseconds from the oldest event written.
+     */
+    public static synchronized void writeJson(StringBuilder out, float seconds) {
+        long from = TimeUtils.nanoTime() - (long) (seconds * 1e9);
+        long origin = Long.MAX_VALUE;
+        for (Track t : tracks) {
+            long n = t.written;
+            for (long e = Math.max(0, n - CAPACITY + DUMP_MARGIN); e < n; e++) {
+                long start = t.starts[(int) (e & (CAPACITY - 1))];
+                if (start >= from) origin = Math.min(origin, start);
+            }
+        }
+
+        out.append("{\"displayTimeUnit\":\"ms\",\"traceEvents\":[");
+        boolean first = true;
+        for (Track t : tracks) {
+            if (!first) out.append(',');
+            first = false;
+            out.append("\n{\"name\":\"thread_name\",\"ph\":\"M\",\"pid\":1,\"tid\":").append(t.id)
+                .append(",\"args\":{\"name\":\"").append(t.name).append("\"}}");
+
+            long n = t.written;
+            for (long e = Math.max(0, n - CAPACITY + DUMP_MARGIN); e < n; e++) {
+                int i = (int) (e & (CAPACITY - 1));
+                long start = t.starts[i];
+                if (start < from) continue;
+                out.append(",\n{\"name\":\"").append(PHASE_NAMES[t.phases[i]])
+                    .append("\",\"ph\":\"X\",\"pid\":1,\"tid\":").append(t.id)
+                    .append(",\"ts\":");
+                micros(out, start - origin);
+                out.append(",\"dur\":");
+                micros(out, t.durations[i]);
+                out.append('}');
+            }
+        }
+        out.append("\n]}\n");
+    }
+
+    // Three decimals, so nanosecond timings survive without float formatting
+    private static void micros(StringBuilder out, long nanos) {
+        out.append(nanos / 1000).append('.');
+        long frac = nanos % 1000;
+        if (frac < 100) out.append('0');
+        if (frac < 10) out.append('0');
+        out.append(frac);
+    }
+}
@@ -6,188 +6,356 @@ import com.badlogic.gdx.ScreenAdapter;
 import com.badlogic.gdx.graphics.Color;
 import com.badlogic.gdx.graphics.GL20;
 import com.badlogic.gdx.graphics.OrthographicCamera;
+import com.badlogic.gdx.graphics.g2d.SpriteBatch;
 import com.badlogic.gdx.graphics.glutils.ShapeRenderer;
+import com.badlogic.gdx.math.MathUtils;
+import com.badlogic.gdx.utils.TimeUtils;
 import com.badlogic.gdx.utils.viewport.FitViewport;
 import com.badlogic.gdx.utils.viewport.Viewport;
 
 /**
  * Main game screen — 2D fighting arena with physics, controls, collision, and HUD.
+ * <p>
+ * The simulation lives in {@link Match}. By default it is stepped here on the GL thread;
+ * with {@link FightofRngRage#threadedSimulation} it runs on a {@link SimulationThread}
+ * and this screen draws interpolated snapshots of it.
+ * <p>
+ * The stage is several screens wide. A {@link FollowCamera} keeps both fighters in
+ * view and a {@link StageRenderer} streams in the part of the background around it.
+ * Each match gets a freshly generated stage, baked to textures by a {@link StageBaker}.
  */
 public class GameScreen extends ScreenAdapter {
 
-    // World dimensions in virtual units
-    private static final float WORLD_WIDTH  = 800;
-    private static final float WORLD_HEIGHT = 480;
-    private static final float PLAYER_RADIUS = 30f;
-    private static final float GROUND_Y = 60f;  // ground level in world units
+    private static final float WORLD_WIDTH  = Match.WORLD_WIDTH;
+    private static final float WORLD_HEIGHT = Match.WORLD_HEIGHT;
+    private static final float STAGE_WIDTH = WORLD_WIDTH * 5;
+    // Baked stage slices never get more pixels than this, however tall the window
+    private static final int MAX_BAKE_HEIGHT = 1080;
+    // Holding three fingers this long writes the frame trace instead of toggling the overlay
+    private static final long TRACE_HOLD_MILLIS = 1000;
+
+    // Every game screen draws on the GL thread, so they share a track
+    private static final FrameTrace.Track TRACE = FrameTrace.track("render");
 
     private final FightofRngRage game;
 
     private OrthographicCamera camera;
     private Viewport viewport;
+    private OrthographicCamera screenCamera;    // one unit per pixel, for the HUD
     private ShapeRenderer shapeRenderer;
+    private SpriteBatch batch;
+    private RenderQueue queue;
+    private FighterSprites sprites;
+
+    private Match match;
+    private Background background;
+    private StageRenderer stage;
+    private FollowCamera followCamera;
+    private final Color skyColor = new Color();
+    // Part of the stage in view this frame, for the queued stage commands
+    private float viewLeft, viewRight;
 
+    // What gets drawn: the match's own players, or interpolated copies in threaded mode
     private Player player1;
     private Player player2;
-    private Background background;
+    private Player[] players;
+
+    // World commands, made once so queueing them allocates nothing
+    private final RenderQueue.Shapes stageShapes = sr -> stage.draw(sr, viewLeft, viewRight);
+    private final RenderQueue.Sprites stageBaked = b -> stage.drawBaked(b, viewLeft, viewRight);
+    private final RenderQueue.Sprites fighters = b -> {
+        // Shadows, dust, then the fighters on top: one atlas, so one flush
+        sprites.drawEffects(b, players, Match.GROUND_Y);
+        sprites.drawFighters(b, players);
+    };
+
+    private SimulationThread simulation;
 
     private Hud hud;
+    private final PerfOverlay perf = new PerfOverlay();
     private TouchControls touchControls;
 
+    // Match to put back in place on show(), or null for a fresh match
+    private final MatchState restoreState;
+    // Stage for a fresh match, or 0 for a random one
+    private final long stageSeed;
+
+    // When three fingers went down, 0 while they are up, -1 once the hold has been handled
+    private long threeFingersSince;
+
+    // Notices the GL context being recreated while the app was in the background
+    private ContextSentinel contextSentinel;
+
     public GameScreen(FightofRngRage game) {
+        this(game, null, 0);
+    }
+
+    /** Continue a match that was saved when the app was paused. */
+    public GameScreen(FightofRngRage game, MatchState restoreState) {
+        this(game, restoreState, 0);
+    }
+
+    /** A fresh match on the stage generated from {@code stageSeed}. */
+    public GameScreen(FightofRngRage game, long stageSeed) {
+        this(game, null, stageSeed);
+    }
+
+    private GameScreen(FightofRngRage game, MatchState restoreState, long stageSeed) {
         this.game = game;
+        this.restoreState = restoreState;
+        this.stageSeed = stageSeed;
     }
 
     @Override
     public void show() {
         camera = new OrthographicCamera();
         viewport = new FitViewport(WORLD_WIDTH, WORLD_HEIGHT, camera);
-        camera.position.set(WORLD_WIDTH / 2f, WORLD_HEIGHT / 2f, 0);
-        camera.update();
-
-        shapeRenderer = new ShapeRenderer();
-
-        // Randomly pick one of three backgrounds
-        background = new Background(WORLD_WIDTH, WORLD_HEIGHT);
-
-        // Player 1 (red) on the left, standing on the ground
-        player1 = new Player(
-            WORLD_WIDTH * 0.2f,
-            GROUND_Y + PLAYER_RADIUS,
-            PLAYER_RADIUS,
-            Color.RED
-        );
-
-        // Player 2 (blue) on the right, standing on the ground
-        player2 = new Player(
-            WORLD_WIDTH * 0.8f,
-            GROUND_Y + PLAYER_RADIUS,
-            PLAYER_RADIUS,
-            Color.BLUE
-        );
+
+        shapeRenderer = GpuResources.track(new ShapeRenderer(), GpuResources.SHAPE_RENDERER_BYTES);
+        batch = GpuResources.track(new SpriteBatch(), GpuResources.SPRITE_BATCH_BYTES);
+        contextSentinel = GpuResources.track(new ContextSentinel(), 4);
+        queue = new RenderQueue(shapeRenderer, batch);
+        queue.trace = TRACE;
+        sprites = new FighterSprites("red", "blue");
+
+        // A new stage every match (or the restored or requested one); the seed also picks the stage type
+        long seed = restoreState != null && restoreState.stageSeed != 0 ? restoreState.stageSeed : stageSeed;
+        if (seed == 0) seed = Background.randomSeed();
+        Background.Type type = Background.typeForSeed(seed);
+        background = new Background(STAGE_WIDTH, WORLD_HEIGHT, seed);
+        background.skyColor(skyColor);
+        if (game.bakeStages) {
+            int bakeHeight = Math.min(Gdx.graphics.getHeight(), MAX_BAKE_HEIGHT);
+            stage = new StageRenderer(background, new StageBaker(background, bakeHeight, game.stageCacheDir()));
+        } else {
+            stage = new StageRenderer(background);
+        }
+
+        match = new Match(type, STAGE_WIDTH);
+        match.stageSeed = seed;
+        match.trace = TRACE;
+        if (restoreState != null) restoreState.apply(match);
+        followCamera = new FollowCamera(camera, WORLD_WIDTH, WORLD_HEIGHT, STAGE_WIDTH);
+        followCamera.snap(match.player1, match.player2);
+
+        if (game.threadedSimulation) {
+            simulation = new SimulationThread(match);
+            player1 = new Player(0, 0, Match.PLAYER_RADIUS, match.player1.color);
+            player2 = new Player(0, 0, Match.PLAYER_RADIUS, match.player2.color);
+            simulation.start();
+        } else {
+            player1 = match.player1;
+            player2 = match.player2;
+        }
+        players = new Player[] {player1, player2};
 
         // HUD & touch controls use actual screen pixels
         float sw = Gdx.graphics.getWidth();
         float sh = Gdx.graphics.getHeight();
+        screenCamera = new OrthographicCamera();
+        screenCamera.setToOrtho(false, sw, sh);
         hud = new Hud(sw, sh);
         touchControls = new TouchControls(sw, sh);
+        StartupTrace.mark("game assets loaded");
     }
 
     @Override
     public void render(float delta) {
-        // Cap delta to avoid physics explosions on lag spikes
-        delta = Math.min(delta, 1 / 30f);
-
-        // ── Input ────────────────────────────────────────────────
-        handleInput(delta);
+        // Back to the title. This screen is disposed on the way, so nothing else may run
+        if (Gdx.input.isKeyJustPressed(Input.Keys.ESCAPE)) {
+            game.setScreen(new TitleScreen(game));
+            return;
+        }
 
-        // ── Physics update ───────────────────────────────────────
-        player1.update(delta, GROUND_Y, 0, WORLD_WIDTH);
-        player2.update(delta, GROUND_Y, 0, WORLD_WIDTH);
+        perf.beginFrame();
+        long frameStart = TRACE.begin();
 
-        // ── Collision ────────────────────────────────────────────
-        resolvePlayerCollision(player1, player2);
+        // Cap delta to avoid physics explosions on lag spikes
+        delta = Math.min(delta, 1 / 30f);
 
-        // ── Facing ───────────────────────────────────────────────
-        player1.faceOpponent(player2);
-        player2.faceOpponent(player1);
+        // Managed textures are back already; the baked stage slices and the HUD need redoing
+        if (contextSentinel.contextLost()) {
+            hud.invalidate();
+            stage.invalidateTextures();
+        }
 
-        // (no timer to update)
+        // ── Input ────────────────────────────────────────────────
+        long start = TRACE.begin();
+        handleInput();
+        TRACE.end(FrameTrace.INPUT, start);
+
+        // ── Simulation ───────────────────────────────────────────
+        if (simulation != null) {
+            interpolate(simulation.latest());
+        } else {
+            match.step(delta);
+        }
+        sprites.update(0, player1, delta);
+        sprites.update(1, player2, delta);
+        sprites.updateEffects(delta);
+        perf.endSimulation();
+
+        // ── Camera ───────────────────────────────────────────────
+        followCamera.update(player1, player2, delta);
+        viewLeft = followCamera.left();
+        viewRight = followCamera.right();
+        start = TRACE.begin();
+        stage.update(viewLeft, viewRight);
+        TRACE.end(FrameTrace.STAGE, start);
 
         // ── Render ───────────────────────────────────────────────
-        Gdx.gl.glClearColor(0f, 0f, 0f, 1f);
+        // Sky colour, so zooming out past the top of the world shows more sky
+        Gdx.gl.glClearColor(skyColor.r, skyColor.g, skyColor.b, 1f);
         Gdx.gl.glClear(GL20.GL_COLOR_BUFFER_BIT);
 
-        camera.update();
-        shapeRenderer.setProjectionMatrix(camera.combined);
-
-        // Background
-        shapeRenderer.begin(ShapeRenderer.ShapeType.Filled);
-        background.draw(shapeRenderer);
-        shapeRenderer.end();
-
-        // Players (drawn on top of background)
-        shapeRenderer.begin(ShapeRenderer.ShapeType.Filled);
-        shapeRenderer.setColor(player1.color);
-        shapeRenderer.circle(player1.x, player1.y, player1.radius, 64);
-        shapeRenderer.setColor(player2.color);
-        shapeRenderer.circle(player2.x, player2.y, player2.radius, 64);
-        shapeRenderer.end();
-
-        // Reset GL viewport to full screen for HUD & touch overlays
-        // (FitViewport letterboxes, which would squash screen-space draws)
-        Gdx.gl.glViewport(0, 0, Gdx.graphics.getWidth(), Gdx.graphics.getHeight());
+        queue.resetStats();
+        // Rebakes the HUD into its cache if a bar changed, so it goes before anything is queued
+        hud.update(queue, player1, player2, delta);
+
+        // The world draws into the letterboxed viewport; the HUD and overlays cover the
+        // whole screen (FitViewport letterboxes, which would squash screen-space draws)
+        queue.setProjection(RenderQueue.WORLD, camera.combined,
+            viewport.getScreenX(), viewport.getScreenY(), viewport.getScreenWidth(), viewport.getScreenHeight());
+        queue.setProjection(RenderQueue.SCREEN, screenCamera.combined,
+            0, 0, Gdx.graphics.getWidth(), Gdx.graphics.getHeight());
+
+        // Background — only the slices in view: shapes until they are baked, then textures
+        queue.shapes(RenderQueue.LAYER_STAGE, RenderQueue.WORLD, ShapeRenderer.ShapeType.Filled, false,
+            FrameTrace.STAGE, stageShapes);
+        queue.sprites(RenderQueue.LAYER_STAGE, RenderQueue.WORLD, FrameTrace.STAGE, stageBaked);
+        queue.sprites(RenderQueue.LAYER_WORLD, RenderQueue.WORLD, FrameTrace.SPRITES, fighters);
+
+        // HUD & touch controls (screen-space)
+        hud.submit(queue);
+        touchControls.submit(queue);
+        queue.flush();
+
+        // Performance overlay last, so it doesn't count itself
+        perf.endFrame(queue.flushes);
+        hud.submitPerf(queue, perf);
+        queue.flush();
+        TRACE.end(FrameTrace.FRAME, frameStart);
+    }
 
-        // HUD (screen-space)
-        hud.drawBars(shapeRenderer, player1, player2);
-        hud.drawText(player1, player2);
+    /**
+     * Copy the newest tick into the drawn players, blending positions from the tick
+     * before it. Drawing runs one tick behind the simulation so there is always a
+     * pair of states to blend between.
+     */
+    private void interpolate(MatchSnapshot snapshot) {
+        float alpha = (TimeUtils.nanoTime() - snapshot.publishNanos) / (float) SimulationThread.TICK_NANOS;
+        alpha = MathUtils.clamp(alpha, 0f, 1f);
+        interpolate(snapshot.previous.p1, snapshot.current.p1, alpha, player1);
+        interpolate(snapshot.previous.p2, snapshot.current.p2, alpha, player2);
+    }
 
-        // Touch controls overlay (screen-space)
-        touchControls.draw(shapeRenderer);
+    private void interpolate(MatchState.PlayerState from, MatchState.PlayerState to, float alpha, Player out) {
+        to.apply(out);
+        out.x = MathUtils.lerp(from.x, to.x, alpha);
+        out.y = MathUtils.lerp(from.y, to.y, alpha);
     }
 
     // ── Input handling ───────────────────────────────────────────────────
 
-    private void handleInput(float delta) {
-        // Reset horizontal velocity each frame (stop when no key held)
-        player1.vx = 0;
-        player2.vx = 0;
+    private void handleInput() {
+        // Stop when no key held
+        float p1Move = 0, p2Move = 0;
+        boolean p1Jump = false, p2Jump = false;
 
         // ── Keyboard (desktop) ──
 
         // Player 1: A/D move, W jump
-        if (Gdx.input.isKeyPressed(Input.Keys.A)) player1.vx = -Player.MOVE_SPEED;
-        if (Gdx.input.isKeyPressed(Input.Keys.D)) player1.vx =  Player.MOVE_SPEED;
-        if (Gdx.input.isKeyJustPressed(Input.Keys.W)) player1.jump();
+        if (Gdx.input.isKeyPressed(Input.Keys.A)) p1Move = -1;
+        if (Gdx.input.isKeyPressed(Input.Keys.D)) p1Move =  1;
+        if (Gdx.input.isKeyJustPressed(Input.Keys.W)) p1Jump = true;
 
         // Player 2: Arrow keys
-        if (Gdx.input.isKeyPressed(Input.Keys.LEFT))  player2.vx = -Player.MOVE_SPEED;
-        if (Gdx.input.isKeyPressed(Input.Keys.RIGHT)) player2.vx =  Player.MOVE_SPEED;
-        if (Gdx.input.isKeyJustPressed(Input.Keys.UP)) player2.jump();
+        if (Gdx.input.isKeyPressed(Input.Keys.LEFT))  p2Move = -1;
+        if (Gdx.input.isKeyPressed(Input.Keys.RIGHT)) p2Move =  1;
+        if (Gdx.input.isKeyJustPressed(Input.Keys.UP)) p2Jump = true;
+
+        // Performance overlay: F3, or a three-finger tap.
+        // Frame trace of the last seconds: F4, or holding three fingers down.
+        if (Gdx.input.isKeyJustPressed(Input.Keys.F3)) perf.toggle();
+        if (Gdx.input.isKeyJustPressed(Input.Keys.F4)) game.writeTrace();
+        if (Gdx.input.isTouched(2)) {
+            if (threeFingersSince == 0) {
+                threeFingersSince = TimeUtils.millis();
+            } else if (threeFingersSince > 0 && TimeUtils.timeSinceMillis(threeFingersSince) >= TRACE_HOLD_MILLIS) {
+                game.writeTrace();
+                threeFingersSince = -1;
+            }
+        } else {
+            if (threeFingersSince > 0) perf.toggle();
+            threeFingersSince = 0;
+        }
 
         // ── Touch joystick (android / touch) ──
         touchControls.update();
 
         // P1 joystick — proportional horizontal, push up to jump
         float p1x = touchControls.p1DirX;
-        if (Math.abs(p1x) > 0.15f) player1.vx = p1x * Player.MOVE_SPEED;
-        if (touchControls.p1DirY > 0.5f) player1.jump();
+        if (Math.abs(p1x) > 0.15f) p1Move = p1x;
+        if (touchControls.p1DirY > 0.5f) p1Jump = true;
 
         // P2 joystick
         float p2x = touchControls.p2DirX;
-        if (Math.abs(p2x) > 0.15f) player2.vx = p2x * Player.MOVE_SPEED;
-        if (touchControls.p2DirY > 0.5f) player2.jump();
+        if (Math.abs(p2x) > 0.15f) p2Move = p2x;
+        if (touchControls.p2DirY > 0.5f) p2Jump = true;
+
+        if (simulation != null) {
+            simulation.setInput1(p1Move, p1Jump);
+            simulation.setInput2(p2Move, p2Jump);
+        } else {
+            match.input1.set(p1Move, p1Jump);
+            match.input2.set(p2Move, p2Jump);
+        }
     }
 
-    // ── Collision ────────────────────────────────────────────────────────
+    /** Stage slices in range whose baked texture hasn't been uploaded yet. */
+    public int stageTexturesPending() {
+        return stage.pendingTextures();
+    }
+
+    @Override
+    public void resize(int width, int height) {
+        viewport.update(width, height);
+        if (width == 0 || height == 0) return;  // minimised on Windows
+        screenCamera.setToOrtho(false, width, height);
+        hud.resize(width, height);
+        touchControls = new TouchControls(width, height);
+    }
 
-    /** Push two circle-players apart if they overlap. */
-    private void resolvePlayerCollision(Player a, Player b) {
-        float dx = b.x - a.x;
-        float dy = b.y - a.y;
-        float dist = (float) Math.sqrt(dx * dx + dy * dy);
-        float minDist = a.radius + b.radius;
+    @Override
+    public void pause() {
+        // The match must not be mid-tick while it is captured
+        if (simulation != null) simulation.stop();
 
-        if (dist < minDist && dist > 0) {
-            float overlap = (minDist - dist) / 2f;
-            float nx = dx / dist;  // collision normal
-            float ny = dy / dist;
+        MatchState state = new MatchState();
+        state.capture(match);
+        game.saveMatch(state);
+    }
 
-            a.x -= nx * overlap;
-            a.y -= ny * overlap;
-            b.x += nx * overlap;
-            b.y += ny * overlap;
-        }
+    @Override
+    public void resume() {
+        if (simulation != null) simulation.start();
     }
 
     @Override
-    public void resize(int width, int height) {
-        viewport.update(width, height);
+    public void hide() {
+        if (simulation != null) simulation.stop();
     }
 
     @Override
     public void dispose() {
-        shapeRenderer.dispose();
+        if (simulation != null) simulation.stop();
+        GpuResources.dispose(shapeRenderer);
+        GpuResources.dispose(batch);
+        sprites.dispose();
+        stage.dispose();
         hud.dispose();
+        GpuResources.dispose(contextSentinel);
+        // Unwrap Gdx.gl again, or the next screen keeps paying for the profiler
+        if (perf.isVisible()) perf.toggle();
     }
 }
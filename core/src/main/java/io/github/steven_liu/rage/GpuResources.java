@@ -0,0 +1,183 @@
+package io.github.steven_liu.rage;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.g2d.BitmapFont;
+import com.badlogic.gdx.graphics.g2d.TextureAtlas;
+import com.badlogic.gdx.graphics.glutils.FrameBuffer;
+import com.badlogic.gdx.utils.Disposable;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Every GL-backed or native object the game holds, with an estimate of the memory
+ * behind it and the screen it was created under. Whoever creates one registers it with
+ * {@link #track} and gets rid of it with {@link #dispose}, so anything still listed
+ * after its screen is gone has leaked.
+ * <p>
+ * {@link FightofRngRage#setScreen} sets the owner before the new screen is shown, so
+ * resources made by a screen's helpers (the HUD, stage slices) are charged to it too.
+ * The totals are on the performance overlay and logged at debug level on every screen
+ * switch. GL thread only.
+ */
+public final class GpuResources {
+
+    private static final String TAG = "GpuResources";
+
+    /** Rough sizes of the renderers' vertex and index buffers at their default capacities. */
+    public static final long SPRITE_BATCH_BYTES = 1000 * 4 * 20 + 1000 * 6 * 2;
+    public static final long SHAPE_RENDERER_BYTES = 5000 * 16;
+
+    /** One tracked object. */
+    public static final class Entry {
+        public final String kind;
+        public final String owner;
+        public final long bytes;
+
+        Entry(String kind, String owner, long bytes) {
+            this.kind = kind;
+            this.owner = owner;
+            this.bytes = bytes;
+        }
+    }
+
+    private static final Map<Disposable, Entry> live = new IdentityHashMap<>();
+    private static long totalBytes;
+    private static String owner = "none";
+    private static int screens;
+
+    private GpuResources() {}
+
+    /** Charge what is created from now on to this screen. Each call is a new owner, even for the same class. */
+    public static void setOwner(Object screen) {
+        owner = screen.getClass().getSimpleName() + "#" + ++screens;
+    }
+
+    /** The owner new resources are charged to. */
+    public static String owner() {
+        return owner;
+    }
+
+    /**
+     * Register a resource under the current owner.
+     * @param bytes estimated GPU or native memory behind it
+     * @return the resource, so creation and tracking can be one expression
+     */
+    public static <T extends Disposable> T track(T resource, long bytes) {
+        Entry old = live.put(resource, new Entry(resource.getClass().getSimpleName(), owner, bytes));
+        if (old != null) totalBytes -= old.bytes;
+        totalBytes += bytes;
+        return resource;
+    }
+
+    /** Dispose a tracked resource and forget it. Null is ignored. */
+    public static void dispose(Disposable resource) {
+        if (resource == null) return;
+        Entry entry = live.remove(resource);
+        if (entry != null) totalBytes -= entry.bytes;
+        resource.dispose();
+    }
+
+    /** Forget a resource without disposing it, for one whose GL context is already gone. */
+    public static void untrack(Disposable resource) {
+        Entry entry = live.remove(resource);
+        if (entry != null) totalBytes -= entry.bytes;
+    }
+
+    /** Objects currently tracked. */
+    public static int count() {
+        return live.size();
+    }
+
+    /** Estimated bytes behind everything currently tracked. */
+    public static long totalBytes() {
+        return totalBytes;
+    }
+
+    /** A copy of what is currently tracked. */
+    public static List<Entry> entries() {
+        return new ArrayList<>(live.values());
+    }
+
+    /** One line per owner: objects, kinds and estimated size. */
+    public static String report() {
+        Map<String, long[]> byOwner = new TreeMap<>();
+        Map<String, StringBuilder> kinds = new TreeMap<>();
+        for (Entry e : live.values()) {
+            long[] sums = byOwner.computeIfAbsent(e.owner, k -> new long[2]);
+            sums[0]++;
+            sums[1] += e.bytes;
+            StringBuilder k = kinds.computeIfAbsent(e.owner, o -> new StringBuilder());
+            if (k.indexOf(e.kind) < 0) k.append(k.length() == 0 ? "" : ", ").append(e.kind);
+        }
+        StringBuilder s = new StringBuilder();
+        s.append(live.size()).append(" objects, ").append(kb(totalBytes));
+        for (Map.Entry<String, long[]> o : byOwner.entrySet()) {
+            s.append("\n  ").append(o.getKey()).append(": ").append(o.getValue()[0]).append(" objects, ")
+                .append(kb(o.getValue()[1])).append(" (").append(kinds.get(o.getKey())).append(')');
+        }
+        return s.toString();
+    }
+
+    /** Log {@link #report()} at debug level. */
+    public static void log() {
+        if (Gdx.app != null) Gdx.app.debug(TAG, report());
+    }
+
+    // ── Size estimates ───────────────────────────────────────────────────
+
+    public static long bytes(Texture texture) {
+        long bytes = (long) texture.getWidth() * texture.getHeight() * bytesPerPixel(texture.getTextureData().getFormat());
+        // A full mip chain adds a third
+        return texture.getMinFilter().isMipMap() ? bytes * 4 / 3 : bytes;
+    }
+
+    /** The font's page textures, if it owns them. */
+    public static long bytes(BitmapFont font) {
+        if (!font.ownsTexture()) return 0;
+        long bytes = 0;
+        for (int i = 0; i < font.getRegions().size; i++) bytes += bytes(font.getRegions().get(i).getTexture());
+        return bytes;
+    }
+
+    public static long bytes(TextureAtlas atlas) {
+        long bytes = 0;
+        for (Texture texture : atlas.getTextures()) bytes += bytes(texture);
+        return bytes;
+    }
+
+    public static long bytes(FrameBuffer frameBuffer) {
+        return bytes(frameBuffer.getColorBufferTexture());
+    }
+
+    /** FreeType keeps the whole font file in native memory while the generator is open. */
+    public static long bytes(FileHandle fontFile) {
+        return fontFile.length();
+    }
+
+    private static int bytesPerPixel(Pixmap.Format format) {
+        switch (format) {
+            case Alpha:
+            case Intensity:
+                return 1;
+            case LuminanceAlpha:
+            case RGB565:
+            case RGBA4444:
+                return 2;
+            case RGB888:
+                return 3;
+            default:
+                return 4;
+        }
+    }
+
+    private static String kb(long bytes) {
+        return (bytes + 1023) / 1024 + " KB";
+    }
+}
@@ -1,24 +1,36 @@
 package io.github.steven_liu.rage;
 
 import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.files.FileHandle;
 import com.badlogic.gdx.graphics.Color;
+import com.badlogic.gdx.graphics.GL20;
 import com.badlogic.gdx.graphics.OrthographicCamera;
+import com.badlogic.gdx.graphics.Pixmap;
 import com.badlogic.gdx.graphics.g2d.BitmapFont;
 import com.badlogic.gdx.graphics.g2d.GlyphLayout;
 import com.badlogic.gdx.graphics.g2d.SpriteBatch;
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
 import com.badlogic.gdx.graphics.g2d.freetype.FreeTypeFontGenerator;
 import com.badlogic.gdx.graphics.g2d.freetype.FreeTypeFontGenerator.FreeTypeFontParameter;
+import com.badlogic.gdx.graphics.glutils.FrameBuffer;
 import com.badlogic.gdx.graphics.glutils.ShapeRenderer;
 
 /**
  * Heads-Up Display rendered in screen-space.
  * Shows health bars and player labels (no timer).
  * All sizes are 3x the original.
+ * <p>
+ * Drawn through the frame's {@link RenderQueue} in the {@link RenderQueue#SCREEN}
+ * projection, which maps one unit to one pixel.
+ * <p>
+ * The bars and labels are baked into an offscreen strip along the top of the screen,
+ * redrawn only when a bar's fill changes by a whole pixel or the screen is resized,
+ * and composited as one quad per frame. The white flash over health just lost is
+ * animated, so it is drawn live on top, and only while it lasts.
  */
 public class Hud {
 
-    private final OrthographicCamera cam;
-    private final float screenW, screenH;
+    private float screenW, screenH;
 
     // Health bar sizing — 3x original (260→780, 24→72, offsets scaled too)
     private static final float BAR_WIDTH  = 780f;
@@ -26,96 +38,244 @@ public class Hud {
     private static final float BAR_Y_OFFSET = 48f;  // from top
     private static final float BAR_X_PAD = 60f;
 
+    // How long the lost part of a bar flashes, in seconds
+    private static final float FLASH_TIME = 0.3f;
+
+    // Performance overlay, under the P1 bar
+    private static final int PERF_FONT_SIZE = 24;
+    private static final float PERF_PAD = 12f;
+
+    // Bar placement, fixed for the screen size
+    private float barW, barBottom, p1BarX, p2BarX;
+    private float p2LabelX;
+
     // Fonts
     private BitmapFont labelFont;
-    private SpriteBatch batch;
+    private BitmapFont perfFont;    // generated the first time the overlay is shown
     private FreeTypeFontGenerator generator;
-    private GlyphLayout glyphLayout;
+    private final GlyphLayout perfLayout = new GlyphLayout();
 
-    public Hud(float screenW, float screenH) {
-        this.screenW = screenW;
-        this.screenH = screenH;
+    // Baked bars and labels: the strip from the bottom of the bars to the top of the screen
+    private FrameBuffer cache;
+    private final TextureRegion cacheRegion = new TextureRegion();
+    private final OrthographicCamera cacheCamera = new OrthographicCamera();
+    private int cacheHeight;
+    private boolean dirty;
+    // Bar fills in whole pixels as last baked
+    private int p1Fill = -1, p2Fill = -1;
+
+    // Health lost flash per bar: fill fractions it spans and the time left
+    private float p1FlashFrom, p1FlashTo, p1FlashTime;
+    private float p2FlashFrom, p2FlashTo, p2FlashTime;
+    private float p1Last = -1, p2Last = -1;
 
-        cam = new OrthographicCamera(screenW, screenH);
-        cam.position.set(screenW / 2f, screenH / 2f, 0);
-        cam.update();
+    // What the bake commands draw
+    private float p1Health, p2Health;
 
-        batch = new SpriteBatch();
+    // Commands, made once so queueing them allocates nothing
+    private final RenderQueue.Shapes barFills = this::drawBarFills;
+    private final RenderQueue.Shapes barBorders = this::drawBarBorders;
+    private final RenderQueue.Sprites labels = this::drawLabels;
+    private final RenderQueue.Sprites cached = this::drawCache;
+    private final RenderQueue.Shapes flashes = this::drawFlashes;
+    private final RenderQueue.Shapes perfPanel = this::drawPerfPanel;
+    private final RenderQueue.Sprites perfText = this::drawPerfText;
 
-        generator = new FreeTypeFontGenerator(Gdx.files.internal("DMSerifDisplay-Regular.ttf"));
+    public Hud(float screenW, float screenH) {
+        FileHandle fontFile = Gdx.files.internal("DMSerifDisplay-Regular.ttf");
+        generator = GpuResources.track(new FreeTypeFontGenerator(fontFile), GpuResources.bytes(fontFile));
 
         // Label font — 3x original (18→54)
         FreeTypeFontParameter labelParam = new FreeTypeFontParameter();
         labelParam.size = 54;
         labelParam.color = Color.WHITE;
         labelFont = generator.generateFont(labelParam);
+        GpuResources.track(labelFont, GpuResources.bytes(labelFont));
 
-        glyphLayout = new GlyphLayout();
+        resize(screenW, screenH);
     }
 
-    /** Draw health bar shapes. */
-    public void drawBars(ShapeRenderer sr, Player p1, Player p2) {
-        sr.setProjectionMatrix(cam.combined);
+    /** Lay the bars out for a new screen size; the cache is rebuilt to match. */
+    public void resize(float screenW, float screenH) {
+        if (cache != null && screenW == this.screenW && screenH == this.screenH) return;
+        this.screenW = screenW;
+        this.screenH = screenH;
+
+        // Limit bar width so the two bars don't overlap — leave a gap in the center
+        float maxBarW = (screenW / 2f) - BAR_X_PAD - 20f;
+        barW = Math.min(BAR_WIDTH, maxBarW);
+        barBottom = screenH - BAR_Y_OFFSET - BAR_HEIGHT;
+        p1BarX = BAR_X_PAD;
+        p2BarX = screenW - BAR_X_PAD - barW;
 
-        Gdx.gl.glEnable(Gdx.gl.GL_BLEND);
-        Gdx.gl.glBlendFunc(Gdx.gl.GL_SRC_ALPHA, Gdx.gl.GL_ONE_MINUS_SRC_ALPHA);
+        // P2 label is right-aligned; its width only depends on the font
+        GlyphLayout layout = new GlyphLayout(labelFont, "P2");
+        p2LabelX = screenW - BAR_X_PAD - layout.width;
 
-        sr.begin(ShapeRenderer.ShapeType.Filled);
+        GpuResources.dispose(cache);
+        cacheHeight = (int) Math.ceil(screenH - barBottom);
+        cache = new FrameBuffer(Pixmap.Format.RGBA8888, Math.max(1, (int) screenW), cacheHeight, false);
+        GpuResources.track(cache, GpuResources.bytes(cache));
+        cacheRegion.setRegion(cache.getColorBufferTexture());
+        cacheRegion.flip(false, true);  // framebuffer textures are upside down
+        cacheCamera.setToOrtho(false, screenW, cacheHeight);
+        cacheCamera.position.y += barBottom;
+        cacheCamera.update();
+        dirty = true;
+    }
 
-        float barTop = screenH - BAR_Y_OFFSET;
-        float barBottom = barTop - BAR_HEIGHT;
+    /**
+     * Point at the cache's new texture and bake the bars again, after the GL context
+     * has been recreated. libGDX rebuilds the framebuffer itself, with a new colour
+     * texture and nothing drawn in it; the fonts are reloaded in place.
+     */
+    public void invalidate() {
+        cacheRegion.setRegion(cache.getColorBufferTexture());
+        cacheRegion.flip(false, true);
+        dirty = true;
+    }
 
-        // Limit bar width so the two bars don't overlap — leave a gap in the center
-        float maxBarW = (screenW / 2f) - BAR_X_PAD - 20f;
-        float barW = Math.min(BAR_WIDTH, maxBarW);
+    /**
+     * Bake the bars again if a fill has changed and advance the flashes. Call before
+     * anything else is queued this frame: the bake flushes the queue into the cache.
+     */
+    public void update(RenderQueue queue, Player p1, Player p2, float delta) {
+        p1Health = p1.healthPercent();
+        p2Health = p2.healthPercent();
+
+        if (p1Last >= 0 && p1Health < p1Last) {
+            p1FlashFrom = Math.max(p1Last, p1FlashTime > 0 ? p1FlashFrom : 0);
+            p1FlashTo = p1Health;
+            p1FlashTime = FLASH_TIME;
+        }
+        if (p2Last >= 0 && p2Health < p2Last) {
+            p2FlashFrom = Math.max(p2Last, p2FlashTime > 0 ? p2FlashFrom : 0);
+            p2FlashTo = p2Health;
+            p2FlashTime = FLASH_TIME;
+        }
+        p1Last = p1Health;
+        p2Last = p2Health;
+        p1FlashTime = Math.max(0, p1FlashTime - delta);
+        p2FlashTime = Math.max(0, p2FlashTime - delta);
+
+        // Interpolated health wobbles by fractions of a pixel; only whole pixels show
+        int fill1 = (int) (barW * p1Health);
+        int fill2 = (int) (barW * p2Health);
+        if (!dirty && fill1 == p1Fill && fill2 == p2Fill) return;
+        p1Fill = fill1;
+        p2Fill = fill2;
+        dirty = false;
 
+        cache.begin();
+        Gdx.gl.glClearColor(0f, 0f, 0f, 0f);
+        Gdx.gl.glClear(GL20.GL_COLOR_BUFFER_BIT);
+        queue.setProjection(RenderQueue.SCREEN, cacheCamera.combined, 0, 0, cache.getWidth(), cacheHeight);
+        // Blending off: each rect replaces what is under it, alpha and all
+        queue.shapes(RenderQueue.LAYER_HUD, RenderQueue.SCREEN, ShapeRenderer.ShapeType.Filled, false,
+            FrameTrace.HUD_BARS, barFills);
+        queue.shapes(RenderQueue.LAYER_HUD, RenderQueue.SCREEN, ShapeRenderer.ShapeType.Line, false,
+            FrameTrace.HUD_BARS, barBorders);
+        queue.sprites(RenderQueue.LAYER_HUD, RenderQueue.SCREEN, FrameTrace.HUD_TEXT, labels);
+        queue.flush();
+        cache.end();
+    }
+
+    /** Queue the baked bars and labels, and any flashes over them. */
+    public void submit(RenderQueue queue) {
+        queue.sprites(RenderQueue.LAYER_HUD, RenderQueue.SCREEN, FrameTrace.HUD_BARS, cached);
+        if (p1FlashTime > 0 || p2FlashTime > 0) {
+            queue.shapes(RenderQueue.LAYER_OVERLAY, RenderQueue.SCREEN, ShapeRenderer.ShapeType.Filled, true,
+                FrameTrace.HUD_BARS, flashes);
+        }
+    }
+
+    /** Queue the performance overlay, if it is shown, above everything else. */
+    public void submitPerf(RenderQueue queue, PerfOverlay perf) {
+        if (!perf.isVisible()) return;
+        if (perfFont == null) {
+            FreeTypeFontParameter perfParam = new FreeTypeFontParameter();
+            perfParam.size = PERF_FONT_SIZE;
+            perfParam.color = Color.WHITE;
+            perfFont = generator.generateFont(perfParam);
+            GpuResources.track(perfFont, GpuResources.bytes(perfFont));
+        }
+        perfLayout.setText(perfFont, perf.text());
+        queue.shapes(RenderQueue.LAYER_OVERLAY, RenderQueue.SCREEN, ShapeRenderer.ShapeType.Filled, true,
+            RenderQueue.NO_PHASE, perfPanel);
+        queue.sprites(RenderQueue.LAYER_OVERLAY, RenderQueue.SCREEN, RenderQueue.NO_PHASE, perfText);
+    }
+
+    // The cache holds premultiplied colour, so translucent pixels aren't darkened twice.
+    // With blending off the shapes store their colour as given, so the translucent
+    // background is premultiplied here.
+    private void drawBarFills(ShapeRenderer sr) {
         // ── P1 health bar (left side, fills left-to-right) ──
-        float p1BarX = BAR_X_PAD;
-        sr.setColor(0.2f, 0.2f, 0.2f, 0.8f);
+        sr.setColor(0.16f, 0.16f, 0.16f, 0.8f);
         sr.rect(p1BarX, barBottom, barW, BAR_HEIGHT);
         sr.setColor(0.9f, 0.15f, 0.15f, 1f);
-        sr.rect(p1BarX, barBottom, barW * p1.healthPercent(), BAR_HEIGHT);
+        sr.rect(p1BarX, barBottom, p1Fill, BAR_HEIGHT);
 
         // ── P2 health bar (right side, fills right-to-left) ──
-        float p2BarX = screenW - BAR_X_PAD - barW;
-        sr.setColor(0.2f, 0.2f, 0.2f, 0.8f);
+        sr.setColor(0.16f, 0.16f, 0.16f, 0.8f);
         sr.rect(p2BarX, barBottom, barW, BAR_HEIGHT);
-        float p2Fill = barW * p2.healthPercent();
         sr.setColor(0.15f, 0.3f, 0.9f, 1f);
         sr.rect(p2BarX + barW - p2Fill, barBottom, p2Fill, BAR_HEIGHT);
+    }
 
-        sr.end();
-
-        Gdx.gl.glDisable(Gdx.gl.GL_BLEND);
-
-        // ── Border outlines ──
-        sr.begin(ShapeRenderer.ShapeType.Line);
+    private void drawBarBorders(ShapeRenderer sr) {
         sr.setColor(Color.WHITE);
         sr.rect(p1BarX, barBottom, barW, BAR_HEIGHT);
         sr.rect(p2BarX, barBottom, barW, BAR_HEIGHT);
-        sr.end();
     }
 
-    /** Draw player labels. Call after drawBars. */
-    public void drawText(Player p1, Player p2) {
-        batch.setProjectionMatrix(cam.combined);
-        batch.begin();
-
+    private void drawLabels(SpriteBatch batch) {
         float barTop = screenH - BAR_Y_OFFSET;
-
-        // P1 label
+        // Glyph edges keep their alpha, and their colour ends up premultiplied
+        batch.setBlendFunctionSeparate(GL20.GL_SRC_ALPHA, GL20.GL_ONE_MINUS_SRC_ALPHA,
+            GL20.GL_ONE, GL20.GL_ONE_MINUS_SRC_ALPHA);
         labelFont.draw(batch, "P1", BAR_X_PAD, barTop + 54f);
+        labelFont.draw(batch, "P2", p2LabelX, barTop + 54f);
+        batch.setBlendFunction(GL20.GL_SRC_ALPHA, GL20.GL_ONE_MINUS_SRC_ALPHA);
+    }
 
-        // P2 label — right-align
-        glyphLayout.setText(labelFont, "P2");
-        labelFont.draw(batch, "P2", screenW - BAR_X_PAD - glyphLayout.width, barTop + 54f);
+    private void drawCache(SpriteBatch batch) {
+        batch.setBlendFunction(GL20.GL_ONE, GL20.GL_ONE_MINUS_SRC_ALPHA);
+        batch.draw(cacheRegion, 0, barBottom, cache.getWidth(), cacheHeight);
+        batch.setBlendFunction(GL20.GL_SRC_ALPHA, GL20.GL_ONE_MINUS_SRC_ALPHA);
+    }
+
+    private void drawFlashes(ShapeRenderer sr) {
+        if (p1FlashTime > 0) {
+            // P1 drains towards the left, so the lost part is right of the fill
+            sr.setColor(1f, 1f, 1f, 0.8f * p1FlashTime / FLASH_TIME);
+            sr.rect(p1BarX + barW * p1FlashTo, barBottom, barW * (p1FlashFrom - p1FlashTo), BAR_HEIGHT);
+        }
+        if (p2FlashTime > 0) {
+            sr.setColor(1f, 1f, 1f, 0.8f * p2FlashTime / FLASH_TIME);
+            sr.rect(p2BarX + barW * (1 - p2FlashFrom), barBottom, barW * (p2FlashFrom - p2FlashTo), BAR_HEIGHT);
+        }
+    }
+
+    // Dark panel so the overlay text reads over any stage
+    private void drawPerfPanel(ShapeRenderer sr) {
+        float top = perfTop();
+        sr.setColor(0f, 0f, 0f, 0.6f);
+        sr.rect(BAR_X_PAD - PERF_PAD, top - perfLayout.height - PERF_PAD,
+            perfLayout.width + 2 * PERF_PAD, perfLayout.height + 2 * PERF_PAD);
+    }
+
+    private void drawPerfText(SpriteBatch batch) {
+        perfFont.draw(batch, perfLayout, BAR_X_PAD, perfTop());
+    }
 
-        batch.end();
+    private float perfTop() {
+        return barBottom - 24f;
     }
 
     public void dispose() {
-        batch.dispose();
-        labelFont.dispose();
-        generator.dispose();
+        GpuResources.dispose(cache);
+        GpuResources.dispose(labelFont);
+        GpuResources.dispose(perfFont);
+        GpuResources.dispose(generator);
     }
 }
@@ -0,0 +1,121 @@
+package io.github.steven_liu.rage;
+
+import com.badlogic.gdx.graphics.Color;
+
+/**
+ * The simulation side of a fight — both players, their inputs, physics and collision.
+ * Has no rendering or input polling, so it can be stepped from any thread.
+ */
+public class Match {
+
+    // World dimensions in virtual units
+    public static final float WORLD_WIDTH  = 800;
+    public static final float WORLD_HEIGHT = 480;
+    public static final float PLAYER_RADIUS = 30f;
+    public static final float GROUND_Y = 60f;  // ground level in world units
+
+    /** What a player wants to do on the next step. */
+    public static class PlayerInput {
+        public float move;      // -1..1, fraction of MOVE_SPEED
+        public boolean jump;    // consumed by the next step
+
+        public void set(float move, boolean jump) {
+            this.move = move;
+            this.jump = jump;
+        }
+    }
+
+    public final Player player1;
+    public final Player player2;
+    public final PlayerInput input1 = new PlayerInput();
+    public final PlayerInput input2 = new PlayerInput();
+    public final Background.Type backgroundType;
+    /** Width the players can move in; at least {@link #WORLD_WIDTH}. */
+    public final float stageWidth;
+    /** Seed the stage's look was generated from; 0 for the classic backgrounds. */
+    public long stageSeed;
+    /** Where {@link #step} records its phases, or null; set by whoever steps the match. */
+    public FrameTrace.Track trace;
+
+    /** A single-screen arena, as used by the server and replays. */
+    public Match(Background.Type backgroundType) {
+        this(backgroundType, WORLD_WIDTH);
+    }
+
+    /** A stage {@code stageWidth} units wide; the players start in its middle. */
+    public Match(Background.Type backgroundType, float stageWidth) {
+        this.backgroundType = backgroundType;
+        this.stageWidth = stageWidth;
+        float center = stageWidth / 2f;
+
+        // Player 1 (red) on the left, standing on the ground
+        player1 = new Player(
+            center - WORLD_WIDTH * 0.3f,
+            GROUND_Y + PLAYER_RADIUS,
+            PLAYER_RADIUS,
+            Color.RED
+        );
+
+        // Player 2 (blue) on the right, standing on the ground
+        player2 = new Player(
+            center + WORLD_WIDTH * 0.3f,
+            GROUND_Y + PLAYER_RADIUS,
+            PLAYER_RADIUS,
+            Color.BLUE
+        );
+    }
+
+    /** Advance the simulation by delta seconds using the current inputs. */
+    public void step(float delta) {
+        long start = trace != null ? trace.begin() : 0;
+
+        // ── Input ────────────────────────────────────────────────
+        applyInput(player1, input1);
+        applyInput(player2, input2);
+
+        // ── Physics update ───────────────────────────────────────
+        player1.update(delta, GROUND_Y, 0, stageWidth);
+        player2.update(delta, GROUND_Y, 0, stageWidth);
+
+        if (trace != null) {
+            trace.end(FrameTrace.PLAYER_UPDATE, start);
+            start = trace.begin();
+        }
+
+        // ── Collision ────────────────────────────────────────────
+        resolvePlayerCollision(player1, player2);
+
+        if (trace != null) trace.end(FrameTrace.COLLISION, start);
+
+        // ── Facing ───────────────────────────────────────────────
+        player1.faceOpponent(player2);
+        player2.faceOpponent(player1);
+    }
+
+    private void applyInput(Player p, PlayerInput in) {
+        p.vx = in.move * Player.MOVE_SPEED;
+        if (in.jump) p.jump();
+        in.jump = false;
+    }
+
+    // ── Collision ────────────────────────────────────────────────────────
+
+    /** Push two circle-players apart if they overlap. */
+    private void resolvePlayerCollision(Player a, Player b) {
+        float dx = b.x - a.x;
+        float dy = b.y - a.y;
+        float dist = (float) Math.sqrt(dx * dx + dy * dy);
+        float minDist = a.radius + b.radius;
+
+        if (dist < minDist && dist > 0) {
+            float overlap = (minDist - dist) / 2f;
+            float nx = dx / dist;  // collision normal
+            float ny = dy / dist;
+
+            a.x -= nx * overlap;
+            a.y -= ny * overlap;
+            b.x += nx * overlap;
+            b.y += ny * overlap;
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package io.github.steven_liu.rage;
+
+/**
+ * One simulation tick as published by {@link SimulationThread}: the state before and
+ * after the tick, so the render thread can interpolate between them on its own.
+ */
+public class MatchSnapshot {
+
+    public final MatchState previous = new MatchState();
+    public final MatchState current = new MatchState();
+
+    public long tick;
+    public long publishNanos;  // TimeUtils.nanoTime() when the tick finished
+}
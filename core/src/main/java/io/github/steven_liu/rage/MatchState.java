@@ -0,0 +1,122 @@
+package io.github.steven_liu.rage;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * Compact snapshot of a match in progress — the background and its seed plus the dynamic
+ * state of both fighters. Used to put a match back in place after the app
+ * has been paused (or killed in the background on Android).
+ */
+public class MatchState {
+
+    // Bumped whenever the byte layout changes; older blobs are ignored
+    private static final int VERSION = 2;
+
+    public Background.Type backgroundType = Background.Type.HILLS;
+    public long stageSeed;
+    public final PlayerState p1 = new PlayerState();
+    public final PlayerState p2 = new PlayerState();
+
+    /** The per-fighter fields that change during a match. */
+    public static class PlayerState {
+        public float x, y;
+        public float vx, vy;
+        public float health;
+        public boolean grounded;
+        public int facing = 1;
+
+        public void capture(Player p) {
+            x = p.x;
+            y = p.y;
+            vx = p.vx;
+            vy = p.vy;
+            health = p.health;
+            grounded = p.grounded;
+            facing = p.facing;
+        }
+
+        public void apply(Player p) {
+            p.x = x;
+            p.y = y;
+            p.vx = vx;
+            p.vy = vy;
+            p.health = health;
+            p.grounded = grounded;
+            p.facing = facing;
+        }
+
+        private void write(DataOutputStream out) throws IOException {
+            out.writeFloat(x);
+            out.writeFloat(y);
+            out.writeFloat(vx);
+            out.writeFloat(vy);
+            out.writeFloat(health);
+            // grounded and facing share one byte
+            out.writeByte((grounded ? 1 : 0) | (facing < 0 ? 2 : 0));
+        }
+
+        private void read(DataInputStream in) throws IOException {
+            x = in.readFloat();
+            y = in.readFloat();
+            vx = in.readFloat();
+            vy = in.readFloat();
+            health = in.readFloat();
+            int flags = in.readByte();
+            grounded = (flags & 1) != 0;
+            facing = (flags & 2) != 0 ? -1 : 1;
+        }
+    }
+
+    public void capture(Match match) {
+        backgroundType = match.backgroundType;
+        stageSeed = match.stageSeed;
+        p1.capture(match.player1);
+        p2.capture(match.player2);
+    }
+
+    public void apply(Match match) {
+        p1.apply(match.player1);
+        p2.apply(match.player2);
+    }
+
+    /** Serialize to a small byte blob (52 bytes). */
+    public byte[] toBytes() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(52);
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeByte(VERSION);
+            out.writeByte(backgroundType.ordinal());
+            out.writeLong(stageSeed);
+            p1.write(out);
+            p2.write(out);
+        } catch (IOException e) {
+            // ByteArrayOutputStream never throws
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /** @return the decoded state, or null if the blob is from another version or is truncated. */
+    public static MatchState fromBytes(byte[] data) {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+        try {
+            if (in.readByte() != VERSION) return null;
+            int type = in.readByte();
+            Background.Type[] types = Background.Type.values();
+            if (type < 0 || type >= types.length) return null;
+
+            MatchState state = new MatchState();
+            state.backgroundType = types[type];
+            state.stageSeed = in.readLong();
+            state.p1.read(in);
+            state.p2.read(in);
+            return state;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+}
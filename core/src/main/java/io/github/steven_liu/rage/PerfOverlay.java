@@ -0,0 +1,169 @@
+package io.github.steven_liu.rage;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.graphics.profiling.GLProfiler;
+import com.badlogic.gdx.utils.TimeUtils;
+
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+
+/**
+ * Per-frame costs for the in-game overlay: frame time percentiles, simulation versus
+ * render time, GL counters from {@link GLProfiler}, heap and GC count, and the
+ * {@link GpuResources} totals. Drawn by
+ * {@link Hud#submitPerf}.
+ * <p>
+ * Nothing is measured while hidden, and nothing is allocated per frame while shown:
+ * frame times go into a fixed histogram and the text is rebuilt in place a few times
+ * a second.
+ */
+public class PerfOverlay {
+
+    // Frames the percentiles cover, about five seconds at 60 fps
+    private static final int WINDOW = 300;
+    // 0.25 ms buckets up to 100 ms; slower frames land in the last one
+    private static final float BUCKET_MS = 0.25f;
+    private static final int BUCKETS = 400;
+    // How often the text is rebuilt; faster is unreadable anyway
+    private static final long TEXT_INTERVAL_NANOS = 250_000_000L;
+
+    private final GLProfiler profiler = new GLProfiler(Gdx.graphics);
+    private final Runtime runtime = Runtime.getRuntime();
+    private boolean visible;
+
+    // Frame time histogram over the last WINDOW frames; the ring says which bucket to take out again
+    private final int[] histogram = new int[BUCKETS];
+    private final short[] ring = new short[WINDOW];
+    private int ringPos, ringSize;
+
+    // Timestamps for the frame in progress
+    private long frameStart, simEnd;
+    private long lastFrameStart, lastText;
+
+    // Smoothed, in nanoseconds
+    private float simNanos, renderNanos;
+    private float frameMillis;
+
+    // Last frame's GL work
+    private int drawCalls, shaderSwitches, textureBinds, vertices, flushes;
+
+    // Cleared by the collector, which is all a GC count needs and works on every backend
+    private WeakReference<Object> gcSentinel = new WeakReference<>(new Object());
+    private int gcCount;
+
+    private final StringBuilder text = new StringBuilder(256);
+
+    public boolean isVisible() {
+        return visible;
+    }
+
+    public void toggle() {
+        visible = !visible;
+        if (visible) {
+            profiler.enable();
+            profiler.reset();
+            Arrays.fill(histogram, 0);
+            ringPos = ringSize = 0;
+            lastFrameStart = lastText = 0;
+        } else {
+            profiler.disable();
+        }
+    }
+
+    /** Call first thing in the frame. */
+    public void beginFrame() {
+        if (!visible) return;
+        frameStart = TimeUtils.nanoTime();
+        if (lastFrameStart != 0) addFrame(frameStart - lastFrameStart);
+        lastFrameStart = frameStart;
+    }
+
+    /** Call once the simulation has been stepped and the rest of the frame is drawing. */
+    public void endSimulation() {
+        if (!visible) return;
+        simEnd = TimeUtils.nanoTime();
+        simNanos += (simEnd - frameStart - simNanos) * 0.1f;
+    }
+
+    /**
+     * Call after everything but the overlay itself has been drawn.
+     * @param flushes renderer begin/end runs the frame's {@link RenderQueue} needed
+     */
+    public void endFrame(int flushes) {
+        if (!visible) return;
+        long now = TimeUtils.nanoTime();
+        renderNanos += (now - simEnd - renderNanos) * 0.1f;
+
+        drawCalls = profiler.getDrawCalls();
+        shaderSwitches = profiler.getShaderSwitches();
+        textureBinds = profiler.getTextureBindings();
+        vertices = (int) profiler.getVertexCount().total;
+        this.flushes = flushes;
+        profiler.reset();
+
+        if (gcSentinel.get() == null) {
+            gcCount++;
+            gcSentinel = new WeakReference<>(new Object());
+        }
+        if (now - lastText >= TEXT_INTERVAL_NANOS) {
+            lastText = now;
+            buildText();
+        }
+    }
+
+    /** The overlay's lines, rebuilt a few times a second. */
+    public CharSequence text() {
+        return text;
+    }
+
+    private void addFrame(long nanos) {
+        frameMillis = nanos / 1_000_000f;
+        int bucket = Math.min(BUCKETS - 1, (int) (frameMillis / BUCKET_MS));
+        if (ringSize == WINDOW) histogram[ring[ringPos]]--;
+        else ringSize++;
+        histogram[bucket]++;
+        ring[ringPos] = (short) bucket;
+        ringPos = (ringPos + 1) % WINDOW;
+    }
+
+    /** Upper edge of the bucket holding the given fraction of the window's frames, in ms. */
+    private float percentile(float fraction) {
+        int target = (int) Math.ceil(ringSize * fraction);
+        int seen = 0;
+        for (int b = 0; b < BUCKETS; b++) {
+            seen += histogram[b];
+            if (seen >= target) return (b + 1) * BUCKET_MS;
+        }
+        return BUCKETS * BUCKET_MS;
+    }
+
+    private void buildText() {
+        text.setLength(0);
+        text.append("frame ");
+        millis(frameMillis);
+        text.append("  p50 ");
+        millis(percentile(0.5f));
+        text.append("  p99 ");
+        millis(percentile(0.99f));
+        text.append("\nsim ");
+        millis(simNanos / 1_000_000f);
+        text.append("  render ");
+        millis(renderNanos / 1_000_000f);
+        text.append("\ndraws ").append(drawCalls)
+            .append("  shaders ").append(shaderSwitches)
+            .append("  binds ").append(textureBinds)
+            .append("  verts ").append(vertices)
+            .append("  flushes ").append(flushes);
+        long used = runtime.totalMemory() - runtime.freeMemory();
+        text.append("\nheap ").append((int) (used >> 20)).append('/').append((int) (runtime.maxMemory() >> 20))
+            .append(" MB  gc ").append(gcCount);
+        text.append("\ngpu ").append(GpuResources.count()).append(" objects  ")
+            .append((int) (GpuResources.totalBytes() >> 10)).append(" KB");
+    }
+
+    // StringBuilder.append(float) allocates, so tenths of a millisecond are written by hand
+    private void millis(float ms) {
+        int tenths = Math.round(ms * 10f);
+        text.append(tenths / 10).append('.').append(tenths % 10).append(" ms");
+    }
+}
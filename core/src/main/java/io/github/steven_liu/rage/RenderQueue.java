@@ -0,0 +1,192 @@
+package io.github.steven_liu.rage;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.graphics.GL20;
+import com.badlogic.gdx.graphics.g2d.SpriteBatch;
+import com.badlogic.gdx.graphics.glutils.ShapeRenderer;
+import com.badlogic.gdx.math.Matrix4;
+
+import java.util.Arrays;
+
+/**
+ * Collects a frame's draw commands from the stage, the sprites, the HUD and the
+ * overlays, then draws them sorted by state, so each run of commands that shares a
+ * projection, renderer and blend mode goes out in one begin/end.
+ * <p>
+ * Layers are drawn in order. Within a layer, filled shapes come first, then lines,
+ * then sprites; commands with the same state keep the order they were submitted in.
+ * So a command only has to be in a later layer if it must cover something drawn by a
+ * different renderer.
+ * <p>
+ * Commands are objects the caller keeps across frames, so submitting allocates
+ * nothing.
+ */
+public class RenderQueue {
+
+    /** Draws into a {@link ShapeRenderer} that has already begun. */
+    public interface Shapes {
+        void draw(ShapeRenderer sr);
+    }
+
+    /** Draws into a {@link SpriteBatch} that has already begun. */
+    public interface Sprites {
+        void draw(SpriteBatch batch);
+    }
+
+    // Layers, back to front
+    public static final int LAYER_STAGE = 0;
+    public static final int LAYER_WORLD = 1;
+    public static final int LAYER_HUD = 2;
+    public static final int LAYER_OVERLAY = 3;
+
+    // Projections
+    public static final int WORLD = 0;
+    public static final int SCREEN = 1;
+    private static final int PROJECTIONS = 2;
+
+    /** Passed as the phase of commands that aren't traced. */
+    public static final int NO_PHASE = -1;
+
+    // Passes, in the order they run within a layer
+    private static final int FILLED = 0;
+    private static final int LINE = 1;
+    private static final int SPRITES = 2;
+
+    // Sort key: layer | projection | pass | blend | submission order
+    private static final int ORDER_BITS = 20;
+    private static final long ORDER_MASK = (1L << ORDER_BITS) - 1;
+    private static final int BLEND_SHIFT = ORDER_BITS;
+    private static final int PASS_SHIFT = BLEND_SHIFT + 1;
+    private static final int PROJECTION_SHIFT = PASS_SHIFT + 2;
+    private static final int LAYER_SHIFT = PROJECTION_SHIFT + 4;
+
+    private final ShapeRenderer shapes;
+    private final SpriteBatch batch;
+
+    private final Matrix4[] projections = new Matrix4[PROJECTIONS];
+    private final int[][] viewports = new int[PROJECTIONS][4];
+
+    private long[] keys = new long[64];
+    private Object[] commands = new Object[64];
+    private int[] phases = new int[64];
+    private int count;
+
+    /** Where command timings go, or null. */
+    public FrameTrace.Track trace;
+
+    /** Begin/end runs of either renderer since {@link #resetStats}: one per flush to the GPU at most. */
+    public int flushes;
+    /** Commands drawn since {@link #resetStats}. */
+    public int commandsDrawn;
+
+    public RenderQueue(ShapeRenderer shapes, SpriteBatch batch) {
+        this.shapes = shapes;
+        this.batch = batch;
+    }
+
+    /** Set what a projection id means for this frame: a camera matrix and the GL viewport it draws into. */
+    public void setProjection(int projection, Matrix4 combined, int x, int y, int width, int height) {
+        projections[projection] = combined;
+        int[] viewport = viewports[projection];
+        viewport[0] = x;
+        viewport[1] = y;
+        viewport[2] = width;
+        viewport[3] = height;
+    }
+
+    /**
+     * Queue shapes.
+     * @param type {@link ShapeRenderer.ShapeType#Filled} or {@link ShapeRenderer.ShapeType#Line}
+     * @param blend whether alpha blending is on while they draw
+     * @param phase {@link FrameTrace} phase the command is timed as, or {@link #NO_PHASE}
+     */
+    public void shapes(int layer, int projection, ShapeRenderer.ShapeType type, boolean blend, int phase, Shapes command) {
+        int pass = type == ShapeRenderer.ShapeType.Line ? LINE : FILLED;
+        add(layer, projection, pass, blend, phase, command);
+    }
+
+    /** Queue sprites. The batch blends as usual. */
+    public void sprites(int layer, int projection, int phase, Sprites command) {
+        add(layer, projection, SPRITES, true, phase, command);
+    }
+
+    private void add(int layer, int projection, int pass, boolean blend, int phase, Object command) {
+        if (count == keys.length) {
+            keys = Arrays.copyOf(keys, count * 2);
+            commands = Arrays.copyOf(commands, count * 2);
+            phases = Arrays.copyOf(phases, count * 2);
+        }
+        keys[count] = (long) layer << LAYER_SHIFT | (long) projection << PROJECTION_SHIFT
+            | (long) pass << PASS_SHIFT | (blend ? 1L : 0L) << BLEND_SHIFT | count;
+        commands[count] = command;
+        phases[count] = phase;
+        count++;
+    }
+
+    /** Draw everything queued, then empty the queue. */
+    public void flush() {
+        Arrays.sort(keys, 0, count);
+
+        int currentProjection = -1, currentPass = -1;
+        boolean blending = false;
+        for (int i = 0; i < count; i++) {
+            long key = keys[i];
+            int index = (int) (key & ORDER_MASK);
+            int projection = (int) (key >>> PROJECTION_SHIFT) & 0xF;
+            int pass = (int) (key >>> PASS_SHIFT) & 0x3;
+            boolean blend = (key >>> BLEND_SHIFT & 1) != 0;
+
+            if (projection != currentProjection || pass != currentPass || (pass != SPRITES && blend != blending)) {
+                end(currentPass);
+                if (currentPass == SPRITES) blending = false;   // SpriteBatch.end() turns blending off
+                if (projection != currentProjection) {
+                    int[] v = viewports[projection];
+                    Gdx.gl.glViewport(v[0], v[1], v[2], v[3]);
+                    shapes.setProjectionMatrix(projections[projection]);
+                    batch.setProjectionMatrix(projections[projection]);
+                    currentProjection = projection;
+                }
+                if (pass != SPRITES && blend != blending) {
+                    if (blend) {
+                        Gdx.gl.glEnable(GL20.GL_BLEND);
+                        Gdx.gl.glBlendFunc(GL20.GL_SRC_ALPHA, GL20.GL_ONE_MINUS_SRC_ALPHA);
+                    } else {
+                        Gdx.gl.glDisable(GL20.GL_BLEND);
+                    }
+                    blending = blend;
+                }
+                begin(pass);
+                currentPass = pass;
+            }
+
+            int phase = phases[index];
+            long start = trace != null && phase != NO_PHASE ? trace.begin() : 0;
+            Object command = commands[index];
+            if (pass == SPRITES) ((Sprites) command).draw(batch);
+            else ((Shapes) command).draw(shapes);
+            if (trace != null && phase != NO_PHASE) trace.end(phase, start);
+            commands[index] = null;
+            commandsDrawn++;
+        }
+        end(currentPass);
+        if (blending) Gdx.gl.glDisable(GL20.GL_BLEND);
+        count = 0;
+    }
+
+    public void resetStats() {
+        flushes = 0;
+        commandsDrawn = 0;
+    }
+
+    private void begin(int pass) {
+        if (pass == SPRITES) batch.begin();
+        else shapes.begin(pass == LINE ? ShapeRenderer.ShapeType.Line : ShapeRenderer.ShapeType.Filled);
+    }
+
+    private void end(int pass) {
+        if (pass < 0) return;
+        if (pass == SPRITES) batch.end();
+        else shapes.end();
+        flushes++;
+    }
+}
@@ -0,0 +1,133 @@
+package io.github.steven_liu.rage;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * A recorded match: the seed it started from, both players' inputs for every tick
+ * and the result the submitter claims. {@link Match} is deterministic, so replaying
+ * the inputs from the seed must reproduce the result exactly.
+ * <p>
+ * Inputs take two bytes per player per tick — the stick as -127..127 and a flags byte
+ * — so ten minutes of play is about 140 KB.
+ */
+public class Replay {
+
+    // Bumped whenever the byte layout changes; older blobs are ignored
+    private static final int VERSION = 1;
+
+    public static final float TICK_DELTA = 1f / SimulationThread.TICK_RATE;
+    public static final int BYTES_PER_TICK = 4;
+    public static final int FLAG_JUMP = 1;
+
+    /** Longer submissions are rejected unread: ten minutes at the tick rate. */
+    public static final int MAX_TICKS = 10 * 60 * SimulationThread.TICK_RATE;
+
+    public static final int DRAW = 0;
+
+    public long seed;
+    public int ticks;
+    public byte[] inputs;           // BYTES_PER_TICK per tick: move1, flags1, move2, flags2
+
+    // What the submitter says happened
+    public float health1, health2;
+    public int winner;              // 1, 2 or DRAW
+
+    /** The background a match with this seed is played on. */
+    public static Background.Type backgroundFor(long seed) {
+        return Background.typeForSeed(seed);
+    }
+
+    /** Winner by remaining health. There is no knockout yet, so a level match is a draw. */
+    public static int winnerOf(Match match) {
+        float h1 = match.player1.health;
+        float h2 = match.player2.health;
+        return h1 > h2 ? 1 : (h2 > h1 ? 2 : DRAW);
+    }
+
+    /** A move in -1..1 as one byte. The server's INPUT packets use this encoding too. */
+    public static byte encodeMove(float move) {
+        return (byte) Math.round(Math.max(-1f, Math.min(1f, move)) * 127f);
+    }
+
+    public static float decodeMove(byte move) {
+        return Math.max(-127, move) / 127f;
+    }
+
+    /** Store the inputs for {@code tick}; {@link #inputs} must be big enough. */
+    public void record(int tick, Match.PlayerInput input1, Match.PlayerInput input2) {
+        int i = tick * BYTES_PER_TICK;
+        inputs[i] = encodeMove(input1.move);
+        inputs[i + 1] = (byte) (input1.jump ? FLAG_JUMP : 0);
+        inputs[i + 2] = encodeMove(input2.move);
+        inputs[i + 3] = (byte) (input2.jump ? FLAG_JUMP : 0);
+    }
+
+    /** Load the inputs recorded for {@code tick} into the match. */
+    public void applyInputs(int tick, Match match) {
+        int i = tick * BYTES_PER_TICK;
+        match.input1.set(decodeMove(inputs[i]), (inputs[i + 1] & FLAG_JUMP) != 0);
+        match.input2.set(decodeMove(inputs[i + 2]), (inputs[i + 3] & FLAG_JUMP) != 0);
+    }
+
+    /** Fill in the claimed result from a match that has finished playing this replay. */
+    public void claim(Match match) {
+        health1 = match.player1.health;
+        health2 = match.player2.health;
+        winner = winnerOf(match);
+    }
+
+    public byte[] toBytes() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(25 + ticks * BYTES_PER_TICK);
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeByte(VERSION);
+            out.writeLong(seed);
+            out.writeInt(ticks);
+            out.write(inputs, 0, ticks * BYTES_PER_TICK);
+            out.writeFloat(health1);
+            out.writeFloat(health2);
+            out.writeByte(winner);
+        } catch (IOException e) {
+            // ByteArrayOutputStream never throws
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * @param into reused if given, so a caller decoding many replays doesn't allocate for each
+     * @return the decoded replay, or null if the blob is from another version, truncated or
+     *         longer than {@link #MAX_TICKS}
+     */
+    public static Replay fromBytes(byte[] data, Replay into) {
+        return read(ByteBuffer.wrap(data), into);
+    }
+
+    /**
+     * Decode from the buffer's position, e.g. straight out of a memory-mapped file.
+     * Same layout and results as {@link #fromBytes}.
+     */
+    public static Replay read(ByteBuffer in, Replay into) {
+        try {
+            if (in.get() != VERSION) return null;
+            Replay replay = into != null ? into : new Replay();
+            replay.seed = in.getLong();
+            int ticks = in.getInt();
+            if (ticks < 0 || ticks > MAX_TICKS) return null;
+            replay.ticks = ticks;
+            int length = ticks * BYTES_PER_TICK;
+            if (replay.inputs == null || replay.inputs.length < length) replay.inputs = new byte[length];
+            in.get(replay.inputs, 0, length);
+            replay.health1 = in.getFloat();
+            replay.health2 = in.getFloat();
+            replay.winner = in.get();
+            return replay;
+        } catch (BufferUnderflowException e) {
+            return null;
+        }
+    }
+}
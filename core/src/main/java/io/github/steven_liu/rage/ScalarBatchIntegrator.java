@@ -0,0 +1,44 @@
+package io.github.steven_liu.rage;
+
+/** {@link Player#update} over arrays; the fallback where the Vector API isn't available. */
+public class ScalarBatchIntegrator implements BatchIntegrator {
+
+    @Override
+    public void integrate(Bodies b, float delta, float groundY, float minX, float maxX) {
+        integrate(b, 0, b.count, delta, groundY, minX, maxX);
+    }
+
+    /** Step bodies {@code from} (inclusive) to {@code to} (exclusive); SIMD integrators use it for the tail. */
+    public static void integrate(Bodies b, int from, int to, float delta, float groundY, float minX, float maxX) {
+        float[] x = b.x, y = b.y, vx = b.vx, vy = b.vy, radius = b.radius;
+        boolean[] grounded = b.grounded;
+        float fall = Player.GRAVITY * delta;
+        for (int i = from; i < to; i++) {
+            float r = radius[i];
+            float vyi = vy[i];
+            if (!grounded[i]) vyi += fall;
+
+            float xi = x[i] + vx[i] * delta;
+            float yi = y[i] + vyi * delta;
+
+            boolean onGround = yi - r <= groundY;
+            if (onGround) {
+                yi = groundY + r;
+                vyi = 0;
+            }
+
+            if (xi - r < minX) xi = minX + r;
+            if (xi + r > maxX) xi = maxX - r;
+
+            x[i] = xi;
+            y[i] = yi;
+            vy[i] = vyi;
+            grounded[i] = onGround;
+        }
+    }
+
+    @Override
+    public String name() {
+        return "scalar";
+    }
+}
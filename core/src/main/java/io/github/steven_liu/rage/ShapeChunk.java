@@ -0,0 +1,133 @@
+package io.github.steven_liu.rage;
+
+import com.badlogic.gdx.graphics.Color;
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.graphics.glutils.ShapeRenderer;
+import com.badlogic.gdx.utils.FloatArray;
+
+/**
+ * Recorded filled shapes covering one slice of a stage, replayed into a
+ * {@link ShapeRenderer} each frame or rasterized once into a {@link Pixmap}. Recording
+ * happens once, when the slice comes near the view; the buffers are kept and reused
+ * for another slice after it leaves.
+ * <p>
+ * Shapes are recorded into depth layers. Shapes near a slice edge overhang into the
+ * neighbouring slice, so the renderer draws each layer of every visible chunk before
+ * moving on to the next layer.
+ */
+public class ShapeChunk {
+
+    public static final int LAYERS = 5;
+
+    // Opcodes, each followed by its arguments in the same float buffer
+    private static final float COLOR = 0, RECT = 1, CIRCLE = 2, TRIANGLE = 3;
+
+    private final FloatArray[] layers = new FloatArray[LAYERS];
+    private FloatArray ops;
+
+    /** Left and right edge of the slice, in world units. */
+    public float x0, x1;
+    /** Index of the slice along the stage, or -1 while the chunk is free. */
+    public int index = -1;
+
+    public ShapeChunk() {
+        for (int i = 0; i < LAYERS; i++) layers[i] = new FloatArray(64);
+        ops = layers[0];
+    }
+
+    public void clear() {
+        for (FloatArray layer : layers) layer.clear();
+        ops = layers[0];
+        index = -1;
+    }
+
+    /** Record the following shapes into this depth layer; 0 is the back. */
+    public void layer(int layer) {
+        ops = layers[layer];
+    }
+
+    public void color(float r, float g, float b) {
+        ops.add(COLOR);
+        ops.add(r, g, b);
+    }
+
+    public void color(Color c) {
+        color(c.r, c.g, c.b);
+    }
+
+    public void rect(float x, float y, float w, float h) {
+        ops.add(RECT);
+        ops.add(x, y, w, h);
+    }
+
+    public void circle(float x, float y, float radius, int segments) {
+        ops.add(CIRCLE);
+        ops.add(x, y, radius, segments);
+    }
+
+    public void triangle(float x1, float y1, float x2, float y2, float x3, float y3) {
+        ops.add(TRIANGLE);
+        ops.add(x1, y1, x2, y2);
+        ops.add(x3, y3);
+    }
+
+    /** Replay one layer's shapes. Call inside {@code sr.begin(Filled) ... end()}. */
+    public void draw(ShapeRenderer sr, int layer) {
+        float[] o = layers[layer].items;
+        int n = layers[layer].size;
+        int i = 0;
+        while (i < n) {
+            float op = o[i++];
+            if (op == COLOR) {
+                sr.setColor(o[i], o[i + 1], o[i + 2], 1f);
+                i += 3;
+            } else if (op == RECT) {
+                sr.rect(o[i], o[i + 1], o[i + 2], o[i + 3]);
+                i += 4;
+            } else if (op == CIRCLE) {
+                sr.circle(o[i], o[i + 1], o[i + 2], (int) o[i + 3]);
+                i += 4;
+            } else {
+                sr.triangle(o[i], o[i + 1], o[i + 2], o[i + 3], o[i + 4], o[i + 5]);
+                i += 6;
+            }
+        }
+    }
+
+    /**
+     * Rasterize one layer into a pixmap whose left edge is at world x {@code originX}.
+     * Doesn't touch GL, so it can run on any thread.
+     * @param scale pixels per world unit
+     */
+    public void draw(Pixmap pm, int layer, float originX, float scale) {
+        float[] o = layers[layer].items;
+        int n = layers[layer].size;
+        int height = pm.getHeight();
+        int i = 0;
+        while (i < n) {
+            float op = o[i++];
+            if (op == COLOR) {
+                pm.setColor(o[i], o[i + 1], o[i + 2], 1f);
+                i += 3;
+            } else if (op == RECT) {
+                // Round both edges so neighbouring rects meet without gaps
+                int left = Math.round((o[i] - originX) * scale);
+                int right = Math.round((o[i] + o[i + 2] - originX) * scale);
+                int top = height - Math.round((o[i + 1] + o[i + 3]) * scale);
+                int bottom = height - Math.round(o[i + 1] * scale);
+                pm.fillRectangle(left, top, right - left, bottom - top);
+                i += 4;
+            } else if (op == CIRCLE) {
+                pm.fillCircle(Math.round((o[i] - originX) * scale), height - Math.round(o[i + 1] * scale),
+                    Math.round(o[i + 2] * scale));
+                i += 4;
+            } else {
+                pm.fillTriangle(
+                    Math.round((o[i] - originX) * scale), height - Math.round(o[i + 1] * scale),
+                    Math.round((o[i + 2] - originX) * scale), height - Math.round(o[i + 3] * scale),
+                    Math.round((o[i + 4] - originX) * scale), height - Math.round(o[i + 5] * scale));
+                i += 6;
+            }
+        }
+    }
+}
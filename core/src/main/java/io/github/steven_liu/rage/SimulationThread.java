@@ -0,0 +1,111 @@
+package io.github.steven_liu.rage;
+
+import com.badlogic.gdx.utils.TimeUtils;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Steps a {@link Match} on its own thread at a fixed tick rate and publishes each tick
+ * through a {@link SnapshotExchange}. The render thread only writes inputs and reads
+ * snapshots, so a slow frame never delays a tick and a slow tick never delays a frame.
+ */
+public class SimulationThread implements Runnable {
+
+    public static final int TICK_RATE = 60;
+    public static final long TICK_NANOS = 1_000_000_000L / TICK_RATE;
+    private static final float TICK_DELTA = 1f / TICK_RATE;
+
+    // If the thread falls this far behind (e.g. after a debugger pause), drop ticks instead of catching up
+    private static final int MAX_CATCH_UP_TICKS = 5;
+
+    // One simulation thread runs at a time, so they all share a track
+    private static final FrameTrace.Track TRACE = FrameTrace.track("simulation");
+
+    private final Match match;
+    private final SnapshotExchange exchange = new SnapshotExchange();
+
+    // Inputs written by the render thread. Jumps are latched until a tick consumes them.
+    private volatile float move1, move2;
+    private final AtomicBoolean jump1 = new AtomicBoolean();
+    private final AtomicBoolean jump2 = new AtomicBoolean();
+
+    private volatile boolean running;
+    private Thread thread;
+    private long tick;
+
+    public SimulationThread(Match match) {
+        this.match = match;
+        match.trace = TRACE;
+        exchange.reset(match, 0, TimeUtils.nanoTime());
+    }
+
+    public void start() {
+        if (thread != null) return;
+        running = true;
+        thread = new Thread(this, "simulation");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /** Stop stepping and wait for the current tick to finish. Afterwards the match can be read directly. */
+    public void stop() {
+        if (thread == null) return;
+        running = false;
+        LockSupport.unpark(thread);
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        thread = null;
+        // Restarting resumes from the current state without interpolating across the gap
+        exchange.reset(match, tick, TimeUtils.nanoTime());
+    }
+
+    /** Called from the render thread. */
+    public void setInput1(float move, boolean jump) {
+        move1 = move;
+        if (jump) jump1.set(true);
+    }
+
+    /** Called from the render thread. */
+    public void setInput2(float move, boolean jump) {
+        move2 = move;
+        if (jump) jump2.set(true);
+    }
+
+    /** Called from the render thread: the newest tick. */
+    public MatchSnapshot latest() {
+        return exchange.latest();
+    }
+
+    @Override
+    public void run() {
+        long nextTick = TimeUtils.nanoTime();
+        while (running) {
+            long now = TimeUtils.nanoTime();
+            if (now < nextTick) {
+                LockSupport.parkNanos(nextTick - now);
+                continue;
+            }
+            if (now - nextTick > MAX_CATCH_UP_TICKS * TICK_NANOS) nextTick = now;
+
+            long start = TRACE.begin();
+            MatchSnapshot out = exchange.writeBuffer();
+            out.previous.capture(match);
+
+            match.input1.set(move1, jump1.getAndSet(false));
+            match.input2.set(move2, jump2.getAndSet(false));
+            match.step(TICK_DELTA);
+
+            out.current.capture(match);
+            out.tick = ++tick;
+            out.publishNanos = TimeUtils.nanoTime();
+            exchange.publish();
+            TRACE.end(FrameTrace.TICK, start);
+
+            nextTick += TICK_NANOS;
+        }
+    }
+}
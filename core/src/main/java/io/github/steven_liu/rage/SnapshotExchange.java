@@ -0,0 +1,51 @@
+package io.github.steven_liu.rage;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Lock-free triple buffer handing {@link MatchSnapshot}s from one writer thread to
+ * one reader thread. The writer always has a buffer to fill and the reader always
+ * has a complete one to read, so neither ever waits on the other.
+ */
+public class SnapshotExchange {
+
+    // Low two bits: index of the middle buffer. FRESH: it holds a snapshot the reader hasn't taken yet.
+    private static final int INDEX_MASK = 3;
+    private static final int FRESH = 4;
+
+    private final MatchSnapshot[] buffers = {new MatchSnapshot(), new MatchSnapshot(), new MatchSnapshot()};
+    private final AtomicInteger middle = new AtomicInteger(1);
+    private int back = 0;   // only touched by the writer
+    private int front = 2;  // only touched by the reader
+
+    /** Fill every buffer with the same state, before either thread starts using the exchange. */
+    public void reset(Match match, long tick, long nanos) {
+        for (MatchSnapshot s : buffers) {
+            s.previous.capture(match);
+            s.current.capture(match);
+            s.tick = tick;
+            s.publishNanos = nanos;
+        }
+        middle.set(1);
+        back = 0;
+        front = 2;
+    }
+
+    /** Writer: the buffer to fill next. Stays the same until {@link #publish()}. */
+    public MatchSnapshot writeBuffer() {
+        return buffers[back];
+    }
+
+    /** Writer: hand the filled buffer over, replacing any snapshot the reader hasn't picked up. */
+    public void publish() {
+        back = middle.getAndSet(back | FRESH) & INDEX_MASK;
+    }
+
+    /** Reader: the newest published snapshot. It is not written to until the next call. */
+    public MatchSnapshot latest() {
+        if ((middle.get() & FRESH) != 0) {
+            front = middle.getAndSet(front) & INDEX_MASK;
+        }
+        return buffers[front];
+    }
+}
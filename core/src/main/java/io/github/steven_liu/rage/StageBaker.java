@@ -0,0 +1,183 @@
+package io.github.steven_liu.rage;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.graphics.PixmapIO;
+import com.badlogic.gdx.utils.Disposable;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Rasterizes background slices into {@link Pixmap}s on a worker thread, so the GL
+ * thread only has to upload finished images. Finished slices are written to a disk
+ * cache keyed by the stage's look and the resolution; a stage seen before loads from
+ * there without generating anything.
+ */
+public class StageBaker implements Disposable {
+
+    private static final String TAG = "StageBaker";
+
+    // Bumped whenever Background or the rasterizer changes what a seed looks like, so old files are ignored
+    private static final int GENERATOR_VERSION = 1;
+    // Oldest files beyond this are deleted when a baker starts
+    private static final int MAX_CACHE_FILES = 256;
+
+    /** A finished slice, handed to the GL thread by {@link #poll()}. */
+    public static final class Baked {
+        public final int index;
+        public final Pixmap pixmap;
+
+        Baked(int index, Pixmap pixmap) {
+            this.index = index;
+            this.pixmap = pixmap;
+        }
+    }
+
+    private final Background background;
+    private final FileHandle cacheDir;
+    private final int pixelHeight;
+    private final float scale;
+    private final ExecutorService worker;
+    private final ConcurrentLinkedQueue<Baked> done = new ConcurrentLinkedQueue<>();
+
+    // Worker-only scratch: a slice and its neighbours, whose shapes reach into it
+    private final ShapeChunk[] scratch = {new ShapeChunk(), new ShapeChunk(), new ShapeChunk()};
+
+    // Slices still worth baking; requests outside this range are skipped
+    private volatile int wantedFrom, wantedTo = Integer.MAX_VALUE;
+
+    /** Slices rasterized from scratch and slices read from the disk cache. */
+    public final AtomicInteger generated = new AtomicInteger();
+    public final AtomicInteger cacheHits = new AtomicInteger();
+
+    /**
+     * @param pixelHeight resolution: pixels for the full world height
+     * @param cacheDir where baked slices are kept between runs, or null for no disk cache
+     */
+    public StageBaker(Background background, int pixelHeight, FileHandle cacheDir) {
+        this.background = background;
+        this.pixelHeight = pixelHeight;
+        this.scale = pixelHeight / background.getWorldHeight();
+        this.cacheDir = cacheDir;
+        worker = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "stage-baker");
+            t.setDaemon(true);
+            return t;
+        });
+        if (cacheDir != null) submit(this::pruneCache);
+    }
+
+    /** Bake a slice in the background; pick it up later from {@link #poll()}. */
+    public void request(int index) {
+        submit(() -> {
+            if (index < wantedFrom || index > wantedTo) return;
+            Pixmap pixmap = load(index);
+            if (pixmap == null) {
+                pixmap = rasterize(index);
+                generated.incrementAndGet();
+                save(index, pixmap);
+            }
+            done.add(new Baked(index, pixmap));
+            // Finished after dispose() emptied the queue; nobody else will free it
+            if (worker.isShutdown()) drain();
+        });
+    }
+
+    /** Requests for slices outside this range that haven't started yet are dropped. */
+    public void setWanted(int from, int to) {
+        wantedFrom = from;
+        wantedTo = to;
+    }
+
+    /** @return the next finished slice, or null. The caller owns (and must dispose) its pixmap. */
+    public Baked poll() {
+        return done.poll();
+    }
+
+    private void submit(Runnable task) {
+        try {
+            worker.execute(task);
+        } catch (RejectedExecutionException e) {
+            // Disposed
+        }
+    }
+
+    // ── Worker thread ────────────────────────────────────────────────────
+
+    private Pixmap rasterize(int index) {
+        int width = Math.round((Math.min(background.getWorldWidth(), (index + 1) * Background.CHUNK_WIDTH)
+            - index * Background.CHUNK_WIDTH) * scale);
+        Pixmap pixmap = new Pixmap(width, pixelHeight, Pixmap.Format.RGB888);
+        pixmap.setBlending(Pixmap.Blending.None);
+
+        int count = 0;
+        for (int i = index - 1; i <= index + 1; i++) {
+            if (i < 0 || i >= background.chunkCount()) continue;
+            background.build(i, scratch[count++]);
+        }
+        float originX = index * Background.CHUNK_WIDTH;
+        for (int layer = 0; layer < ShapeChunk.LAYERS; layer++) {
+            for (int c = 0; c < count; c++) scratch[c].draw(pixmap, layer, originX, scale);
+        }
+        return pixmap;
+    }
+
+    private FileHandle cacheFile(int index) {
+        if (cacheDir == null) return null;
+        return cacheDir.child(background.cacheKey() + "-" + pixelHeight + "p-v" + GENERATOR_VERSION + "-" + index + ".cim");
+    }
+
+    private Pixmap load(int index) {
+        FileHandle file = cacheFile(index);
+        if (file == null || !file.exists()) return null;
+        try {
+            Pixmap pixmap = PixmapIO.readCIM(file);
+            cacheHits.incrementAndGet();
+            // Keep recently used stages from being pruned
+            file.file().setLastModified(System.currentTimeMillis());
+            return pixmap;
+        } catch (GdxRuntimeException e) {
+            // Truncated by a crash or a full disk; bake it again
+            file.delete();
+            return null;
+        }
+    }
+
+    private void save(int index, Pixmap pixmap) {
+        FileHandle file = cacheFile(index);
+        if (file == null) return;
+        try {
+            PixmapIO.writeCIM(file, pixmap);
+        } catch (GdxRuntimeException e) {
+            Gdx.app.error(TAG, "Could not cache " + file.name(), e);
+        }
+    }
+
+    private void pruneCache() {
+        FileHandle[] files = cacheDir.list(".cim");
+        if (files.length <= MAX_CACHE_FILES) return;
+        Arrays.sort(files, Comparator.comparingLong(FileHandle::lastModified));
+        for (int i = 0; i < files.length - MAX_CACHE_FILES; i++) files[i].delete();
+    }
+
+    /** Stops the worker. Pixmaps finished but not polled are freed, including one still being baked. */
+    @Override
+    public void dispose() {
+        worker.shutdownNow();
+        drain();
+    }
+
+    // Either thread may get here; poll hands each pixmap to only one of them
+    private void drain() {
+        Baked b;
+        while ((b = done.poll()) != null) b.pixmap.dispose();
+    }
+}
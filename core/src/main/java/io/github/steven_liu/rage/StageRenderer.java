@@ -0,0 +1,179 @@
+package io.github.steven_liu.rage;
+
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.g2d.SpriteBatch;
+import com.badlogic.gdx.graphics.glutils.ShapeRenderer;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.Disposable;
+
+/**
+ * Streams a {@link Background} in slices around the camera and draws only the ones
+ * in view. Slices are built once they come within {@link #BUILD_MARGIN} of the view
+ * and handed back to a pool once they are further than that, so the work per frame
+ * depends on how much of the stage is on screen, not on how long the stage is.
+ * <p>
+ * With a {@link StageBaker}, each built slice is also baked into a texture off the GL
+ * thread. Slices are drawn as shapes until their texture arrives, then as one quad.
+ */
+public class StageRenderer implements Disposable {
+
+    // Build a little ahead of the view so a slice is ready before it scrolls in
+    private static final float BUILD_MARGIN = Background.CHUNK_WIDTH;
+    // Texture uploads per frame; more would show up as a hitch when a stage starts
+    private static final int MAX_UPLOADS_PER_FRAME = 2;
+
+    private final Background background;
+    private final StageBaker baker;               // null: always draw shapes
+    private final ShapeChunk[] slots;             // built chunk per slice index, or null
+    private final Texture[] textures;             // baked slice per index, or null
+    private final Array<ShapeChunk> pool = new Array<>(false, 8);
+    private int builtFrom, builtTo = -1;          // slice range currently built
+
+    /** Slices built since creation, for profiling the streaming work. */
+    public int chunksBuilt;
+    /** Baked slices uploaded since creation. */
+    public int texturesUploaded;
+
+    public StageRenderer(Background background) {
+        this(background, null);
+    }
+
+    /** @param baker bakes slices into textures; owned and disposed by this renderer */
+    public StageRenderer(Background background, StageBaker baker) {
+        this.background = background;
+        this.baker = baker;
+        this.slots = new ShapeChunk[background.chunkCount()];
+        this.textures = new Texture[slots.length];
+    }
+
+    /** Build slices approaching the view and release those that left it. */
+    public void update(float viewLeft, float viewRight) {
+        int from = Math.max(0, sliceAt(viewLeft - BUILD_MARGIN));
+        int to = Math.min(slots.length - 1, sliceAt(viewRight + BUILD_MARGIN));
+        if (baker != null) baker.setWanted(from, to);
+
+        // Release what fell out of range; only the old range is visited
+        for (int i = builtFrom; i <= builtTo; i++) {
+            if ((i < from || i > to) && slots[i] != null) {
+                slots[i].clear();
+                pool.add(slots[i]);
+                slots[i] = null;
+                if (textures[i] != null) {
+                    GpuResources.dispose(textures[i]);
+                    textures[i] = null;
+                }
+            }
+        }
+        for (int i = from; i <= to; i++) {
+            if (slots[i] != null) continue;
+            ShapeChunk chunk = pool.size > 0 ? pool.pop() : new ShapeChunk();
+            background.build(i, chunk);
+            slots[i] = chunk;
+            chunksBuilt++;
+            if (baker != null) baker.request(i);
+        }
+        builtFrom = from;
+        builtTo = to;
+
+        if (baker != null) upload();
+    }
+
+    private void upload() {
+        for (int n = 0; n < MAX_UPLOADS_PER_FRAME; n++) {
+            StageBaker.Baked baked = baker.poll();
+            if (baked == null) return;
+            int i = baked.index;
+            // The slice may have scrolled away (or been baked twice) while the worker was busy
+            if (slots[i] != null && textures[i] == null) {
+                Texture texture = new Texture(baked.pixmap);
+                texture.setFilter(Texture.TextureFilter.Linear, Texture.TextureFilter.Linear);
+                textures[i] = GpuResources.track(texture, GpuResources.bytes(texture));
+                texturesUploaded++;
+            }
+            baked.pixmap.dispose();
+        }
+    }
+
+    /**
+     * Draw the slices in view that have no texture yet. Call inside
+     * {@code sr.begin(Filled) ... end()}, before {@link #drawBaked}.
+     */
+    public void draw(ShapeRenderer sr, float viewLeft, float viewRight) {
+        // Shapes reach into their neighbours, so a slice just outside the view can still show
+        int from = Math.max(builtFrom, sliceAt(viewLeft - Background.MAX_OVERHANG));
+        int to = Math.min(builtTo, sliceAt(viewRight + Background.MAX_OVERHANG));
+        if (allBaked(viewLeft, viewRight)) return;
+
+        // Everything nearby is drawn, baked or not, since a baked slice's shapes also
+        // cover the edge of its unbaked neighbour; the textures go on top afterwards
+        for (int layer = 0; layer < ShapeChunk.LAYERS; layer++) {
+            for (int i = from; i <= to; i++) {
+                if (slots[i] != null) slots[i].draw(sr, layer);
+            }
+        }
+    }
+
+    /** Draw the baked slices in view. Call inside {@code batch.begin() ... end()}. */
+    public void drawBaked(SpriteBatch batch, float viewLeft, float viewRight) {
+        int from = Math.max(builtFrom, sliceAt(viewLeft));
+        int to = Math.min(builtTo, sliceAt(viewRight));
+        float height = background.getWorldHeight();
+        for (int i = from; i <= to; i++) {
+            if (textures[i] == null) continue;
+            float x = i * Background.CHUNK_WIDTH;
+            float width = Math.min(background.getWorldWidth(), x + Background.CHUNK_WIDTH) - x;
+            batch.draw(textures[i], x, 0, width, height);
+        }
+    }
+
+    private boolean allBaked(float viewLeft, float viewRight) {
+        int from = Math.max(builtFrom, sliceAt(viewLeft));
+        int to = Math.min(builtTo, sliceAt(viewRight));
+        for (int i = from; i <= to; i++) {
+            if (textures[i] == null) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Forget the baked textures after the GL context was lost; they are baked again
+     * (usually straight from the disk cache). The old handles are not deleted, since
+     * the new context may already reuse their ids.
+     */
+    public void invalidateTextures() {
+        for (int i = builtFrom; i <= builtTo; i++) {
+            if (textures[i] == null) continue;
+            GpuResources.untrack(textures[i]);
+            textures[i] = null;
+            if (baker != null) baker.request(i);
+        }
+    }
+
+    /** Built slices still waiting for their baked texture; always 0 without a baker. */
+    public int pendingTextures() {
+        if (baker == null) return 0;
+        int pending = 0;
+        for (int i = builtFrom; i <= builtTo; i++) {
+            if (textures[i] == null) pending++;
+        }
+        return pending;
+    }
+
+    /** Number of slices currently built. */
+    public int builtCount() {
+        return builtTo - builtFrom + 1;
+    }
+
+    private static int sliceAt(float x) {
+        return (int) Math.floor(x / Background.CHUNK_WIDTH);
+    }
+
+    @Override
+    public void dispose() {
+        if (baker != null) baker.dispose();
+        for (int i = 0; i < textures.length; i++) {
+            GpuResources.dispose(textures[i]);
+            textures[i] = null;
+        }
+    }
+}
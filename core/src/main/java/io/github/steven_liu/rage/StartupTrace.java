@@ -0,0 +1,96 @@
+package io.github.steven_liu.rage;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.utils.TimeUtils;
+
+import java.io.File;
+
+/**
+ * Timestamps for each startup phase, measured from when the process was launched
+ * (or, after a JVM relaunch, when the parent JVM was launched) to the first frame.
+ * <p>
+ * Launchers call {@link #begin} as early as they can and {@link #mark} for the phases
+ * they own; the shared code marks the rest. Everything is logged under the
+ * {@code StartupTrace} tag once the first frame has been drawn, and written to
+ * {@link #outputPath} if one was set.
+ */
+public final class StartupTrace {
+
+    private static final String TAG = "StartupTrace";
+    private static final int MAX_PHASES = 16;
+
+    /** Absolute or local path of a file to append the trace to, or null to only log it. */
+    public static String outputPath;
+
+    private static final String[] names = new String[MAX_PHASES];
+    private static final float[] millis = new float[MAX_PHASES];
+    private static int count;
+
+    // Wall-clock launch time, and a nanoTime reference taken at the same moment
+    private static long originMillis;
+    private static long baseNanos;
+    private static float baseOffsetMillis;
+    private static boolean started;
+    private static boolean finished;
+
+    private StartupTrace() {}
+
+    /**
+     * Start the trace.
+     * @param launchTimeMillis wall-clock time ({@link System#currentTimeMillis()} scale) the process was launched at.
+     */
+    public static void begin(long launchTimeMillis) {
+        originMillis = launchTimeMillis;
+        baseNanos = TimeUtils.nanoTime();
+        baseOffsetMillis = TimeUtils.millis() - launchTimeMillis;
+        started = true;
+        mark("process launched", launchTimeMillis);
+    }
+
+    /** Record that a phase ended now. Ignored if the trace was never begun or is already written. */
+    public static void mark(String phase) {
+        if (!started || finished || count == MAX_PHASES) return;
+        names[count] = phase;
+        millis[count] = baseOffsetMillis + TimeUtils.timeSinceNanos(baseNanos) / 1_000_000f;
+        count++;
+    }
+
+    /** Record a phase that ended at a known wall-clock time, e.g. the start of a relaunched JVM. */
+    public static void mark(String phase, long timeMillis) {
+        if (!started || finished || count == MAX_PHASES) return;
+        names[count] = phase;
+        millis[count] = timeMillis - originMillis;
+        count++;
+    }
+
+    /** @return milliseconds since launch, or -1 if the trace was never begun. */
+    public static float elapsedMillis() {
+        if (!started) return -1f;
+        return baseOffsetMillis + TimeUtils.timeSinceNanos(baseNanos) / 1_000_000f;
+    }
+
+    /** Mark the first frame and report the trace. Only the first call does anything. */
+    public static void finish() {
+        if (!started || finished) return;
+        mark("first frame");
+        finished = true;
+
+        StringBuilder report = new StringBuilder(64 * count);
+        float previous = 0f;
+        for (int i = 0; i < count; i++) {
+            report.append(String.format("%-22s %9.1f ms  (+%.1f)%n", names[i], millis[i], millis[i] - previous));
+            previous = millis[i];
+        }
+
+        for (String line : report.toString().split("\\R")) {
+            Gdx.app.log(TAG, line);
+        }
+        if (outputPath != null) {
+            FileHandle file = new File(outputPath).isAbsolute()
+                ? Gdx.files.absolute(outputPath)
+                : Gdx.files.local(outputPath);
+            file.writeString("# startup " + originMillis + "\n" + report, true);
+        }
+    }
+}
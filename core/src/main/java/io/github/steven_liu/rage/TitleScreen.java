@@ -3,6 +3,7 @@ package io.github.steven_liu.rage;
 import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.InputAdapter;
 import com.badlogic.gdx.ScreenAdapter;
+import com.badlogic.gdx.files.FileHandle;
 import com.badlogic.gdx.graphics.Color;
 import com.badlogic.gdx.graphics.g2d.BitmapFont;
 import com.badlogic.gdx.graphics.g2d.GlyphLayout;
@@ -34,15 +35,17 @@ public class TitleScreen extends ScreenAdapter {
 
     @Override
     public void show() {
-        batch = new SpriteBatch();
+        batch = GpuResources.track(new SpriteBatch(), GpuResources.SPRITE_BATCH_BYTES);
 
-        generator = new FreeTypeFontGenerator(Gdx.files.internal("DMSerifDisplay-Regular.ttf"));
+        FileHandle fontFile = Gdx.files.internal("DMSerifDisplay-Regular.ttf");
+        generator = GpuResources.track(new FreeTypeFontGenerator(fontFile), GpuResources.bytes(fontFile));
 
         // Top font — black, ~90px (same effective size as before)
         FreeTypeFontParameter topParam = new FreeTypeFontParameter();
         topParam.size = 90;
         topParam.color = Color.BLACK;
         font = generator.generateFont(topParam);
+        GpuResources.track(font, GpuResources.bytes(font));
 
         layout = new GlyphLayout(font, MESSAGE);
 
@@ -51,8 +54,10 @@ public class TitleScreen extends ScreenAdapter {
         bottomParam.size = 50;
         bottomParam.color = Color.RED;
         bottomFont = generator.generateFont(bottomParam);
+        GpuResources.track(bottomFont, GpuResources.bytes(bottomFont));
 
         bottomLayout = new GlyphLayout(bottomFont, BOTTOM_MESSAGE);
+        StartupTrace.mark("title fonts generated");
 
         Gdx.input.setInputProcessor(new InputAdapter() {
             @Override
@@ -102,11 +107,17 @@ public class TitleScreen extends ScreenAdapter {
         bottomLayout.setText(bottomFont, BOTTOM_MESSAGE);
     }
 
+    @Override
+    public void hide() {
+        // Or clicks keep landing here after the game screen has taken over
+        Gdx.input.setInputProcessor(null);
+    }
+
     @Override
     public void dispose() {
-        batch.dispose();
-        font.dispose();
-        bottomFont.dispose();
-        generator.dispose();
+        GpuResources.dispose(batch);
+        GpuResources.dispose(font);
+        GpuResources.dispose(bottomFont);
+        GpuResources.dispose(generator);
     }
 }
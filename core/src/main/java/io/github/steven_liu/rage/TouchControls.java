@@ -2,7 +2,6 @@ package io.github.steven_liu.rage;
 
 import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.graphics.Color;
-import com.badlogic.gdx.graphics.OrthographicCamera;
 import com.badlogic.gdx.graphics.glutils.ShapeRenderer;
 import com.badlogic.gdx.math.Vector2;
 
@@ -13,7 +12,6 @@ import com.badlogic.gdx.math.Vector2;
  */
 public class TouchControls {
 
-    private final OrthographicCamera hudCam;
     private final float screenW, screenH;
 
     // Joystick sizing (4x the old 64px button = 256px diameter base)
@@ -41,14 +39,12 @@ public class TouchControls {
     private int p1Pointer = -1;
     private int p2Pointer = -1;
 
+    private final RenderQueue.Shapes joysticks = this::draw;
+
     public TouchControls(float screenW, float screenH) {
         this.screenW = screenW;
         this.screenH = screenH;
 
-        hudCam = new OrthographicCamera(screenW, screenH);
-        hudCam.position.set(screenW / 2f, screenH / 2f, 0);
-        hudCam.update();
-
         // P1: bottom-left (fixed)
         float pad = BASE_RADIUS + 30f;
         p1Center = new Vector2(pad, pad);
@@ -119,15 +115,13 @@ public class TouchControls {
         }
     }
 
-    /** Draw semi-transparent joystick bases and thumbs. */
-    public void draw(ShapeRenderer sr) {
-        sr.setProjectionMatrix(hudCam.combined);
-
-        Gdx.gl.glEnable(Gdx.gl.GL_BLEND);
-        Gdx.gl.glBlendFunc(Gdx.gl.GL_SRC_ALPHA, Gdx.gl.GL_ONE_MINUS_SRC_ALPHA);
-
-        sr.begin(ShapeRenderer.ShapeType.Filled);
+    /** Queue the semi-transparent joystick bases and thumbs, in screen space over the HUD. */
+    public void submit(RenderQueue queue) {
+        queue.shapes(RenderQueue.LAYER_HUD, RenderQueue.SCREEN, ShapeRenderer.ShapeType.Filled, true,
+            FrameTrace.TOUCH_CONTROLS, joysticks);
+    }
 
+    private void draw(ShapeRenderer sr) {
         // P1 base + thumb
         sr.setColor(BASE_COLOR);
         sr.circle(p1Center.x, p1Center.y, BASE_RADIUS, 64);
@@ -139,9 +133,5 @@ public class TouchControls {
         sr.circle(p2Center.x, p2Center.y, BASE_RADIUS, 64);
         sr.setColor(THUMB_COLOR);
         sr.circle(p2Thumb.x, p2Thumb.y, THUMB_RADIUS, 48);
-
-        sr.end();
-
-        Gdx.gl.glDisable(Gdx.gl.GL_BLEND);
     }
 }
@@ -0,0 +1,38 @@
+package io.github.steven_liu.rage.net;
+
+import java.nio.ByteBuffer;
+
+/** Reads values packed by {@link BitWriter}. Reusable and allocation-free. */
+public final class BitReader {
+
+    private ByteBuffer buffer;
+    private long scratch;
+    private int scratchBits;
+
+    /** Start reading at the buffer's current position. */
+    public BitReader begin(ByteBuffer buffer) {
+        this.buffer = buffer;
+        scratch = 0;
+        scratchBits = 0;
+        return this;
+    }
+
+    /**
+     * Read a {@code bits}-wide unsigned value.
+     * @throws java.nio.BufferUnderflowException if the packet is shorter than its contents claim
+     */
+    public int read(int bits) {
+        while (scratchBits < bits) {
+            scratch |= (buffer.get() & 0xFFL) << scratchBits;
+            scratchBits += 8;
+        }
+        int value = (int) (scratch & ((1L << bits) - 1));
+        scratch >>>= bits;
+        scratchBits -= bits;
+        return value;
+    }
+
+    public boolean readBoolean() {
+        return read(1) != 0;
+    }
+}
@@ -0,0 +1,53 @@
+package io.github.steven_liu.rage.net;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Packs values of any width (1–32 bits) into a {@link ByteBuffer}, least significant
+ * bit first. Reusable: call {@link #begin} for every packet. Allocates nothing.
+ */
+public final class BitWriter {
+
+    private ByteBuffer buffer;
+    private long scratch;
+    private int scratchBits;
+    private int bitsWritten;
+
+    /** Start writing at the buffer's current position. */
+    public BitWriter begin(ByteBuffer buffer) {
+        this.buffer = buffer;
+        scratch = 0;
+        scratchBits = 0;
+        bitsWritten = 0;
+        return this;
+    }
+
+    /** Write the low {@code bits} bits of value. */
+    public void write(int value, int bits) {
+        scratch |= (value & ((1L << bits) - 1)) << scratchBits;
+        scratchBits += bits;
+        bitsWritten += bits;
+        while (scratchBits >= 8) {
+            buffer.put((byte) scratch);
+            scratch >>>= 8;
+            scratchBits -= 8;
+        }
+    }
+
+    public void writeBoolean(boolean value) {
+        write(value ? 1 : 0, 1);
+    }
+
+    /** Write out the last partial byte. The buffer's position is then just past the packed data. */
+    public void flush() {
+        if (scratchBits > 0) {
+            buffer.put((byte) scratch);
+            scratch = 0;
+            scratchBits = 0;
+        }
+    }
+
+    public int bitsWritten() {
+        return bitsWritten;
+    }
+}
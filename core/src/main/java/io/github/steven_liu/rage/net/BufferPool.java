@@ -0,0 +1,43 @@
+package io.github.steven_liu.rage.net;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A fixed-capacity stack of equally sized direct {@link ByteBuffer}s. Acquiring and
+ * releasing allocate nothing once the pool is warm; buffers beyond the capacity are
+ * simply dropped on release.
+ */
+public final class BufferPool {
+
+    private final int bufferSize;
+    private final ByteBuffer[] free;
+    private int freeCount;
+
+    public BufferPool(int bufferSize, int capacity) {
+        this.bufferSize = bufferSize;
+        this.free = new ByteBuffer[capacity];
+    }
+
+    /** @return a cleared buffer; a new one if the pool is empty. */
+    public ByteBuffer acquire() {
+        synchronized (free) {
+            if (freeCount > 0) {
+                ByteBuffer buffer = free[--freeCount];
+                free[freeCount] = null;
+                buffer.clear();
+                return buffer;
+            }
+        }
+        return ByteBuffer.allocateDirect(bufferSize);
+    }
+
+    public void release(ByteBuffer buffer) {
+        synchronized (free) {
+            if (freeCount < free.length) free[freeCount++] = buffer;
+        }
+    }
+
+    public int bufferSize() {
+        return bufferSize;
+    }
+}
@@ -0,0 +1,156 @@
+package io.github.steven_liu.rage.net;
+
+import io.github.steven_liu.rage.Background;
+import io.github.steven_liu.rage.Match;
+import io.github.steven_liu.rage.MatchState;
+import io.github.steven_liu.rage.Player;
+
+/**
+ * Bit-packed, delta-encoded match snapshots.
+ * <p>
+ * Each player is quantized to integers sized for the values they can actually take
+ * (positions within the 800x480 world, velocities within what movement, jumping and
+ * gravity can produce). A snapshot is written against a baseline the receiver already
+ * has: every numeric field gets a changed bit and is only sent when it differs, while
+ * {@code grounded} and {@code facing} are sent as one bit each. Without a baseline
+ * every field is sent.
+ * <pre>
+ * tick:32  baseAge:8 (0 = no baseline)  background:2
+ * per player:  changed:5  [x:15] [y:14] [vx:12] [vy:13] [health:9]  grounded:1  facing:1
+ * </pre>
+ * A standing match encodes to 7 bytes; a full snapshot to 23.
+ */
+public final class SnapshotCodec {
+
+    // Field indices inside a player's block of the quantized array
+    public static final int X = 0, Y = 1, VX = 2, VY = 3, HEALTH = 4, GROUNDED = 5, FACING = 6;
+    public static final int PLAYER_FIELDS = 7;
+    public static final int FIELDS = PLAYER_FIELDS * 2;
+    private static final int NUMERIC_FIELDS = 5;
+
+    /** Baselines older than this many ticks are not referenced. */
+    public static final int MAX_BASE_AGE = 255;
+
+    // Per numeric field: units per step, offset added before packing, and width in bits
+    private static final float[] SCALE  = {32f, 32f, 8f, 8f, 4f};
+    private static final int[]   OFFSET = {0, 0, 2048, 4096, 0};
+    private static final int[]   BITS   = {15, 14, 12, 13, 9};
+
+    private static final Background.Type[] TYPES = Background.Type.values();
+
+    private SnapshotCodec() {}
+
+    /** Quantize both players of a match into {@code out} (length {@link #FIELDS}). */
+    public static void quantize(Match match, int[] out) {
+        quantize(match.player1, out, 0);
+        quantize(match.player2, out, PLAYER_FIELDS);
+    }
+
+    private static void quantize(Player p, int[] out, int base) {
+        out[base + X] = pack(p.x, X);
+        out[base + Y] = pack(p.y, Y);
+        out[base + VX] = pack(p.vx, VX);
+        out[base + VY] = pack(p.vy, VY);
+        out[base + HEALTH] = pack(p.health, HEALTH);
+        out[base + GROUNDED] = p.grounded ? 1 : 0;
+        out[base + FACING] = p.facing < 0 ? 1 : 0;
+    }
+
+    private static int pack(float value, int field) {
+        int q = Math.round(value * SCALE[field]) + OFFSET[field];
+        int max = (1 << BITS[field]) - 1;
+        return q < 0 ? 0 : (q > max ? max : q);
+    }
+
+    /** Turn a quantized snapshot back into a {@link MatchState}. */
+    public static void dequantize(int[] q, MatchState out) {
+        dequantize(q, 0, out.p1);
+        dequantize(q, PLAYER_FIELDS, out.p2);
+    }
+
+    private static void dequantize(int[] q, int base, MatchState.PlayerState out) {
+        out.x = unpack(q[base + X], X);
+        out.y = unpack(q[base + Y], Y);
+        out.vx = unpack(q[base + VX], VX);
+        out.vy = unpack(q[base + VY], VY);
+        out.health = unpack(q[base + HEALTH], HEALTH);
+        out.grounded = q[base + GROUNDED] != 0;
+        out.facing = q[base + FACING] != 0 ? -1 : 1;
+    }
+
+    private static float unpack(int q, int field) {
+        return (q - OFFSET[field]) / SCALE[field];
+    }
+
+    /**
+     * Encode a snapshot.
+     * @param baseline the quantized snapshot at {@code baseTick}, or null to send everything
+     */
+    public static void write(BitWriter out, int tick, Background.Type type, int[] current, int baseTick, int[] baseline) {
+        int baseAge = baseline == null ? 0 : tick - baseTick;
+        if (baseAge <= 0 || baseAge > MAX_BASE_AGE) {
+            baseAge = 0;
+            baseline = null;
+        }
+        out.write(tick, 32);
+        out.write(baseAge, 8);
+        out.write(type.ordinal(), 2);
+        writePlayer(out, current, baseline, 0);
+        writePlayer(out, current, baseline, PLAYER_FIELDS);
+    }
+
+    private static void writePlayer(BitWriter out, int[] current, int[] baseline, int base) {
+        int changed = 0;
+        for (int f = 0; f < NUMERIC_FIELDS; f++) {
+            if (baseline == null || current[base + f] != baseline[base + f]) changed |= 1 << f;
+        }
+        out.write(changed, NUMERIC_FIELDS);
+        for (int f = 0; f < NUMERIC_FIELDS; f++) {
+            if ((changed & (1 << f)) != 0) out.write(current[base + f], BITS[f]);
+        }
+        out.write(current[base + GROUNDED], 1);
+        out.write(current[base + FACING], 1);
+    }
+
+    /**
+     * Decode a snapshot into {@code history}.
+     * @return the decoded tick, or -1 if it was encoded against a baseline no longer in the
+     *     history or names no background type
+     */
+    public static int read(BitReader in, SnapshotHistory history) {
+        int tick = in.read(32);
+        int baseAge = in.read(8);
+        if (in.read(2) >= TYPES.length) return -1;  // background type; see readBackground
+        int[] baseline = null;
+        if (baseAge != 0) {
+            baseline = history.get(tick - baseAge);
+            if (baseline == null) return -1;
+        }
+        // If the baseline shares the new tick's slot this decodes in place, which is safe:
+        // each field is read from the baseline before it is overwritten
+        int[] out = history.slotFor(tick);
+        readPlayer(in, baseline, out, 0);
+        readPlayer(in, baseline, out, PLAYER_FIELDS);
+        return tick;
+    }
+
+    private static void readPlayer(BitReader in, int[] baseline, int[] out, int base) {
+        int changed = in.read(NUMERIC_FIELDS);
+        for (int f = 0; f < NUMERIC_FIELDS; f++) {
+            out[base + f] = (changed & (1 << f)) != 0 ? in.read(BITS[f]) : baseline[base + f];
+        }
+        out[base + GROUNDED] = in.read(1);
+        out[base + FACING] = in.read(1);
+    }
+
+    /**
+     * @return the background type stored in an encoded snapshot, without decoding the rest,
+     *     or null if the value names no type
+     */
+    public static Background.Type readBackground(BitReader in) {
+        in.read(32);
+        in.read(8);
+        int type = in.read(2);
+        return type < TYPES.length ? TYPES[type] : null;
+    }
+}
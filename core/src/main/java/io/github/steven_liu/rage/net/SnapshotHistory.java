@@ -0,0 +1,42 @@
+package io.github.steven_liu.rage.net;
+
+import java.util.Arrays;
+
+/**
+ * The last few quantized snapshots, by tick. The server keeps one per match to find
+ * the baseline each client last acknowledged; a client keeps one to find the
+ * baseline a delta was encoded against.
+ */
+public final class SnapshotHistory {
+
+    private final int[][] states;
+    private final int[] ticks;
+
+    public SnapshotHistory(int capacity) {
+        states = new int[capacity][SnapshotCodec.FIELDS];
+        ticks = new int[capacity];
+        clear();
+    }
+
+    public void clear() {
+        Arrays.fill(ticks, -1);
+    }
+
+    /** @return the array to quantize the given tick into, replacing the oldest entry. */
+    public int[] slotFor(int tick) {
+        int i = Math.floorMod(tick, ticks.length);
+        ticks[i] = tick;
+        return states[i];
+    }
+
+    /** @return the stored snapshot of the tick, or null if it was never stored or has been replaced. */
+    public int[] get(int tick) {
+        if (tick < 0) return null;
+        int i = Math.floorMod(tick, ticks.length);
+        return ticks[i] == tick ? states[i] : null;
+    }
+
+    public int capacity() {
+        return ticks.length;
+    }
+}
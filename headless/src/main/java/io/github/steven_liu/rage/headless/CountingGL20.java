@@ -0,0 +1,795 @@
+package io.github.steven_liu.rage.headless;
+
+import com.badlogic.gdx.graphics.GL20;
+import com.badlogic.gdx.utils.IntSet;
+
+import java.nio.Buffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+
+/**
+ * A {@link GL20} that draws nothing and counts what would have been drawn: draw calls,
+ * vertices, {@code ShapeRenderer} batches, shader switches, texture binds and blend
+ * state changes. It also tracks which objects are alive, so a leaked texture or buffer
+ * shows up even though no GPU is involved.
+ * <p>
+ * Handles are made up, shaders always compile and every attribute and uniform exists,
+ * which is all libGDX needs to run its renderers unchanged.
+ */
+public class CountingGL20 implements GL20 {
+
+    // ── Counted since the last reset ─────────────────────────────────────
+
+    public int drawCalls;
+    /** Vertices submitted; for indexed draws, the number of indices. */
+    public int vertices;
+    /**
+     * {@code ShapeRenderer} batches: one per begin/end pair, plus one each time its
+     * buffer filled up in between. Recognised by its shader program being bound.
+     */
+    public int shapeBatches;
+    public int shaderSwitches;
+    public int textureBinds;
+    /** Blending switched on or off, or its function changed. */
+    public int blendChanges;
+
+    // ── Live objects ─────────────────────────────────────────────────────
+
+    public final IntSet liveTextures = new IntSet();
+    public final IntSet liveBuffers = new IntSet();
+    public final IntSet liveFramebuffers = new IntSet();
+    public final IntSet liveRenderbuffers = new IntSet();
+    public final IntSet livePrograms = new IntSet();
+
+    // ── State ────────────────────────────────────────────────────────────
+
+    private int nextHandle = 1;
+    private int nextLocation;
+    private int currentProgram, boundTexture;
+    private boolean blend;
+    private int blendSrcRGB = GL_ONE, blendDstRGB = GL_ZERO, blendSrcAlpha = GL_ONE, blendDstAlpha = GL_ZERO;
+    private final IntSet vertexShadersOfShapeRenderer = new IntSet();
+    private final IntSet shapePrograms = new IntSet();
+
+    /** Zero the counters, e.g. at the start of a frame. Live objects are kept. */
+    public void reset() {
+        drawCalls = 0;
+        vertices = 0;
+        shapeBatches = 0;
+        shaderSwitches = 0;
+        textureBinds = 0;
+        blendChanges = 0;
+    }
+
+    private void blendFunc(int srcRGB, int dstRGB, int srcAlpha, int dstAlpha) {
+        if (srcRGB == blendSrcRGB && dstRGB == blendDstRGB && srcAlpha == blendSrcAlpha && dstAlpha == blendDstAlpha) return;
+        blendChanges++;
+        blendSrcRGB = srcRGB;
+        blendDstRGB = dstRGB;
+        blendSrcAlpha = srcAlpha;
+        blendDstAlpha = dstAlpha;
+    }
+
+    // ── GL20 ─────────────────────────────────────────────────────────────
+
+    @Override
+    public void glActiveTexture(int texture) {
+    }
+
+    @Override
+    public void glBindTexture(int target, int texture) {
+        if (texture != boundTexture) textureBinds++;
+        boundTexture = texture;
+    }
+
+    @Override
+    public void glBlendFunc(int sfactor, int dfactor) {
+        blendFunc(sfactor, dfactor, sfactor, dfactor);
+    }
+
+    @Override
+    public void glClear(int mask) {
+    }
+
+    @Override
+    public void glClearColor(float red, float green, float blue, float alpha) {
+    }
+
+    @Override
+    public void glClearDepthf(float depth) {
+    }
+
+    @Override
+    public void glClearStencil(int s) {
+    }
+
+    @Override
+    public void glColorMask(boolean red, boolean green, boolean blue, boolean alpha) {
+    }
+
+    @Override
+    public void glCompressedTexImage2D(int target, int level, int internalformat, int width, int height, int border, int imageSize, Buffer data) {
+    }
+
+    @Override
+    public void glCompressedTexSubImage2D(int target, int level, int xoffset, int yoffset, int width, int height, int format, int imageSize, Buffer data) {
+    }
+
+    @Override
+    public void glCopyTexImage2D(int target, int level, int internalformat, int x, int y, int width, int height, int border) {
+    }
+
+    @Override
+    public void glCopyTexSubImage2D(int target, int level, int xoffset, int yoffset, int x, int y, int width, int height) {
+    }
+
+    @Override
+    public void glCullFace(int mode) {
+    }
+
+    @Override
+    public void glDeleteTextures(int n, IntBuffer textures) {
+        for (int i = 0; i < n; i++) liveTextures.remove(textures.get(textures.position() + i));
+    }
+
+    @Override
+    public void glDeleteTexture(int texture) {
+        liveTextures.remove(texture);
+    }
+
+    @Override
+    public void glDepthFunc(int func) {
+    }
+
+    @Override
+    public void glDepthMask(boolean flag) {
+    }
+
+    @Override
+    public void glDepthRangef(float zNear, float zFar) {
+    }
+
+    @Override
+    public void glDisable(int cap) {
+        if (cap == GL_BLEND && blend) blendChanges++;
+        if (cap == GL_BLEND) blend = false;
+    }
+
+    @Override
+    public void glDrawArrays(int mode, int first, int count) {
+        drawCalls++;
+        vertices += count;
+    }
+
+    @Override
+    public void glDrawElements(int mode, int count, int type, Buffer indices) {
+        drawCalls++;
+        vertices += count;
+    }
+
+    @Override
+    public void glEnable(int cap) {
+        if (cap == GL_BLEND && !blend) blendChanges++;
+        if (cap == GL_BLEND) blend = true;
+    }
+
+    @Override
+    public void glFinish() {
+    }
+
+    @Override
+    public void glFlush() {
+    }
+
+    @Override
+    public void glFrontFace(int mode) {
+    }
+
+    @Override
+    public void glGenTextures(int n, IntBuffer textures) {
+        for (int i = 0; i < n; i++) textures.put(textures.position() + i, glGenTexture());
+    }
+
+    @Override
+    public int glGenTexture() {
+        int handle = nextHandle++;
+        liveTextures.add(handle);
+        return handle;
+    }
+
+    @Override
+    public int glGetError() {
+        return 0;
+    }
+
+    @Override
+    public void glGetIntegerv(int pname, IntBuffer params) {
+        // Limits are asked for as GL_MAX_*; anything else reads as zero
+        params.put(params.position(), pname == GL_MAX_TEXTURE_SIZE || pname == GL_MAX_RENDERBUFFER_SIZE ? 4096 : 0);
+    }
+
+    @Override
+    public String glGetString(int name) {
+        return "";
+    }
+
+    @Override
+    public void glHint(int target, int mode) {
+    }
+
+    @Override
+    public void glLineWidth(float width) {
+    }
+
+    @Override
+    public void glPixelStorei(int pname, int param) {
+    }
+
+    @Override
+    public void glPolygonOffset(float factor, float units) {
+    }
+
+    @Override
+    public void glReadPixels(int x, int y, int width, int height, int format, int type, Buffer pixels) {
+    }
+
+    @Override
+    public void glScissor(int x, int y, int width, int height) {
+    }
+
+    @Override
+    public void glStencilFunc(int func, int ref, int mask) {
+    }
+
+    @Override
+    public void glStencilMask(int mask) {
+    }
+
+    @Override
+    public void glStencilOp(int fail, int zfail, int zpass) {
+    }
+
+    @Override
+    public void glTexImage2D(int target, int level, int internalformat, int width, int height, int border, int format, int type, Buffer pixels) {
+    }
+
+    @Override
+    public void glTexParameterf(int target, int pname, float param) {
+    }
+
+    @Override
+    public void glTexSubImage2D(int target, int level, int xoffset, int yoffset, int width, int height, int format, int type, Buffer pixels) {
+    }
+
+    @Override
+    public void glViewport(int x, int y, int width, int height) {
+    }
+
+    @Override
+    public void glAttachShader(int program, int shader) {
+        if (vertexShadersOfShapeRenderer.contains(shader)) shapePrograms.add(program);
+    }
+
+    @Override
+    public void glBindAttribLocation(int program, int index, String name) {
+    }
+
+    @Override
+    public void glBindBuffer(int target, int buffer) {
+    }
+
+    @Override
+    public void glBindFramebuffer(int target, int framebuffer) {
+    }
+
+    @Override
+    public void glBindRenderbuffer(int target, int renderbuffer) {
+    }
+
+    @Override
+    public void glBlendColor(float red, float green, float blue, float alpha) {
+    }
+
+    @Override
+    public void glBlendEquation(int mode) {
+    }
+
+    @Override
+    public void glBlendEquationSeparate(int modeRGB, int modeAlpha) {
+    }
+
+    @Override
+    public void glBlendFuncSeparate(int srcRGB, int dstRGB, int srcAlpha, int dstAlpha) {
+        blendFunc(srcRGB, dstRGB, srcAlpha, dstAlpha);
+    }
+
+    @Override
+    public void glBufferData(int target, int size, Buffer data, int usage) {
+    }
+
+    @Override
+    public void glBufferSubData(int target, int offset, int size, Buffer data) {
+    }
+
+    @Override
+    public int glCheckFramebufferStatus(int target) {
+        return GL_FRAMEBUFFER_COMPLETE;
+    }
+
+    @Override
+    public void glCompileShader(int shader) {
+    }
+
+    @Override
+    public int glCreateProgram() {
+        int handle = nextHandle++;
+        livePrograms.add(handle);
+        return handle;
+    }
+
+    @Override
+    public int glCreateShader(int type) {
+        return nextHandle++;
+    }
+
+    @Override
+    public void glDeleteBuffer(int buffer) {
+        liveBuffers.remove(buffer);
+    }
+
+    @Override
+    public void glDeleteBuffers(int n, IntBuffer buffers) {
+        for (int i = 0; i < n; i++) liveBuffers.remove(buffers.get(buffers.position() + i));
+    }
+
+    @Override
+    public void glDeleteFramebuffer(int framebuffer) {
+        liveFramebuffers.remove(framebuffer);
+    }
+
+    @Override
+    public void glDeleteFramebuffers(int n, IntBuffer framebuffers) {
+        for (int i = 0; i < n; i++) liveFramebuffers.remove(framebuffers.get(framebuffers.position() + i));
+    }
+
+    @Override
+    public void glDeleteProgram(int program) {
+        livePrograms.remove(program);
+        shapePrograms.remove(program);
+    }
+
+    @Override
+    public void glDeleteRenderbuffer(int renderbuffer) {
+        liveRenderbuffers.remove(renderbuffer);
+    }
+
+    @Override
+    public void glDeleteRenderbuffers(int n, IntBuffer renderbuffers) {
+        for (int i = 0; i < n; i++) liveRenderbuffers.remove(renderbuffers.get(renderbuffers.position() + i));
+    }
+
+    @Override
+    public void glDeleteShader(int shader) {
+        vertexShadersOfShapeRenderer.remove(shader);
+    }
+
+    @Override
+    public void glDetachShader(int program, int shader) {
+    }
+
+    @Override
+    public void glDisableVertexAttribArray(int index) {
+    }
+
+    @Override
+    public void glDrawElements(int mode, int count, int type, int indices) {
+        drawCalls++;
+        vertices += count;
+    }
+
+    @Override
+    public void glEnableVertexAttribArray(int index) {
+    }
+
+    @Override
+    public void glFramebufferRenderbuffer(int target, int attachment, int renderbuffertarget, int renderbuffer) {
+    }
+
+    @Override
+    public void glFramebufferTexture2D(int target, int attachment, int textarget, int texture, int level) {
+    }
+
+    @Override
+    public int glGenBuffer() {
+        int handle = nextHandle++;
+        liveBuffers.add(handle);
+        return handle;
+    }
+
+    @Override
+    public void glGenBuffers(int n, IntBuffer buffers) {
+        for (int i = 0; i < n; i++) buffers.put(buffers.position() + i, glGenBuffer());
+    }
+
+    @Override
+    public void glGenerateMipmap(int target) {
+    }
+
+    @Override
+    public int glGenFramebuffer() {
+        int handle = nextHandle++;
+        liveFramebuffers.add(handle);
+        return handle;
+    }
+
+    @Override
+    public void glGenFramebuffers(int n, IntBuffer framebuffers) {
+        for (int i = 0; i < n; i++) framebuffers.put(framebuffers.position() + i, glGenFramebuffer());
+    }
+
+    @Override
+    public int glGenRenderbuffer() {
+        int handle = nextHandle++;
+        liveRenderbuffers.add(handle);
+        return handle;
+    }
+
+    @Override
+    public void glGenRenderbuffers(int n, IntBuffer renderbuffers) {
+        for (int i = 0; i < n; i++) renderbuffers.put(renderbuffers.position() + i, glGenRenderbuffer());
+    }
+
+    @Override
+    public String glGetActiveAttrib(int program, int index, IntBuffer size, IntBuffer type) {
+        return "";
+    }
+
+    @Override
+    public String glGetActiveUniform(int program, int index, IntBuffer size, IntBuffer type) {
+        return "";
+    }
+
+    @Override
+    public void glGetAttachedShaders(int program, int maxcount, Buffer count, IntBuffer shaders) {
+    }
+
+    @Override
+    public int glGetAttribLocation(int program, String name) {
+        // Any name exists, so meshes bind every attribute as they would on a GPU
+        return nextLocation++;
+    }
+
+    @Override
+    public void glGetBooleanv(int pname, Buffer params) {
+    }
+
+    @Override
+    public void glGetBufferParameteriv(int target, int pname, IntBuffer params) {
+    }
+
+    @Override
+    public void glGetFloatv(int pname, FloatBuffer params) {
+    }
+
+    @Override
+    public void glGetFramebufferAttachmentParameteriv(int target, int attachment, int pname, IntBuffer params) {
+    }
+
+    @Override
+    public void glGetProgramiv(int program, int pname, IntBuffer params) {
+        // Linked, with no active attributes or uniforms to enumerate
+        params.put(params.position(), pname == GL_LINK_STATUS ? GL_TRUE : 0);
+    }
+
+    @Override
+    public String glGetProgramInfoLog(int program) {
+        return "";
+    }
+
+    @Override
+    public void glGetRenderbufferParameteriv(int target, int pname, IntBuffer params) {
+    }
+
+    @Override
+    public void glGetShaderiv(int shader, int pname, IntBuffer params) {
+        params.put(params.position(), pname == GL_COMPILE_STATUS ? GL_TRUE : 0);
+    }
+
+    @Override
+    public String glGetShaderInfoLog(int shader) {
+        return "";
+    }
+
+    @Override
+    public void glGetShaderPrecisionFormat(int shadertype, int precisiontype, IntBuffer range, IntBuffer precision) {
+    }
+
+    @Override
+    public void glGetTexParameterfv(int target, int pname, FloatBuffer params) {
+    }
+
+    @Override
+    public void glGetTexParameteriv(int target, int pname, IntBuffer params) {
+    }
+
+    @Override
+    public void glGetUniformfv(int program, int location, FloatBuffer params) {
+    }
+
+    @Override
+    public void glGetUniformiv(int program, int location, IntBuffer params) {
+    }
+
+    @Override
+    public int glGetUniformLocation(int program, String name) {
+        return nextLocation++;
+    }
+
+    @Override
+    public void glGetVertexAttribfv(int index, int pname, FloatBuffer params) {
+    }
+
+    @Override
+    public void glGetVertexAttribiv(int index, int pname, IntBuffer params) {
+    }
+
+    @Override
+    public void glGetVertexAttribPointerv(int index, int pname, Buffer pointer) {
+    }
+
+    @Override
+    public boolean glIsBuffer(int buffer) {
+        return liveBuffers.contains(buffer);
+    }
+
+    @Override
+    public boolean glIsEnabled(int cap) {
+        return cap == GL_BLEND && blend;
+    }
+
+    @Override
+    public boolean glIsFramebuffer(int framebuffer) {
+        return liveFramebuffers.contains(framebuffer);
+    }
+
+    @Override
+    public boolean glIsProgram(int program) {
+        return livePrograms.contains(program);
+    }
+
+    @Override
+    public boolean glIsRenderbuffer(int renderbuffer) {
+        return liveRenderbuffers.contains(renderbuffer);
+    }
+
+    @Override
+    public boolean glIsShader(int shader) {
+        return shader > 0 && shader < nextHandle;
+    }
+
+    @Override
+    public boolean glIsTexture(int texture) {
+        return liveTextures.contains(texture);
+    }
+
+    @Override
+    public void glLinkProgram(int program) {
+    }
+
+    @Override
+    public void glReleaseShaderCompiler() {
+    }
+
+    @Override
+    public void glRenderbufferStorage(int target, int internalformat, int width, int height) {
+    }
+
+    @Override
+    public void glSampleCoverage(float value, boolean invert) {
+    }
+
+    @Override
+    public void glShaderBinary(int n, IntBuffer shaders, int binaryformat, Buffer binary, int length) {
+    }
+
+    @Override
+    public void glShaderSource(int shader, String string) {
+        // ShapeRenderer's shaders are the only ones with this uniform
+        if (string.contains("u_projModelView")) vertexShadersOfShapeRenderer.add(shader);
+    }
+
+    @Override
+    public void glStencilFuncSeparate(int face, int func, int ref, int mask) {
+    }
+
+    @Override
+    public void glStencilMaskSeparate(int face, int mask) {
+    }
+
+    @Override
+    public void glStencilOpSeparate(int face, int fail, int zfail, int zpass) {
+    }
+
+    @Override
+    public void glTexParameterfv(int target, int pname, FloatBuffer params) {
+    }
+
+    @Override
+    public void glTexParameteri(int target, int pname, int param) {
+    }
+
+    @Override
+    public void glTexParameteriv(int target, int pname, IntBuffer params) {
+    }
+
+    @Override
+    public void glUniform1f(int location, float x) {
+    }
+
+    @Override
+    public void glUniform1fv(int location, int count, FloatBuffer v) {
+    }
+
+    @Override
+    public void glUniform1fv(int location, int count, float[] v, int offset) {
+    }
+
+    @Override
+    public void glUniform1i(int location, int x) {
+    }
+
+    @Override
+    public void glUniform1iv(int location, int count, IntBuffer v) {
+    }
+
+    @Override
+    public void glUniform1iv(int location, int count, int[] v, int offset) {
+    }
+
+    @Override
+    public void glUniform2f(int location, float x, float y) {
+    }
+
+    @Override
+    public void glUniform2fv(int location, int count, FloatBuffer v) {
+    }
+
+    @Override
+    public void glUniform2fv(int location, int count, float[] v, int offset) {
+    }
+
+    @Override
+    public void glUniform2i(int location, int x, int y) {
+    }
+
+    @Override
+    public void glUniform2iv(int location, int count, IntBuffer v) {
+    }
+
+    @Override
+    public void glUniform2iv(int location, int count, int[] v, int offset) {
+    }
+
+    @Override
+    public void glUniform3f(int location, float x, float y, float z) {
+    }
+
+    @Override
+    public void glUniform3fv(int location, int count, FloatBuffer v) {
+    }
+
+    @Override
+    public void glUniform3fv(int location, int count, float[] v, int offset) {
+    }
+
+    @Override
+    public void glUniform3i(int location, int x, int y, int z) {
+    }
+
+    @Override
+    public void glUniform3iv(int location, int count, IntBuffer v) {
+    }
+
+    @Override
+    public void glUniform3iv(int location, int count, int[] v, int offset) {
+    }
+
+    @Override
+    public void glUniform4f(int location, float x, float y, float z, float w) {
+    }
+
+    @Override
+    public void glUniform4fv(int location, int count, FloatBuffer v) {
+    }
+
+    @Override
+    public void glUniform4fv(int location, int count, float[] v, int offset) {
+    }
+
+    @Override
+    public void glUniform4i(int location, int x, int y, int z, int w) {
+    }
+
+    @Override
+    public void glUniform4iv(int location, int count, IntBuffer v) {
+    }
+
+    @Override
+    public void glUniform4iv(int location, int count, int[] v, int offset) {
+    }
+
+    @Override
+    public void glUniformMatrix2fv(int location, int count, boolean transpose, FloatBuffer value) {
+    }
+
+    @Override
+    public void glUniformMatrix2fv(int location, int count, boolean transpose, float[] value, int offset) {
+    }
+
+    @Override
+    public void glUniformMatrix3fv(int location, int count, boolean transpose, FloatBuffer value) {
+    }
+
+    @Override
+    public void glUniformMatrix3fv(int location, int count, boolean transpose, float[] value, int offset) {
+    }
+
+    @Override
+    public void glUniformMatrix4fv(int location, int count, boolean transpose, FloatBuffer value) {
+    }
+
+    @Override
+    public void glUniformMatrix4fv(int location, int count, boolean transpose, float[] value, int offset) {
+    }
+
+    @Override
+    public void glUseProgram(int program) {
+        if (program != currentProgram) shaderSwitches++;
+        currentProgram = program;
+        if (shapePrograms.contains(program)) shapeBatches++;
+    }
+
+    @Override
+    public void glValidateProgram(int program) {
+    }
+
+    @Override
+    public void glVertexAttrib1f(int indx, float x) {
+    }
+
+    @Override
+    public void glVertexAttrib1fv(int indx, FloatBuffer values) {
+    }
+
+    @Override
+    public void glVertexAttrib2f(int indx, float x, float y) {
+    }
+
+    @Override
+    public void glVertexAttrib2fv(int indx, FloatBuffer values) {
+    }
+
+    @Override
+    public void glVertexAttrib3f(int indx, float x, float y, float z) {
+    }
+
+    @Override
+    public void glVertexAttrib3fv(int indx, FloatBuffer values) {
+    }
+
+    @Override
+    public void glVertexAttrib4f(int indx, float x, float y, float z, float w) {
+    }
+
+    @Override
+    public void glVertexAttrib4fv(int indx, FloatBuffer values) {
+    }
+
+    @Override
+    public void glVertexAttribPointer(int indx, int size, int type, boolean normalized, int stride, Buffer ptr) {
+    }
+
+    @Override
+    public void glVertexAttribPointer(int indx, int size, int type, boolean normalized, int stride, int ptr) {
+    }
+}
@@ -0,0 +1,220 @@
+package io.github.steven_liu.rage.headless;
+
+import com.badlogic.gdx.ApplicationAdapter;
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.Screen;
+import com.badlogic.gdx.backends.headless.HeadlessApplication;
+import com.badlogic.gdx.backends.headless.HeadlessApplicationConfiguration;
+import com.badlogic.gdx.backends.headless.mock.graphics.MockGraphics;
+import io.github.steven_liu.rage.Background;
+import io.github.steven_liu.rage.FightofRngRage;
+import io.github.steven_liu.rage.GameScreen;
+import io.github.steven_liu.rage.TitleScreen;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.function.Supplier;
+
+/**
+ * Renders every screen for a few frames on the headless backend, with a
+ * {@link CountingGL20} in place of the GPU, and compares the busiest frame of each
+ * against the budgets checked in next to this module. Exits with status 1 if any
+ * budget is exceeded, so a change that quietly multiplies the geometry (say, a circle
+ * going from 48 to 256 segments) fails the build.
+ * <p>
+ * The game screen runs once per {@link Background.Type}, with stage baking off so
+ * every slice is drawn as shapes: the worst case, and the same on every machine.
+ * The first frames of each screen only fill caches (the HUD bakes its bars on the
+ * first), so they are drawn but not counted.
+ * <p>
+ * Options: {@code --budgets FILE} (default {@code render-budgets.properties}),
+ * {@code --frames N} frames per screen (default 30), {@code --warmup N} uncounted frames
+ * before those (default 1), {@code --width}/{@code --height}
+ * of the pretend screen (default 1920x1080), {@code --record} to write the measured
+ * values as the new budgets instead of checking them.
+ */
+public class RenderBudgetCheck {
+
+    private static final String[] METRICS = {"drawCalls", "vertices", "shapeBatches", "shaderSwitches", "textureBinds", "blendChanges"};
+
+    /** The busiest frame's counts for one screen. */
+    private static final class Result {
+        final String name;
+        final int[] worst = new int[METRICS.length];
+
+        Result(String name) {
+            this.name = name;
+        }
+    }
+
+    /** The headless backend reports a 0x0 screen; the HUD needs a real size. */
+    static final class SizedGraphics extends MockGraphics {
+        private final int width, height;
+
+        SizedGraphics(int width, int height) {
+            this.width = width;
+            this.height = height;
+        }
+
+        @Override public int getWidth() { return width; }
+        @Override public int getHeight() { return height; }
+        @Override public int getBackBufferWidth() { return width; }
+        @Override public int getBackBufferHeight() { return height; }
+    }
+
+    public static void main(String[] args) throws Exception {
+        File budgetFile = new File(stringArg(args, "--budgets", "render-budgets.properties"));
+        int frames = intArg(args, "--frames", 30);
+        int warmup = intArg(args, "--warmup", 1);
+        int width = intArg(args, "--width", 1920);
+        int height = intArg(args, "--height", 1080);
+        boolean record = hasFlag(args, "--record");
+
+        List<Result> results = new ArrayList<>();
+        Throwable[] failure = new Throwable[1];
+        CountDownLatch done = new CountDownLatch(1);
+
+        HeadlessApplicationConfiguration config = new HeadlessApplicationConfiguration();
+        config.updatesPerSecond = -1;
+        new HeadlessApplication(new ApplicationAdapter() {
+            @Override
+            public void create() {
+                try {
+                    CountingGL20 gl = new CountingGL20();
+                    SizedGraphics graphics = new SizedGraphics(width, height);
+                    graphics.setGL20(gl);
+                    Gdx.graphics = graphics;
+                    Gdx.gl = Gdx.gl20 = gl;
+
+                    FightofRngRage game = new FightofRngRage();
+                    game.bakeStages = false;
+                    results.add(measure("title", () -> new TitleScreen(game), gl, warmup, frames, width, height));
+                    for (Background.Type type : Background.Type.values()) {
+                        long seed = seedFor(type);
+                        results.add(measure("game." + type.name().toLowerCase(Locale.ROOT),
+                            () -> new GameScreen(game, seed), gl, warmup, frames, width, height));
+                    }
+                } catch (Throwable t) {
+                    failure[0] = t;
+                } finally {
+                    done.countDown();
+                    Gdx.app.exit();
+                }
+            }
+        }, config);
+        done.await();
+        if (failure[0] != null) {
+            failure[0].printStackTrace();
+            System.exit(2);
+        }
+
+        if (record) {
+            writeBudgets(budgetFile, results);
+            System.out.println("Budgets written to " + budgetFile.getPath());
+            print(results, null);
+            System.exit(0);
+        }
+
+        Properties budgets = new Properties();
+        try (InputStream in = new FileInputStream(budgetFile)) {
+            budgets.load(in);
+        }
+        int over = print(results, budgets);
+        if (over > 0) {
+            System.out.println();
+            System.out.println(over + " budget(s) exceeded. If the increase is intended, run with --record and commit "
+                + budgetFile.getName() + ".");
+            System.exit(1);
+        }
+    }
+
+    private static Result measure(String name, Supplier<Screen> factory, CountingGL20 gl, int warmup, int frames, int width, int height) {
+        Result result = new Result(name);
+        Screen screen = factory.get();
+        screen.show();
+        screen.resize(width, height);
+        for (int f = 0; f < warmup; f++) screen.render(1f / 60f);
+        for (int f = 0; f < frames; f++) {
+            gl.reset();
+            screen.render(1f / 60f);
+            int[] counts = {gl.drawCalls, gl.vertices, gl.shapeBatches, gl.shaderSwitches, gl.textureBinds, gl.blendChanges};
+            for (int m = 0; m < METRICS.length; m++) result.worst[m] = Math.max(result.worst[m], counts[m]);
+        }
+        screen.hide();
+        screen.dispose();
+        return result;
+    }
+
+    /** The first seed that generates a stage of this type, so every run draws the same stage. */
+    private static long seedFor(Background.Type type) {
+        long seed = 1;
+        while (Background.typeForSeed(seed) != type) seed++;
+        return seed;
+    }
+
+    /** @return how many budgets were exceeded; missing budgets count as exceeded */
+    private static int print(List<Result> results, Properties budgets) {
+        int over = 0;
+        System.out.printf("%-14s", "screen");
+        for (String metric : METRICS) System.out.printf("%22s", metric);
+        System.out.println();
+        for (Result r : results) {
+            System.out.printf("%-14s", r.name);
+            for (int m = 0; m < METRICS.length; m++) {
+                if (budgets == null) {
+                    System.out.printf("%22d", r.worst[m]);
+                    continue;
+                }
+                String budget = budgets.getProperty(r.name + "." + METRICS[m]);
+                boolean exceeded = budget == null || r.worst[m] > Integer.parseInt(budget.trim());
+                if (exceeded) over++;
+                System.out.printf("%22s", r.worst[m] + " / " + (budget == null ? "?" : budget.trim()) + (exceeded ? " !" : "  "));
+            }
+            System.out.println();
+        }
+        return over;
+    }
+
+    private static void writeBudgets(File file, List<Result> results) throws IOException {
+        StringBuilder out = new StringBuilder();
+        out.append("# Worst frame per screen, counted by RenderBudgetCheck with stage baking off,\n");
+        out.append("# after the warm-up frames that fill caches.\n");
+        out.append("# Regenerate with: ./gradlew headless:renderBudget --args=\"--record\"\n");
+        for (Result r : results) {
+            out.append('\n');
+            for (int m = 0; m < METRICS.length; m++) {
+                out.append(r.name).append('.').append(METRICS[m]).append('=').append(r.worst[m]).append('\n');
+            }
+        }
+        try (OutputStream os = new FileOutputStream(file)) {
+            os.write(out.toString().getBytes("ISO-8859-1"));
+        }
+    }
+
+    private static String stringArg(String[] args, String name, String fallback) {
+        for (int i = 0; i < args.length - 1; i++) {
+            if (args[i].equals(name)) return args[i + 1];
+        }
+        return fallback;
+    }
+
+    private static int intArg(String[] args, String name, int fallback) {
+        return Integer.parseInt(stringArg(args, name, Integer.toString(fallback)));
+    }
+
+    private static boolean hasFlag(String[] args, String name) {
+        for (String arg : args) {
+            if (arg.equals(name)) return true;
+        }
+        return false;
+    }
+}
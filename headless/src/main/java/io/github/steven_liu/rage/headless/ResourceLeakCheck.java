@@ -0,0 +1,156 @@
+package io.github.steven_liu.rage.headless;
+
+import com.badlogic.gdx.ApplicationAdapter;
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.backends.headless.HeadlessApplication;
+import com.badlogic.gdx.backends.headless.HeadlessApplicationConfiguration;
+import com.badlogic.gdx.files.FileHandle;
+import io.github.steven_liu.rage.FightofRngRage;
+import io.github.steven_liu.rage.GameScreen;
+import io.github.steven_liu.rage.GpuResources;
+import io.github.steven_liu.rage.TitleScreen;
+
+import java.nio.file.Files;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Goes title → game → title over and over on the headless backend, the way a player
+ * pressing Escape does, and checks that nothing piles up: neither the objects in
+ * {@link GpuResources} nor the textures, buffers, framebuffers and shader programs
+ * {@link CountingGL20} sees alive. Both are taken on the title screen after each
+ * cycle and compared with the first cycle, which may still be filling caches. Closing
+ * the game at the end must then release everything, in the registry and in GL.
+ * <p>
+ * Stages are baked as in the game, into a temporary disk cache. Each game screen is
+ * rendered until every slice in view has its texture, so baked slices are part of
+ * what each cycle creates and must free.
+ * <p>
+ * Exits with status 1 and the registry's report if anything grew.
+ * <p>
+ * Options: {@code --cycles N} (default 5), {@code --frames N} per screen (default 30),
+ * {@code --width}/{@code --height} of the pretend screen (default 1920x1080).
+ */
+public class ResourceLeakCheck {
+
+    // A game screen whose stage hasn't finished baking by then fails the check
+    private static final long BAKE_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(30);
+
+    private static final String[] KINDS = {"registry objects", "registry KB", "textures", "buffers", "framebuffers",
+        "renderbuffers", "programs"};
+
+    public static void main(String[] args) throws Exception {
+        int cycles = intArg(args, "--cycles", 5);
+        int frames = intArg(args, "--frames", 30);
+        int width = intArg(args, "--width", 1920);
+        int height = intArg(args, "--height", 1080);
+
+        long[][] counts = new long[cycles + 1][];
+        long[][] closed = new long[1][];
+        Throwable[] failure = new Throwable[1];
+        CountDownLatch done = new CountDownLatch(1);
+
+        FileHandle stageCache = new FileHandle(Files.createTempDirectory("stage-cache").toFile());
+        HeadlessApplicationConfiguration config = new HeadlessApplicationConfiguration();
+        config.updatesPerSecond = -1;
+        new HeadlessApplication(new ApplicationAdapter() {
+            @Override
+            public void create() {
+                try {
+                    CountingGL20 gl = new CountingGL20();
+                    RenderBudgetCheck.SizedGraphics graphics = new RenderBudgetCheck.SizedGraphics(width, height);
+                    graphics.setGL20(gl);
+                    Gdx.graphics = graphics;
+                    Gdx.gl = Gdx.gl20 = gl;
+
+                    // Not the real cache: headless runs would write it into the working directory
+                    FightofRngRage game = new FightofRngRage() {
+                        @Override
+                        public FileHandle stageCacheDir() {
+                            return stageCache;
+                        }
+                    };
+                    game.setScreen(new TitleScreen(game));
+                    renderFrames(game, frames);
+                    counts[0] = count(gl);
+                    for (int c = 1; c <= cycles; c++) {
+                        GameScreen screen = new GameScreen(game, c);
+                        game.setScreen(screen);
+                        renderFrames(game, frames);
+                        awaitBaked(game, screen);
+                        game.setScreen(new TitleScreen(game));
+                        renderFrames(game, frames);
+                        counts[c] = count(gl);
+                        System.out.printf("cycle %d: %s%n", c, GpuResources.report().replace("\n", "\n         "));
+                    }
+                    game.dispose();
+                    closed[0] = count(gl);
+                } catch (Throwable t) {
+                    failure[0] = t;
+                } finally {
+                    done.countDown();
+                    Gdx.app.exit();
+                }
+            }
+        }, config);
+        done.await();
+        stageCache.deleteDirectory();
+        if (failure[0] != null) {
+            failure[0].printStackTrace();
+            System.exit(2);
+        }
+
+        System.out.println();
+        System.out.printf("%-18s%12s", "", "title");
+        for (int c = 1; c <= cycles; c++) System.out.printf("%12s", "cycle " + c);
+        System.out.printf("%12s%n", "closed");
+        int problems = 0;
+        for (int k = 0; k < KINDS.length; k++) {
+            System.out.printf("%-18s", KINDS[k]);
+            for (long[] row : counts) System.out.printf("%12d", row[k]);
+            System.out.printf("%12d", closed[0][k]);
+            // Everything after the first cycle must be back where the first left off
+            boolean grew = false;
+            for (int c = 2; c <= cycles; c++) grew |= counts[c][k] > counts[1][k];
+            boolean kept = closed[0][k] > 0;
+            if (grew || kept) problems++;
+            System.out.println(grew ? "  grows" : kept ? "  not released" : "");
+        }
+        if (problems > 0) {
+            System.out.println();
+            System.out.println("Resources leak across screen switches. Still tracked after closing:");
+            System.out.println(GpuResources.report());
+            System.exit(1);
+        }
+        System.out.println();
+        System.out.println("No growth over " + cycles + " title -> game -> title cycles");
+    }
+
+    private static void renderFrames(FightofRngRage game, int frames) {
+        for (int f = 0; f < frames; f++) game.render();
+    }
+
+    /** Keep rendering until the baker has delivered every slice in range. */
+    private static void awaitBaked(FightofRngRage game, GameScreen screen) throws InterruptedException {
+        long deadline = System.nanoTime() + BAKE_TIMEOUT_NANOS;
+        while (screen.stageTexturesPending() > 0) {
+            if (System.nanoTime() > deadline) {
+                throw new IllegalStateException(screen.stageTexturesPending() + " stage slices still unbaked");
+            }
+            Thread.sleep(5);
+            game.render();
+        }
+    }
+
+    private static long[] count(CountingGL20 gl) {
+        return new long[] {GpuResources.count(), GpuResources.totalBytes() / 1024, gl.liveTextures.size,
+            gl.liveBuffers.size, gl.liveFramebuffers.size, gl.liveRenderbuffers.size, gl.livePrograms.size};
+    }
+
+    private static int intArg(String[] args, String name, int fallback) {
+        for (int i = 0; i < args.length - 1; i++) {
+            if (args[i].equals(name)) return Integer.parseInt(args[i + 1]);
+        }
+        return fallback;
+    }
+}
@@ -3,16 +3,58 @@ package io.github.steven_liu.rage.lwjgl3;
 import com.badlogic.gdx.backends.lwjgl3.Lwjgl3Application;
 import com.badlogic.gdx.backends.lwjgl3.Lwjgl3ApplicationConfiguration;
 import io.github.steven_liu.rage.FightofRngRage;
+import io.github.steven_liu.rage.StartupTrace;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.Locale;
 
 /** Launches the desktop (LWJGL3) application. */
 public class Lwjgl3Launcher {
     public static void main(String[] args) {
-        if (StartupHelper.startNewJvmIfRequired()) return; // This handles macOS support and helps on Windows.
-        createApplication();
+        startTrace();
+        // A native image has no JVM to relaunch into, and doesn't need -XstartOnFirstThread on macOS
+        if (!isNativeImage()) {
+            if (!skipRelaunch(args) && StartupHelper.startNewJvmIfRequired()) return; // This handles macOS support and helps on Windows.
+            StartupTrace.mark("startup helper done");
+        }
+        createApplication(args);
+    }
+
+    /** Whether this is the GraalVM native-image build of the launcher rather than a JVM. */
+    static boolean isNativeImage() {
+        return !System.getProperty("org.graalvm.nativeimage.imagecode", "").isEmpty();
+    }
+
+    /** Starts the startup trace; pass -Drage.startupTrace=path/to/file.log to also write it to a file. */
+    private static void startTrace() {
+        long jvmStart = ManagementFactory.getRuntimeMXBean().getStartTime();
+        // After StartupHelper relaunches us, measure from when the parent JVM was launched
+        long origin = Long.getLong(StartupHelper.STARTUP_ORIGIN_ARG, jvmStart);
+        StartupTrace.begin(origin);
+        if (origin != jvmStart) StartupTrace.mark("jvm relaunched", jvmStart);
+        StartupTrace.mark("main");
+        StartupTrace.outputPath = System.getProperty("rage.startupTrace");
+    }
+
+    /**
+     * On Linux the relaunch only works around NVIDIA's threaded optimizations, so kiosks that don't need it can pass
+     * {@code --no-relaunch} (or -Drage.noRelaunch=true) to save a whole JVM startup. macOS always needs the relaunch.
+     */
+    private static boolean skipRelaunch(String[] args) {
+        if (!System.getProperty("os.name").toLowerCase(Locale.ROOT).contains("linux")) return false;
+        return Boolean.getBoolean("rage.noRelaunch") || Arrays.asList(args).contains("--no-relaunch");
     }
 
-    private static Lwjgl3Application createApplication() {
-        return new Lwjgl3Application(new FightofRngRage(), getDefaultConfiguration());
+    private static Lwjgl3Application createApplication(String[] args) {
+        // Set by StartupBenchmark: quit after this many frames and report startup time and memory
+        int exitAfterFrames = Integer.getInteger(StartupBenchmark.EXIT_AFTER_FRAMES_PROPERTY, 0);
+        FightofRngRage game = exitAfterFrames > 0
+            ? new StartupBenchmark.Probe(exitAfterFrames, System.getProperty(StartupBenchmark.REPORT_PROPERTY))
+            : new FightofRngRage();
+        // --sim-thread (or -Drage.simThread=true) steps the match on its own thread
+        game.threadedSimulation = Boolean.getBoolean("rage.simThread") || Arrays.asList(args).contains("--sim-thread");
+        return new Lwjgl3Application(game, getDefaultConfiguration());
     }
 
     private static Lwjgl3ApplicationConfiguration getDefaultConfiguration() {
@@ -0,0 +1,200 @@
+package io.github.steven_liu.rage.lwjgl3;
+
+import com.badlogic.gdx.Gdx;
+import io.github.steven_liu.rage.FightofRngRage;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Launches the desktop build repeatedly, as the runnable jar on a JVM and as the
+ * native-image executable, and compares time from launch to first frame and peak
+ * resident memory. Each run shows the title screen for {@code --frames} frames, then
+ * the game reports its own numbers through {@link Probe} and quits.
+ * <p>
+ * Resident memory comes from {@code /proc/self/status}, so it is only reported on
+ * Linux. Launch time is taken by this process just before starting the child, so it
+ * includes everything the OS and JVM do, and the relaunch the JVM build may do.
+ * <p>
+ * Options: {@code --jar PATH}, {@code --native PATH} (either may be left out),
+ * {@code --runs N} per build (default 10), {@code --frames N} (default 300, about five
+ * seconds), then any arguments after {@code --} are passed to the game.
+ */
+public class StartupBenchmark {
+
+    static final String EXIT_AFTER_FRAMES_PROPERTY = "rage.exitAfterFrames";
+    static final String REPORT_PROPERTY = "rage.benchmarkReport";
+
+    private static final long RUN_TIMEOUT_SECONDS = 120;
+
+    /** The game, plus a frame count to quit after and the line it writes on the way out. */
+    static final class Probe extends FightofRngRage {
+        private final int exitAfterFrames;
+        private final String reportPath;
+        private long firstFrameMillis;
+        private int frames;
+
+        Probe(int exitAfterFrames, String reportPath) {
+            this.exitAfterFrames = exitAfterFrames;
+            this.reportPath = reportPath;
+        }
+
+        @Override
+        public void render() {
+            super.render();
+            if (firstFrameMillis == 0) firstFrameMillis = System.currentTimeMillis();
+            if (++frames != exitAfterFrames) return;
+            if (reportPath != null) {
+                try (Writer out = new FileWriter(reportPath, true)) {
+                    out.write(firstFrameMillis + " " + procStatusKb("VmHWM") + "\n");
+                } catch (IOException e) {
+                    Gdx.app.error("StartupBenchmark", "Could not write report", e);
+                }
+            }
+            Gdx.app.exit();
+        }
+    }
+
+    private static final class Result {
+        final String name;
+        final long size;
+        final List<Long> startupMillis = new ArrayList<>();
+        final List<Long> peakKb = new ArrayList<>();
+
+        Result(String name, long size) {
+            this.name = name;
+            this.size = size;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        String jar = stringArg(args, "--jar", null);
+        String exe = stringArg(args, "--native", null);
+        int runs = Integer.parseInt(stringArg(args, "--runs", "10"));
+        int frames = Integer.parseInt(stringArg(args, "--frames", "300"));
+        List<String> gameArgs = new ArrayList<>();
+        int dashes = Arrays.asList(args).indexOf("--");
+        if (dashes >= 0) gameArgs.addAll(Arrays.asList(args).subList(dashes + 1, args.length));
+        if (jar == null && exe == null) {
+            System.err.println("Nothing to launch: pass --jar and/or --native");
+            System.exit(2);
+        }
+
+        List<Result> results = new ArrayList<>();
+        if (jar != null) {
+            String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+            results.add(run("jvm", new File(jar), runs, frames, gameArgs, java, "-jar", jar));
+        }
+        if (exe != null) {
+            results.add(run("native", new File(exe), runs, frames, gameArgs, new File(exe).getAbsolutePath()));
+        }
+
+        System.out.println();
+        System.out.printf("%-8s %6s %18s %18s %16s %10s%n",
+            "build", "runs", "first frame p50", "first frame min", "peak RSS p50", "size");
+        for (Result r : results) {
+            System.out.printf("%-8s %6d %15d ms %15d ms %13s %10s%n", r.name, r.startupMillis.size(),
+                median(r.startupMillis), min(r.startupMillis), kb(median(r.peakKb)), mb(r.size));
+        }
+    }
+
+    /**
+     * Launch one build {@code runs} times.
+     * @param command the executable and its leading arguments; the benchmark's -D options are inserted after the executable
+     */
+    private static Result run(String name, File artifact, int runs, int frames, List<String> gameArgs,
+                              String... command) throws IOException, InterruptedException {
+        Result result = new Result(name, artifact.length());
+        File report = File.createTempFile("rage-startup", ".txt");
+        report.deleteOnExit();
+        for (int i = 0; i < runs; i++) {
+            if (!report.delete() && report.exists()) throw new IOException("Can't clear " + report);
+
+            List<String> cmd = new ArrayList<>();
+            cmd.add(command[0]);
+            cmd.add("-D" + EXIT_AFTER_FRAMES_PROPERTY + "=" + frames);
+            cmd.add("-D" + REPORT_PROPERTY + "=" + report.getAbsolutePath());
+            cmd.addAll(Arrays.asList(command).subList(1, command.length));
+            cmd.addAll(gameArgs);
+
+            ProcessBuilder builder = new ProcessBuilder(cmd).redirectErrorStream(true)
+                .redirectOutput(ProcessBuilder.Redirect.appendTo(new File(report.getPath() + ".log")));
+            long launched = System.currentTimeMillis();
+            Process process = builder.start();
+            if (!process.waitFor(RUN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                process.destroyForcibly();
+                System.out.printf("%s run %d: timed out, see %s.log%n", name, i + 1, report.getPath());
+                continue;
+            }
+
+            String line = null;
+            if (report.isFile()) {
+                try (BufferedReader in = new BufferedReader(new FileReader(report))) {
+                    line = in.readLine();
+                }
+            }
+            if (line == null) {
+                System.out.printf("%s run %d: no report (exit %d), see %s.log%n", name, i + 1, process.exitValue(), report.getPath());
+                continue;
+            }
+            String[] fields = line.trim().split(" ");
+            long startup = Long.parseLong(fields[0]) - launched;
+            result.startupMillis.add(startup);
+            result.peakKb.add(Long.parseLong(fields[1]));
+            System.out.printf("%s run %d: first frame %d ms, peak RSS %s%n", name, i + 1, startup, kb(Long.parseLong(fields[1])));
+        }
+        return result;
+    }
+
+    /** A field of /proc/self/status in kB, or -1 where there is none (not Linux). */
+    static long procStatusKb(String field) {
+        try (BufferedReader in = new BufferedReader(new FileReader("/proc/self/status"))) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (line.startsWith(field + ":")) {
+                    return Long.parseLong(line.substring(field.length() + 1).trim().split("\\s+")[0]);
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            // Not Linux
+        }
+        return -1;
+    }
+
+    private static long median(List<Long> values) {
+        if (values.isEmpty()) return -1;
+        List<Long> sorted = new ArrayList<>(values);
+        sorted.sort(null);
+        return sorted.get(sorted.size() / 2);
+    }
+
+    private static long min(List<Long> values) {
+        long min = Long.MAX_VALUE;
+        for (long v : values) min = Math.min(min, v);
+        return values.isEmpty() ? -1 : min;
+    }
+
+    private static String kb(long kb) {
+        return kb < 0 ? "n/a" : String.format("%.1f MB", kb / 1024.0);
+    }
+
+    private static String mb(long bytes) {
+        return String.format("%.1f MB", bytes / (1024.0 * 1024.0));
+    }
+
+    private static String stringArg(String[] args, String name, String fallback) {
+        for (int i = 0; i < args.length - 1; i++) {
+            if (args[i].equals("--")) break;
+            if (args[i].equals(name)) return args[i + 1];
+        }
+        return fallback;
+    }
+}
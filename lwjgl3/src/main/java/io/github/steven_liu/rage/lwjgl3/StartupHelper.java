@@ -50,6 +50,12 @@ public class StartupHelper {
 
 	private static final String JVM_RESTARTED_ARG = "jvmIsRestarted";
 
+	/**
+	 * System property carrying the launch time (epoch millis) of the JVM that spawned the current one, so startup
+	 * can be measured across the relaunch.
+	 */
+	public static final String STARTUP_ORIGIN_ARG = "rage.startupOrigin";
+
 	/**
 	 * Must only be called on Linux. Check OS first (or use short-circuit evaluation)!
 	 * @return whether NVIDIA drivers are present on Linux.
@@ -186,6 +192,8 @@ public class StartupHelper {
 		jvmArgs.add(javaExecPath);
 		if (isMac) jvmArgs.add("-XstartOnFirstThread");
 		jvmArgs.add("-D" + JVM_RESTARTED_ARG + "=true");
+		if (System.getProperty(STARTUP_ORIGIN_ARG) == null)
+			jvmArgs.add("-D" + STARTUP_ORIGIN_ARG + "=" + ManagementFactory.getRuntimeMXBean().getStartTime());
 		jvmArgs.addAll(ManagementFactory.getRuntimeMXBean().getInputArguments());
 		jvmArgs.add("-cp");
 		jvmArgs.add(System.getProperty("java.class.path"));
@@ -0,0 +1,217 @@
+package io.github.steven_liu.rage.matchmaking;
+
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Pairs waiting players of similar skill. Players wait in one queue per rating
+ * bucket, oldest first. Each queue is a lock-free {@link ConcurrentLinkedDeque}, so
+ * any number of connection threads can {@link #enqueue} and be paired at once without
+ * blocking each other.
+ * <p>
+ * A player joining takes the oldest player waiting in their own bucket, if there is
+ * one. Otherwise they wait. {@link #sweep}, called every few milliseconds, pairs the
+ * players left waiting. Each one's search window starts at a base number of rating
+ * points and widens for every second spent waiting, up to a limit, so a rare rating
+ * still finds a match. It also pairs two players in the same bucket who
+ * joined at the same moment and each found the other not yet queued.
+ * <p>
+ * Who gets a player is decided by a compare-and-set on the ticket alone. A ticket is
+ * taken out of its queue before it is claimed, so it is never in two places and never
+ * matched twice.
+ */
+public final class Matchmaker {
+
+    /** Receives each pair, on whichever thread made it. */
+    public interface Host {
+        /** @param a the player who waited longer */
+        void matched(Ticket a, Ticket b);
+    }
+
+    /** One player waiting for a match. */
+    public static final class Ticket {
+        private static final int WAITING = 0, TAKEN = 1, CANCELLED = 2;
+        private static final AtomicIntegerFieldUpdater<Ticket> STATE =
+            AtomicIntegerFieldUpdater.newUpdater(Ticket.class, "state");
+
+        public final long player;
+        public final float rating;
+        /** Whatever the caller needs to reach the player once matched, e.g. their address. */
+        public final Object attachment;
+
+        private volatile int state;
+        long enqueuedNanos;
+        long matchedNanos;
+
+        public Ticket(long player, float rating, Object attachment) {
+            this.player = player;
+            this.rating = rating;
+            this.attachment = attachment;
+        }
+
+        /** Time from {@link #enqueue} to being paired; only meaningful once matched. */
+        public long waitNanos() {
+            return matchedNanos - enqueuedNanos;
+        }
+
+        private boolean take() {
+            return STATE.compareAndSet(this, WAITING, TAKEN);
+        }
+    }
+
+    // Ratings below 0 or above the top bucket share the end buckets
+    private static final float BUCKET_WIDTH = 50f;
+    private static final int BUCKETS = 80;
+
+    private final float baseWindow;
+    private final float widenPerSecond;
+    private final float maxWindow;
+    private final ConcurrentLinkedDeque<Ticket>[] buckets;
+    private final AtomicBoolean sweeping = new AtomicBoolean();
+    private final LongAdder waiting = new LongAdder();
+
+    /** Pairs within 50 points at once, widening by 50 a second up to 500. */
+    public Matchmaker() {
+        this(50f, 50f, 500f);
+    }
+
+    /**
+     * @param baseWindow rating difference accepted straight away
+     * @param widenPerSecond how much further the window reaches for each second waited
+     * @param maxWindow the widest it gets
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public Matchmaker(float baseWindow, float widenPerSecond, float maxWindow) {
+        this.baseWindow = baseWindow;
+        this.widenPerSecond = widenPerSecond;
+        this.maxWindow = maxWindow;
+        buckets = new ConcurrentLinkedDeque[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) buckets[i] = new ConcurrentLinkedDeque<>();
+    }
+
+    /**
+     * Add a player, or pair them straight away with the longest-waiting player in
+     * their bucket. Safe from any thread. A ticket may only be enqueued once.
+     * @param now {@link System#nanoTime()}
+     */
+    public void enqueue(Ticket ticket, long now, Host host) {
+        ticket.enqueuedNanos = now;
+        int i = bucket(ticket.rating);
+        Ticket other = poll(i);
+        if (other != null) {
+            if (Math.abs(other.rating - ticket.rating) <= window(other, now)) {
+                // Nobody else has seen this ticket yet, so taking it can't fail
+                ticket.take();
+                pair(other, ticket, now, host);
+                return;
+            }
+            putBack(i, other);
+        }
+        buckets[i].offerLast(ticket);
+        waiting.increment();
+    }
+
+    /**
+     * Withdraw a waiting player.
+     * @return false if they have already been matched, or are being right now
+     */
+    public boolean cancel(Ticket ticket) {
+        if (!Ticket.STATE.compareAndSet(ticket, Ticket.WAITING, Ticket.CANCELLED)) return false;
+        // Left in its queue; whoever reaches it there drops it
+        waiting.decrement();
+        return true;
+    }
+
+    /**
+     * Pair whoever can be paired with the windows as wide as they are now. Safe from
+     * any thread; if another thread is already sweeping, returns straight away.
+     * @return pairs made
+     */
+    public int sweep(long now, Host host) {
+        if (!sweeping.compareAndSet(false, true)) return 0;
+        try {
+            int pairs = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                // Only the head can be the one to match: it has waited longest, so its window is widest
+                Ticket a;
+                while ((a = poll(i)) != null) {
+                    Ticket b = opponent(a, i, now);
+                    if (b == null) {
+                        putBack(i, a);
+                        break;
+                    }
+                    pair(a.enqueuedNanos <= b.enqueuedNanos ? a : b, a.enqueuedNanos <= b.enqueuedNanos ? b : a,
+                        now, host);
+                    pairs++;
+                }
+            }
+            return pairs;
+        } finally {
+            sweeping.set(false);
+        }
+    }
+
+    /** Players waiting right now. Approximate while other threads are enqueueing. */
+    public long waiting() {
+        return waiting.sum();
+    }
+
+    /**
+     * The nearest waiting player, by bucket, that {@code a}'s or their own window
+     * reaches; already taken, or null. Only the head of each bucket is considered.
+     */
+    private Ticket opponent(Ticket a, int i, long now) {
+        float windowA = window(a, now);
+        // Buckets further than the widest window can't hold anyone close enough
+        for (int d = 0; (d - 1) * BUCKET_WIDTH <= maxWindow && (i - d >= 0 || i + d < BUCKETS); d++) {
+            for (int side = 0; side < (d == 0 ? 1 : 2); side++) {
+                int j = side == 0 ? i - d : i + d;
+                if (j < 0 || j >= BUCKETS) continue;
+                Ticket head = buckets[j].peekFirst();
+                if (head == null || Math.abs(a.rating - head.rating) > Math.max(windowA, window(head, now))) continue;
+                Ticket b = poll(j);
+                if (b == null) continue;
+                if (Math.abs(a.rating - b.rating) <= Math.max(windowA, window(b, now))) return b;
+                putBack(j, b);
+            }
+        }
+        return null;
+    }
+
+    /** Take the oldest live ticket in a bucket, dropping cancelled ones on the way. */
+    private Ticket poll(int bucket) {
+        Ticket t;
+        while ((t = buckets[bucket].pollFirst()) != null) {
+            if (t.take()) {
+                waiting.decrement();
+                return t;
+            }
+        }
+        return null;
+    }
+
+    /** Return a ticket that was taken but not matched to the front of its queue, where it was. */
+    private void putBack(int bucket, Ticket t) {
+        Ticket.STATE.set(t, Ticket.WAITING);
+        waiting.increment();
+        buckets[bucket].offerFirst(t);
+    }
+
+    private void pair(Ticket a, Ticket b, long now, Host host) {
+        a.matchedNanos = now;
+        b.matchedNanos = now;
+        host.matched(a, b);
+    }
+
+    private float window(Ticket t, long now) {
+        float seconds = (now - t.enqueuedNanos) / (float) TimeUnit.SECONDS.toNanos(1);
+        return Math.min(maxWindow, baseWindow + widenPerSecond * Math.max(0f, seconds));
+    }
+
+    private static int bucket(float rating) {
+        return Math.max(0, Math.min(BUCKETS - 1, (int) (rating / BUCKET_WIDTH)));
+    }
+}
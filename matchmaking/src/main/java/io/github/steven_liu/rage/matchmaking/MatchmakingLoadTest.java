@@ -0,0 +1,181 @@
+package io.github.steven_liu.rage.matchmaking;
+
+import io.github.steven_liu.rage.Background;
+import io.github.steven_liu.rage.Match;
+import io.github.steven_liu.rage.Replay;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Floods a {@link Matchmaker} with joins from several threads at a fixed total rate,
+ * with ratings spread around 1500 the way a live population is, while another thread
+ * sweeps. Reports the join rate actually reached, queue wait percentiles and how far
+ * apart the paired ratings were. Every pair is started as a {@link Match} and stepped
+ * once, the way the server starts one.
+ * <p>
+ * Checks that no player is matched twice or lost: at the end, every ticket must have
+ * been matched exactly once or still be waiting. Exits with status 1 if not.
+ * <p>
+ * Options: {@code --rate N} joins per second over all threads (default 300000),
+ * {@code --threads N} joining threads (default 4), {@code --duration N} seconds
+ * (default 10), {@code --sweep-ms N} between sweeps (default 5), {@code --spread N}
+ * standard deviation of the ratings (default 300).
+ */
+public class MatchmakingLoadTest {
+
+    // Wait histogram: eight buckets per doubling, from 1 µs to about 18 minutes
+    private static final int WAIT_STEPS = 8;
+    private static final int WAIT_BUCKETS = 30 * WAIT_STEPS;
+    // Rating gap histogram: one point per bucket
+    private static final int GAP_BUCKETS = 1001;
+
+    private final AtomicLongArray waits = new AtomicLongArray(WAIT_BUCKETS);
+    private final AtomicLongArray gaps = new AtomicLongArray(GAP_BUCKETS);
+    private final AtomicLong maxWait = new AtomicLong();
+    private final LongAdder pairs = new LongAdder();
+    private final LongAdder matchedTickets = new LongAdder();
+    private final LongAdder doubleMatched = new LongAdder();
+    private final LongAdder joins = new LongAdder();
+
+    // Stands in for the server: checks the pair, records it and starts its match
+    private final Matchmaker.Host host = (a, b) -> {
+        // Each ticket carries a flag; finding it already set means the player was matched before
+        if (!((AtomicBoolean) a.attachment).compareAndSet(false, true)) doubleMatched.increment();
+        if (!((AtomicBoolean) b.attachment).compareAndSet(false, true)) doubleMatched.increment();
+        record(a.waitNanos());
+        record(b.waitNanos());
+        int gap = (int) Math.abs(a.rating - b.rating);
+        gaps.incrementAndGet(Math.min(GAP_BUCKETS - 1, gap));
+        pairs.increment();
+        matchedTickets.add(2);
+        Match match = new Match(Background.Type.values()[(int) ((a.player ^ b.player) & 1)]);
+        match.step(Replay.TICK_DELTA);
+    };
+
+    public static void main(String[] args) throws InterruptedException {
+        int rate = intArg(args, "--rate", 300_000);
+        int threads = intArg(args, "--threads", 4);
+        int duration = intArg(args, "--duration", 10);
+        int sweepMillis = intArg(args, "--sweep-ms", 5);
+        int spread = intArg(args, "--spread", 300);
+        new MatchmakingLoadTest().run(rate, threads, duration, sweepMillis, spread);
+    }
+
+    private void run(int rate, int threads, int duration, int sweepMillis, int spread) throws InterruptedException {
+        Matchmaker matchmaker = new Matchmaker();
+        long start = System.nanoTime();
+        long end = start + TimeUnit.SECONDS.toNanos(duration);
+        double perThreadPerNano = rate / (double) threads / 1e9;
+
+        Thread[] joiners = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            int thread = t;
+            joiners[t] = new Thread(() -> {
+                Random random = new Random(thread);
+                long issued = 0;
+                long player = (long) thread << 40;
+                long now;
+                while ((now = System.nanoTime()) < end) {
+                    // Open loop: catch up on every join that is due, however late
+                    long due = (long) ((now - start) * perThreadPerNano) - issued;
+                    if (due <= 0) {
+                        LockSupport.parkNanos(50_000);
+                        continue;
+                    }
+                    for (long i = 0; i < due; i++) {
+                        float rating = (float) (1500 + random.nextGaussian() * spread);
+                        Matchmaker.Ticket ticket = new Matchmaker.Ticket(player++, rating, new AtomicBoolean());
+                        matchmaker.enqueue(ticket, System.nanoTime(), host);
+                    }
+                    issued += due;
+                    joins.add(due);
+                }
+            }, "join-" + t);
+            joiners[t].start();
+        }
+        Thread sweeper = new Thread(() -> {
+            while (System.nanoTime() < end) {
+                matchmaker.sweep(System.nanoTime(), host);
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(sweepMillis));
+            }
+        }, "sweep");
+        sweeper.start();
+
+        for (Thread t : joiners) t.join();
+        sweeper.join();
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        long joined = joins.sum();
+        long waiting = matchmaker.waiting();
+        long matched = matchedTickets.sum();
+        System.out.printf("%d threads joining at %d/s for %d s, ratings 1500 +- %d, sweep every %d ms%n",
+            threads, rate, duration, spread, sweepMillis);
+        System.out.println();
+        System.out.printf("joins                   %d (%.0f/s)%n", joined, joined / seconds);
+        System.out.printf("matches started         %d (%.0f/s)%n", pairs.sum(), pairs.sum() / seconds);
+        System.out.printf("still waiting           %d%n", waiting);
+        System.out.printf("queue wait p50          %s%n", millis(waitPercentile(0.5)));
+        System.out.printf("queue wait p90          %s%n", millis(waitPercentile(0.9)));
+        System.out.printf("queue wait p99          %s%n", millis(waitPercentile(0.99)));
+        System.out.printf("queue wait p99.9        %s%n", millis(waitPercentile(0.999)));
+        System.out.printf("queue wait max          %s%n", millis(maxWait.get()));
+        System.out.printf("rating gap p50 / p99    %d / %d%n", gapPercentile(0.5), gapPercentile(0.99));
+
+        boolean ok = matched + waiting == joined && doubleMatched.sum() == 0;
+        System.out.println(ok ? "every player matched once or still waiting"
+            : "ACCOUNTING MISMATCH: " + matched + " matched + " + waiting + " waiting != " + joined + " joined");
+        if (!ok) System.exit(1);
+    }
+
+    private void record(long nanos) {
+        long micros = Math.max(1, nanos / 1000);
+        int bucket = (int) Math.min(WAIT_BUCKETS - 1, Math.floor(Math.log(micros) / Math.log(2) * WAIT_STEPS));
+        waits.incrementAndGet(bucket);
+        long max;
+        while (nanos > (max = maxWait.get()) && !maxWait.compareAndSet(max, nanos)) {
+            // Retry with the newer maximum
+        }
+    }
+
+    /** Upper edge, in nanoseconds, of the wait bucket holding this fraction of players. */
+    private long waitPercentile(double fraction) {
+        long total = 0;
+        for (int i = 0; i < WAIT_BUCKETS; i++) total += waits.get(i);
+        long target = (long) Math.ceil(total * fraction);
+        long seen = 0;
+        for (int i = 0; i < WAIT_BUCKETS; i++) {
+            seen += waits.get(i);
+            if (seen >= target && seen > 0) return (long) (Math.pow(2, (i + 1) / (double) WAIT_STEPS) * 1000);
+        }
+        return maxWait.get();
+    }
+
+    private int gapPercentile(double fraction) {
+        long total = 0;
+        for (int i = 0; i < GAP_BUCKETS; i++) total += gaps.get(i);
+        long target = (long) Math.ceil(total * fraction);
+        long seen = 0;
+        for (int i = 0; i < GAP_BUCKETS; i++) {
+            seen += gaps.get(i);
+            if (seen >= target && seen > 0) return i;
+        }
+        return GAP_BUCKETS - 1;
+    }
+
+    private static String millis(long nanos) {
+        return String.format("%.3f ms", nanos / 1e6);
+    }
+
+    private static int intArg(String[] args, String name, int fallback) {
+        for (int i = 0; i < args.length - 1; i++) {
+            if (args[i].equals(name)) return Integer.parseInt(args[i + 1]);
+        }
+        return fallback;
+    }
+}
@@ -0,0 +1,224 @@
+package io.github.steven_liu.rage.server;
+
+import io.github.steven_liu.rage.net.BitReader;
+import io.github.steven_liu.rage.net.SnapshotCodec;
+import io.github.steven_liu.rage.net.SnapshotHistory;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.DatagramChannel;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Starts a {@link MatchServer} in-process and drives it with simulated clients over
+ * loopback UDP, then reports tick jitter, CPU per match and how many matches one
+ * core could hold.
+ * <p>
+ * Options: {@code --matches N} (default 2000), {@code --threads N} server tick threads
+ * (default: all cores), {@code --sockets N} client sockets shared by all clients
+ * (default 16), {@code --input-rate N} input packets per client per second (default 60),
+ * {@code --warmup N} and {@code --duration N} in seconds (default 5 and 20).
+ */
+public class LoadGenerator {
+
+    /** One simulated player. Many share a socket; the token tells them apart. */
+    private static final class Client {
+        final int token;
+        final DatagramChannel socket;
+        volatile int matchId = -1;
+        volatile int slot;
+        volatile int lastTick = -1;
+        float move;
+        // Decoded snapshots, to resolve the deltas the server sends
+        final SnapshotHistory history = new SnapshotHistory(ServerMatch.HISTORY);
+
+        Client(int token, DatagramChannel socket) {
+            this.token = token;
+            this.socket = socket;
+        }
+    }
+
+    private final Client[] clients;
+    private final Client[] bySlot;  // indexed by match table index * 2 + slot
+    private final DatagramChannel[] sockets;
+    private final InetSocketAddress serverAddress;
+    private final LongAdder statePackets = new LongAdder();
+    private final LongAdder stateBytes = new LongAdder();
+    private final LongAdder undecodable = new LongAdder();
+    private final LongAdder welcomed = new LongAdder();
+
+    private LoadGenerator(int clientCount, int socketCount, int maxMatches, InetSocketAddress serverAddress)
+        throws IOException {
+        this.serverAddress = serverAddress;
+        bySlot = new Client[maxMatches * 2];
+        sockets = new DatagramChannel[socketCount];
+        for (int i = 0; i < socketCount; i++) {
+            sockets[i] = DatagramChannel.open();
+            sockets[i].bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+            sockets[i].socket().setReceiveBufferSize(4 << 20);
+        }
+        clients = new Client[clientCount];
+        for (int i = 0; i < clientCount; i++) clients[i] = new Client(i, sockets[i % socketCount]);
+    }
+
+    public static void main(String[] args) throws Exception {
+        int matches = ServerLauncher.intArg(args, "--matches", 2000);
+        int threads = ServerLauncher.intArg(args, "--threads", Runtime.getRuntime().availableProcessors());
+        int socketCount = ServerLauncher.intArg(args, "--sockets", 16);
+        int inputRate = ServerLauncher.intArg(args, "--input-rate", 60);
+        int warmup = ServerLauncher.intArg(args, "--warmup", 5);
+        int duration = ServerLauncher.intArg(args, "--duration", 20);
+
+        long heapBefore = usedHeap();
+        int maxMatches = Math.max(1024, matches);
+        MatchServer server = new MatchServer(0, threads, maxMatches);
+        server.start();
+        InetSocketAddress address = new InetSocketAddress(InetAddress.getLoopbackAddress(), server.port());
+
+        LoadGenerator generator = new LoadGenerator(matches * 2, socketCount, maxMatches, address);
+        generator.startReceivers();
+        if (!generator.joinAll(TimeUnit.SECONDS.toNanos(30))) {
+            System.err.println("Only " + generator.welcomed.sum() + " of " + matches * 2 + " clients got a match");
+        }
+        long heapPerMatch = (usedHeap() - heapBefore) / Math.max(1, server.activeMatches());
+
+        System.out.printf("%d matches on %d tick threads; warming up for %ds...%n",
+            server.activeMatches(), threads, warmup);
+        generator.sendInputs(inputRate, TimeUnit.SECONDS.toNanos(warmup));
+
+        TickStats before = server.stats();
+        long packetsBefore = generator.statePackets.sum();
+        long bytesBefore = generator.stateBytes.sum();
+        long start = System.nanoTime();
+        generator.sendInputs(inputRate, TimeUnit.SECONDS.toNanos(duration));
+        double seconds = (System.nanoTime() - start) / 1e9;
+        TickStats stats = server.stats().since(before);
+        long packets = generator.statePackets.sum() - packetsBefore;
+        long bytes = generator.stateBytes.sum() - bytesBefore;
+
+        generator.leaveAll();
+        server.stop();
+
+        double cpuPerMatchTick = stats.cpuNanosPerMatchTick();
+        System.out.println();
+        System.out.printf("matches                 %d%n", matches);
+        System.out.printf("ticks measured          %d (%.1f s)%n", stats.ticks, seconds);
+        System.out.printf("tick jitter p50         %.2f ms%n", stats.jitterPercentile(0.50) / 1e6);
+        System.out.printf("tick jitter p99         %.2f ms%n", stats.jitterPercentile(0.99) / 1e6);
+        System.out.printf("tick jitter max         %.2f ms%n", stats.maxJitterNanos / 1e6);
+        System.out.printf("cpu per match-tick      %.2f us%n", cpuPerMatchTick / 1e3);
+        System.out.printf("cpu per match           %.3f %% of a core%n", cpuPerMatchTick * TickScheduler.TICK_RATE / 1e7);
+        System.out.printf("max matches per core    %.0f%n", cpuPerMatchTick == 0 ? 0 : TickScheduler.TICK_NANOS / cpuPerMatchTick);
+        System.out.printf("heap per match          ~%d bytes (includes the simulated clients)%n", heapPerMatch);
+        System.out.printf("state packets received  %.0f/s (expected %d/s)%n",
+            packets / seconds, matches * 2 * TickScheduler.TICK_RATE);
+        System.out.printf("state bytes per packet  %.1f (UDP payload)%n", packets == 0 ? 0 : (double) bytes / packets);
+        System.out.printf("undecodable snapshots   %d%n", generator.undecodable.sum());
+    }
+
+    private void startReceivers() {
+        for (DatagramChannel socket : sockets) {
+            Thread t = new Thread(() -> receiveLoop(socket), "client-receive");
+            t.setDaemon(true);
+            t.start();
+        }
+    }
+
+    private void receiveLoop(DatagramChannel socket) {
+        ByteBuffer in = ByteBuffer.allocateDirect(Protocol.MAX_PACKET_SIZE);
+        BitReader bits = new BitReader();
+        while (socket.isOpen()) {
+            try {
+                in.clear();
+                socket.receive(in);
+                in.flip();
+                byte type = in.get();
+                if (type == Protocol.WELCOME) {
+                    Client c = clients[in.getInt()];
+                    c.slot = in.get(in.position() + 4);
+                    c.matchId = in.getInt();
+                    bySlot[MatchServer.matchIndex(c.matchId) * 2 + c.slot] = c;
+                    welcomed.increment();
+                } else if (type == Protocol.STATE) {
+                    statePackets.increment();
+                    stateBytes.add(in.limit());
+                    int matchId = in.getInt();
+                    int slot = in.get();
+                    Client c = bySlot[MatchServer.matchIndex(matchId) * 2 + slot];
+                    if (c == null) continue;
+                    int tick = SnapshotCodec.read(bits.begin(in), c.history);
+                    // The ack travels back with the next input
+                    if (tick < 0) undecodable.increment();
+                    else if (tick > c.lastTick) c.lastTick = tick;
+                }
+            } catch (ClosedChannelException e) {
+                return;
+            } catch (IOException | RuntimeException e) {
+                System.err.println("Client receive failed: " + e);
+            }
+        }
+    }
+
+    /** Send JOIN for every client (resending to the ones still waiting) until all have a match. */
+    private boolean joinAll(long timeoutNanos) throws IOException, InterruptedException {
+        ByteBuffer out = ByteBuffer.allocateDirect(Protocol.MAX_PACKET_SIZE);
+        long deadline = System.nanoTime() + timeoutNanos;
+        while (System.nanoTime() < deadline) {
+            boolean waiting = false;
+            for (Client c : clients) {
+                if (c.matchId >= 0) continue;
+                waiting = true;
+                out.clear();
+                out.put(Protocol.JOIN).putInt(c.token).flip();
+                c.socket.send(out, serverAddress);
+            }
+            if (!waiting) return true;
+            TimeUnit.MILLISECONDS.sleep(500);
+        }
+        return false;
+    }
+
+    /** Every client sends one input per period: a random walk on the stick and the odd jump. */
+    private void sendInputs(int rate, long durationNanos) throws IOException {
+        ByteBuffer out = ByteBuffer.allocateDirect(Protocol.MAX_PACKET_SIZE);
+        Random random = new Random(42);
+        long period = 1_000_000_000L / rate;
+        long end = System.nanoTime() + durationNanos;
+        for (long next = System.nanoTime(); System.nanoTime() < end; next += period) {
+            for (Client c : clients) {
+                if (c.matchId < 0) continue;
+                c.move = Math.max(-1f, Math.min(1f, c.move + (random.nextFloat() - 0.5f) * 0.4f));
+                boolean jump = random.nextInt(50) == 0;
+                out.clear();
+                out.put(Protocol.INPUT).putInt(c.matchId).put((byte) c.slot).put(Protocol.encodeMove(c.move))
+                    .put((byte) (jump ? Protocol.INPUT_FLAG_JUMP : 0)).putInt(c.lastTick).flip();
+                c.socket.send(out, serverAddress);
+            }
+            long sleep = next + period - System.nanoTime();
+            if (sleep > 0) LockSupport.parkNanos(sleep);
+        }
+    }
+
+    private void leaveAll() throws IOException {
+        ByteBuffer out = ByteBuffer.allocateDirect(Protocol.MAX_PACKET_SIZE);
+        for (Client c : clients) {
+            if (c.matchId < 0) continue;
+            out.clear();
+            out.put(Protocol.LEAVE).putInt(c.matchId).put((byte) c.slot).flip();
+            c.socket.send(out, serverAddress);
+        }
+        for (DatagramChannel socket : sockets) socket.close();
+    }
+
+    private static long usedHeap() {
+        Runtime rt = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) System.gc();
+        return rt.totalMemory() - rt.freeMemory();
+    }
+}
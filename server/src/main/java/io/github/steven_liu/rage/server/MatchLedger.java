@@ -0,0 +1,247 @@
+package io.github.steven_liu.rage.server;
+
+import io.github.steven_liu.rage.Background;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only file of finished match results, one fixed-size record each, written
+ * through memory maps so an append is a few stores and costs the same at any size.
+ * <p>
+ * Each record is {@code length(int) crc32(int) payload}. The length is stored last, so
+ * a record only exists once all of it is in place; on open, records are read up to the
+ * first one whose length or checksum is wrong, and that slot and every one after it are
+ * cleared. A power cut can leave a later record on disk without an earlier one, since
+ * pages are flushed in any order; left alone, it would come back once appends reach it. A process
+ * crash loses nothing that {@link #append} returned from, because the pages belong to
+ * the OS; {@link #sync} forces them to disk to survive a power cut as well.
+ * <p>
+ * The file grows a region at a time. Records never straddle two regions, so each lives
+ * in one buffer and is read with absolute gets.
+ */
+public final class MatchLedger implements Closeable {
+
+    /** One match result. Reused by {@link #read} and {@link #forEach} to avoid allocating per record. */
+    public static final class Record {
+        public long player1, player2;
+        /** 1, 2 or {@link io.github.steven_liu.rage.Replay#DRAW}. */
+        public int winner;
+        public float health1, health2;
+        public int ticks;
+        public Background.Type background;
+        /** Id of the stored replay of this match, or 0 if there is none. */
+        public long replay;
+        /** When the match ended, in milliseconds since the epoch. */
+        public long endedAt;
+    }
+
+    /** Called for each record in order by {@link #forEach}. */
+    public interface Visitor {
+        void visit(long index, Record record);
+    }
+
+    private static final int MAGIC = 0x52414745;    // "RAGE"
+    private static final int VERSION = 1;
+
+    // length, crc, then the payload padded to a power of two
+    static final int RECORD_SIZE = 64;
+    private static final int PAYLOAD_SIZE = 48;
+    private static final int HEADER_SIZE = RECORD_SIZE;
+
+    // Payload offsets, from the start of the record
+    private static final int LENGTH = 0;
+    private static final int CRC = 4;
+    private static final int PLAYER1 = 8;
+    private static final int PLAYER2 = 16;
+    private static final int REPLAY = 24;
+    private static final int ENDED_AT = 32;
+    private static final int HEALTH1 = 40;
+    private static final int HEALTH2 = 44;
+    private static final int TICKS = 48;
+    private static final int WINNER = 52;
+    private static final int BACKGROUND = 53;
+
+    // 64 MB: a million records per region
+    private static final int REGION_SIZE = 1 << 26;
+    private static final int RECORDS_PER_REGION = REGION_SIZE / RECORD_SIZE;
+
+    private static final Background.Type[] TYPES = Background.Type.values();
+
+    private final RandomAccessFile file;
+    private final FileChannel channel;
+    private final ArrayList<MappedByteBuffer> regions = new ArrayList<>();
+    private final CRC32 crc = new CRC32();
+    private final byte[] payload = new byte[PAYLOAD_SIZE];
+    private long count;
+
+    /** Open a ledger, creating it if needed, and find the end of its intact records. */
+    public MatchLedger(File path) throws IOException {
+        file = new RandomAccessFile(path, "rw");
+        channel = file.getChannel();
+        boolean fresh = channel.size() == 0;
+        map(0);
+        ByteBuffer header = regions.get(0);
+        if (fresh) {
+            header.putInt(0, MAGIC).putInt(4, VERSION).putInt(8, RECORD_SIZE);
+        } else if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION || header.getInt(8) != RECORD_SIZE) {
+            close();
+            throw new IOException(path + " is not a version " + VERSION + " match ledger");
+        }
+        recover();
+    }
+
+    /** Records in the ledger. */
+    public synchronized long size() {
+        return count;
+    }
+
+    /** Add a record at the end. Thread-safe. */
+    public synchronized void append(Record r) throws IOException {
+        long slot = count + 1;  // slot 0 is the header
+        int region = (int) (slot / RECORDS_PER_REGION);
+        if (region >= regions.size()) map(region);
+        ByteBuffer b = regions.get(region);
+        int at = (int) (slot % RECORDS_PER_REGION) * RECORD_SIZE;
+
+        b.putLong(at + PLAYER1, r.player1);
+        b.putLong(at + PLAYER2, r.player2);
+        b.putLong(at + REPLAY, r.replay);
+        b.putLong(at + ENDED_AT, r.endedAt);
+        b.putFloat(at + HEALTH1, r.health1);
+        b.putFloat(at + HEALTH2, r.health2);
+        b.putInt(at + TICKS, r.ticks);
+        b.put(at + WINNER, (byte) r.winner);
+        b.put(at + BACKGROUND, (byte) r.background.ordinal());
+        b.putInt(at + CRC, checksum(b, at));
+        // Last: this is what makes the record count on the next open
+        b.putInt(at + LENGTH, PAYLOAD_SIZE);
+        count++;
+    }
+
+    /** Read record {@code index} (from 0) into {@code into}. */
+    public synchronized Record read(long index, Record into) {
+        if (index < 0 || index >= count) throw new IndexOutOfBoundsException(index + " of " + count);
+        long slot = index + 1;
+        decode(regions.get((int) (slot / RECORDS_PER_REGION)), (int) (slot % RECORDS_PER_REGION) * RECORD_SIZE, into);
+        return into;
+    }
+
+    /** Visit every record in order, all through one {@link Record}. */
+    public void forEach(Visitor visitor) {
+        // Appends may continue meanwhile; this visits the records that exist now
+        long n;
+        MappedByteBuffer[] mapped;
+        synchronized (this) {
+            n = count;
+            mapped = regions.toArray(new MappedByteBuffer[0]);
+        }
+        Record r = new Record();
+        for (long i = 0; i < n; i++) {
+            long slot = i + 1;
+            decode(mapped[(int) (slot / RECORDS_PER_REGION)], (int) (slot % RECORDS_PER_REGION) * RECORD_SIZE, r);
+            visitor.visit(i, r);
+        }
+    }
+
+    /** Force appended records to disk. */
+    public synchronized void sync() {
+        for (MappedByteBuffer region : regions) region.force();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        // The maps stay valid until collected; the file can close now
+        channel.close();
+        file.close();
+    }
+
+    private void recover() {
+        long slot = 1;
+        while (true) {
+            int region = (int) (slot / RECORDS_PER_REGION);
+            if (region >= regions.size()) {
+                if ((long) region * REGION_SIZE >= fileSize()) break;
+                try {
+                    map(region);
+                } catch (IOException e) {
+                    break;
+                }
+            }
+            ByteBuffer b = regions.get(region);
+            int at = (int) (slot % RECORDS_PER_REGION) * RECORD_SIZE;
+            if (b.getInt(at + LENGTH) != PAYLOAD_SIZE || b.getInt(at + CRC) != checksum(b, at)) break;
+            slot++;
+        }
+        count = slot - 1;
+        clearFrom(slot);
+    }
+
+    /**
+     * Clear the length of every slot from {@code slot} to the end of the file, so neither a
+     * torn append nor an intact record flushed ahead of it can look whole again. Forced to
+     * disk before any new append can land in front of them.
+     */
+    private void clearFrom(long slot) {
+        for (int region = (int) (slot / RECORDS_PER_REGION); ; region++) {
+            if (region >= regions.size()) {
+                if ((long) region * REGION_SIZE >= fileSize()) return;
+                try {
+                    map(region);
+                } catch (IOException e) {
+                    return;
+                }
+            }
+            MappedByteBuffer b = regions.get(region);
+            boolean cleared = false;
+            int first = region == slot / RECORDS_PER_REGION ? (int) (slot % RECORDS_PER_REGION) : 0;
+            for (int at = first * RECORD_SIZE; at < REGION_SIZE; at += RECORD_SIZE) {
+                if (b.getInt(at + LENGTH) == 0) continue;
+                b.putInt(at + LENGTH, 0);
+                cleared = true;
+            }
+            if (cleared) b.force();
+        }
+    }
+
+    private long fileSize() {
+        try {
+            return channel.size();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private void map(int region) throws IOException {
+        while (regions.size() <= region) {
+            long offset = (long) regions.size() * REGION_SIZE;
+            regions.add(channel.map(FileChannel.MapMode.READ_WRITE, offset, REGION_SIZE));
+        }
+    }
+
+    private int checksum(ByteBuffer b, int at) {
+        for (int i = 0; i < PAYLOAD_SIZE; i++) payload[i] = b.get(at + PLAYER1 + i);
+        crc.reset();
+        crc.update(payload, 0, PAYLOAD_SIZE);
+        return (int) crc.getValue();
+    }
+
+    private static void decode(ByteBuffer b, int at, Record r) {
+        r.player1 = b.getLong(at + PLAYER1);
+        r.player2 = b.getLong(at + PLAYER2);
+        r.replay = b.getLong(at + REPLAY);
+        r.endedAt = b.getLong(at + ENDED_AT);
+        r.health1 = b.getFloat(at + HEALTH1);
+        r.health2 = b.getFloat(at + HEALTH2);
+        r.ticks = b.getInt(at + TICKS);
+        r.winner = b.get(at + WINNER);
+        r.background = TYPES[b.get(at + BACKGROUND)];
+    }
+}
@@ -0,0 +1,424 @@
+package io.github.steven_liu.rage.server;
+
+import io.github.steven_liu.rage.Background;
+import io.github.steven_liu.rage.Replay;
+import io.github.steven_liu.rage.matchmaking.Matchmaker;
+import io.github.steven_liu.rage.net.BitWriter;
+import io.github.steven_liu.rage.net.BufferPool;
+import io.github.steven_liu.rage.net.SnapshotCodec;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Authoritative match server over UDP. One thread receives every packet, queues
+ * joining clients with a {@link Matchmaker}, which pairs them by rating, and stores
+ * their inputs; a {@link TickScheduler}
+ * steps the matches and sends each client the resulting state. Spectators subscribe
+ * to a match and get a delayed copy of it through a {@link SpectatorFanOut}.
+ * <p>
+ * The socket is non-blocking: a send that doesn't fit in the socket buffer is
+ * dropped rather than stalling a tick or fan-out thread.
+ */
+public final class MatchServer implements TickScheduler.Listener {
+
+    // Match ids are a table index plus a generation, so a packet for a finished match can't reach its successor
+    private static final int INDEX_BITS = 20;
+    private static final int INDEX_MASK = (1 << INDEX_BITS) - 1;
+
+    private static final long SWEEP_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+    // How often waiting players are re-matched with their widened search windows
+    private static final long MATCHMAKING_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    static final long JOIN_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(5);
+
+    /** A client's place in the matchmaking queue. Equal for the same address and token. */
+    private static final class Join {
+        final SocketAddress from;
+        final int token;
+        long lastHeardNanos;
+
+        Join(SocketAddress from, int token) {
+            this.from = from;
+            this.token = token;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Join && ((Join) o).token == token && ((Join) o).from.equals(from);
+        }
+
+        @Override
+        public int hashCode() {
+            return from.hashCode() * 31 + token;
+        }
+    }
+
+    private final int requestedPort;
+    private final int fanOutThreads;
+    private final int spectatorDelayMillis;
+    private final int maxSpectators;
+    private final BufferPool buffers = new BufferPool(Protocol.MAX_PACKET_SIZE, 256);
+    private final TickScheduler scheduler;
+    private final AtomicReferenceArray<ServerMatch> table;
+    private final int[] generations;
+    private final ArrayDeque<Integer> freeSlots = new ArrayDeque<>();
+
+    private DatagramChannel channel;
+    private Selector selector;
+    private Thread receiveThread;
+    private SpectatorFanOut fanOut;
+
+    // Clients waiting for an opponent. The receive thread enqueues and sweeps, so pairs are started on it too
+    private final Matchmaker matchmaker = new Matchmaker();
+    private final Matchmaker.Host host = this::startMatch;
+    // Queued tickets, so a resent JOIN doesn't queue its client twice; receive thread only
+    private final HashMap<Join, Matchmaker.Ticket> queued = new HashMap<>();
+    private ByteBuffer welcome;
+
+    // Finished matches are appended here and rated, if the server was given a ledger
+    private MatchLedger ledger;
+    private final Ratings ratings = new Ratings();
+    private final MatchLedger.Record result = new MatchLedger.Record();
+    // Host each rated player id has played from. Ids are client-sent, so this is all that stops one client taking
+    // another's rating while the server runs; it isn't authentication and isn't kept across restarts
+    private final HashMap<Long, InetAddress> playerHosts = new HashMap<>();
+
+    /**
+     * @param port UDP port to bind, or 0 for any free port
+     * @param threads tick threads; one per core you want to give the server
+     * @param maxMatches how many matches may run at once
+     */
+    public MatchServer(int port, int threads, int maxMatches) {
+        this(port, threads, maxMatches, threads, 2000, 65536);
+    }
+
+    /**
+     * @param fanOutThreads threads sending spectator frames
+     * @param spectatorDelayMillis how far behind the live match spectators see it
+     * @param maxSpectators spectators the whole process accepts
+     */
+    public MatchServer(int port, int threads, int maxMatches, int fanOutThreads, int spectatorDelayMillis,
+                       int maxSpectators) {
+        if (maxMatches > INDEX_MASK + 1) throw new IllegalArgumentException("maxMatches > " + (INDEX_MASK + 1));
+        this.requestedPort = port;
+        this.fanOutThreads = fanOutThreads;
+        this.spectatorDelayMillis = spectatorDelayMillis;
+        this.maxSpectators = maxSpectators;
+        this.scheduler = new TickScheduler(threads, 4, buffers, this);
+        this.table = new AtomicReferenceArray<>(maxMatches);
+        this.generations = new int[maxMatches];
+        for (int i = 0; i < maxMatches; i++) freeSlots.add(i);
+    }
+
+    /**
+     * Record every finished match in {@code ledger} and keep ratings from it. Ratings
+     * are rebuilt from the ledger's existing records. Call before {@link #start}.
+     */
+    public void setLedger(MatchLedger ledger) {
+        this.ledger = ledger;
+        ratings.rebuild(ledger);
+    }
+
+    /** Rated players so far, or 0 without a ledger. */
+    public int ratedPlayers() {
+        synchronized (result) {
+            return ratings.playerCount();
+        }
+    }
+
+    public void start() throws IOException {
+        channel = DatagramChannel.open();
+        channel.bind(new InetSocketAddress(requestedPort));
+        // Thousands of clients answer within the same tick; keep their packets instead of dropping them
+        channel.socket().setReceiveBufferSize(4 << 20);
+        channel.socket().setSendBufferSize(4 << 20);
+        channel.configureBlocking(false);
+        selector = Selector.open();
+        channel.register(selector, SelectionKey.OP_READ);
+        fanOut = new SpectatorFanOut(channel, fanOutThreads, spectatorDelayMillis, maxSpectators);
+
+        scheduler.start();
+        receiveThread = new Thread(this::receiveLoop, "server-receive");
+        receiveThread.setDaemon(true);
+        receiveThread.start();
+    }
+
+    public void stop() {
+        scheduler.stop();
+        fanOut.stop();
+        try {
+            channel.close();
+            selector.wakeup();
+            receiveThread.join(1000);
+        } catch (IOException ignored) {
+            // Closing anyway
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /** @return the bound UDP port. */
+    public int port() throws IOException {
+        return ((InetSocketAddress) channel.getLocalAddress()).getPort();
+    }
+
+    public int activeMatches() {
+        return scheduler.matchCount();
+    }
+
+    TickStats stats() {
+        return scheduler.stats();
+    }
+
+    SpectatorFanOut spectators() {
+        return fanOut;
+    }
+
+    // ── Receiving ────────────────────────────────────────────────────────
+
+    private void receiveLoop() {
+        ByteBuffer in = buffers.acquire();
+        ByteBuffer out = buffers.acquire();
+        welcome = buffers.acquire();
+        long nextSweep = System.nanoTime() + SWEEP_INTERVAL_NANOS;
+        while (channel.isOpen()) {
+            try {
+                selector.select(TimeUnit.NANOSECONDS.toMillis(MATCHMAKING_INTERVAL_NANOS));
+                selector.selectedKeys().clear();
+                // Drain everything queued before waiting again
+                SocketAddress from;
+                while (true) {
+                    in.clear();
+                    if ((from = channel.receive(in)) == null) break;
+                    in.flip();
+                    try {
+                        handlePacket(from, in, out);
+                    } catch (IOException | RuntimeException e) {
+                        // A malformed packet or a failed reply must not take the server down
+                        System.err.println("Dropped packet: " + e);
+                    }
+                }
+                long now = System.nanoTime();
+                if (matchmaker.waiting() > 0) matchmaker.sweep(now, host);
+                if (now >= nextSweep) {
+                    fanOut.sweep(now);
+                    dropStaleJoins(now);
+                    nextSweep = now + SWEEP_INTERVAL_NANOS;
+                }
+            } catch (ClosedChannelException e) {
+                return;
+            } catch (IOException e) {
+                System.err.println("Receive failed: " + e);
+            }
+        }
+    }
+
+    private void handlePacket(SocketAddress from, ByteBuffer in, ByteBuffer out) throws IOException {
+        if (!in.hasRemaining()) return;
+        byte type = in.get();
+        switch (type) {
+            case Protocol.JOIN:
+                if (in.remaining() >= 4) {
+                    int token = in.getInt();
+                    onJoin(from, token, in.remaining() >= 8 ? in.getLong() : token);
+                }
+                break;
+            case Protocol.INPUT:
+                if (in.remaining() >= 11) {
+                    int matchId = in.getInt();
+                    int slot = in.get();
+                    byte move = in.get();
+                    int flags = in.get();
+                    int ackTick = in.getInt();
+                    onInput(from, matchId, slot, move, flags, ackTick);
+                }
+                break;
+            case Protocol.LEAVE:
+                if (in.remaining() >= 5) {
+                    ServerMatch m = find(in.getInt());
+                    if (m != null && isClient(m, in.get(), from)) m.closed = true;
+                }
+                break;
+            case Protocol.SPECTATE:
+                if (in.remaining() >= 4) {
+                    ServerMatch m = find(in.getInt());
+                    if (m != null) fanOut.onSpectate(from, m, System.nanoTime());
+                    else fanOut.forget(from);
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void onJoin(SocketAddress from, int token, long player) {
+        long now = System.nanoTime();
+        Join join = new Join(from, token);
+        Matchmaker.Ticket waiting = queued.get(join);
+        if (waiting != null) {
+            // A resent JOIN from a client that is already queued
+            ((Join) waiting.attachment).lastHeardNanos = now;
+            return;
+        }
+        join.lastHeardNanos = now;
+        float rating;
+        synchronized (result) {
+            InetAddress owner = playerHosts.get(player);
+            if (owner != null && !owner.equals(host(from))) return;  // someone else's id
+            rating = ratings.rating(player);
+        }
+        Matchmaker.Ticket ticket = new Matchmaker.Ticket(player, rating, join);
+        queued.put(join, ticket);
+        matchmaker.enqueue(ticket, now, host);
+    }
+
+    /** Host for the matchmaker's pairs; runs on the receive thread. */
+    private void startMatch(Matchmaker.Ticket a, Matchmaker.Ticket b) {
+        Join first = (Join) a.attachment;
+        Join second = (Join) b.attachment;
+        queued.remove(first);
+        queued.remove(second);
+        if (a.player == b.player) {
+            // One player joined twice, and both tickets sit in the same bucket. Keep the older one
+            // waiting and drop the other; its client's resent JOIN queues it again
+            Matchmaker.Ticket again = new Matchmaker.Ticket(a.player, a.rating, first);
+            queued.put(first, again);
+            matchmaker.enqueue(again, System.nanoTime(), host);
+            return;
+        }
+
+        int id = allocateId();
+        if (id < 0) return;  // Full; both clients will retry and queue again
+
+        ServerMatch match = new ServerMatch(id, Background.randomType(), first.from, a.player, second.from, b.player,
+            System.nanoTime());
+        table.set(matchIndex(id), match);
+
+        try {
+            Protocol.writeWelcome(welcome, first.token, id, 0, match.match.backgroundType);
+            channel.send(welcome, first.from);
+            Protocol.writeWelcome(welcome, second.token, id, 1, match.match.backgroundType);
+            channel.send(welcome, second.from);
+        } catch (IOException e) {
+            // A client that missed its WELCOME keeps resending JOIN and queues again; this match times out unplayed
+        }
+        scheduler.add(match);
+    }
+
+    /** Take clients that stopped resending JOIN out of the queue, before they are paired with someone. */
+    private void dropStaleJoins(long now) {
+        for (Iterator<Matchmaker.Ticket> it = queued.values().iterator(); it.hasNext(); ) {
+            Matchmaker.Ticket ticket = it.next();
+            if (now - ((Join) ticket.attachment).lastHeardNanos > JOIN_TIMEOUT_NANOS && matchmaker.cancel(ticket)) {
+                it.remove();
+            }
+        }
+    }
+
+    private void onInput(SocketAddress from, int matchId, int slot, byte move, int flags, int ackTick) {
+        ServerMatch m = find(matchId);
+        if (m == null || !isClient(m, slot, from)) return;
+        m.setInput(slot, Protocol.decodeMove(move), (flags & Protocol.INPUT_FLAG_JUMP) != 0, ackTick, System.nanoTime());
+    }
+
+    private static InetAddress host(SocketAddress address) {
+        return ((InetSocketAddress) address).getAddress();
+    }
+
+    /**
+     * Whether a packet for this slot came from the client playing it. Match ids are easy
+     * to guess and spectators send them, so anyone else's input or leave is dropped.
+     */
+    private static boolean isClient(ServerMatch m, int slot, SocketAddress from) {
+        return (slot == 0 || slot == 1) && m.clients[slot].equals(from);
+    }
+
+    /** @return the table slot of a match id, below the server's maxMatches. */
+    static int matchIndex(int matchId) {
+        return matchId & INDEX_MASK;
+    }
+
+    private ServerMatch find(int matchId) {
+        int index = matchIndex(matchId);
+        if (index >= table.length()) return null;
+        ServerMatch m = table.get(index);
+        return m != null && m.id == matchId ? m : null;
+    }
+
+    private int allocateId() {
+        synchronized (freeSlots) {
+            Integer index = freeSlots.poll();
+            if (index == null) return -1;
+            int generation = ++generations[index] & (0xFFFFFFFF >>> INDEX_BITS);
+            return (generation << INDEX_BITS) | index;
+        }
+    }
+
+    // ── Tick callbacks (tick threads) ────────────────────────────────────
+
+    @Override
+    public void onTick(ServerMatch m, ByteBuffer scratch, BitWriter bits) {
+        int[] current = m.history.slotFor(m.tick);
+        SnapshotCodec.quantize(m.match, current);
+        for (int slot = 0; slot < 2; slot++) {
+            // Delta against the newest state this client confirmed; a full snapshot if it has none
+            int ack = m.ack(slot);
+            int[] baseline = ack < m.tick ? m.history.get(ack) : null;
+            Protocol.writeState(scratch, bits, m.id, slot, m.tick, m.match.backgroundType, current, ack, baseline);
+            try {
+                channel.send(scratch, m.clients[slot]);
+            } catch (IOException e) {
+                // UDP is lossy anyway; the next tick sends a fresh state
+            }
+        }
+        if (m.spectators != null) fanOut.onTick(m, current, bits);
+    }
+
+    @Override
+    public void onRemoved(ServerMatch m) {
+        if (ledger != null && m.tick > 0) record(m);
+        int index = matchIndex(m.id);
+        table.compareAndSet(index, m, null);
+        synchronized (freeSlots) {
+            freeSlots.add(index);
+        }
+    }
+
+    /**
+     * A match ends when a player leaves or both go quiet; the result is by remaining
+     * health, as for replays. Tick threads finish matches concurrently, so appending and
+     * rating share one lock.
+     */
+    private void record(ServerMatch m) {
+        synchronized (result) {
+            result.player1 = m.players[0];
+            result.player2 = m.players[1];
+            result.winner = Replay.winnerOf(m.match);
+            result.health1 = m.match.player1.health;
+            result.health2 = m.match.player2.health;
+            result.ticks = m.tick;
+            result.background = m.match.backgroundType;
+            result.replay = 0;  // the server doesn't keep replays
+            result.endedAt = System.currentTimeMillis();
+            try {
+                ledger.append(result);
+                ratings.apply(result);
+                for (int i = 0; i < 2; i++) playerHosts.putIfAbsent(m.players[i], host(m.clients[i]));
+            } catch (IOException e) {
+                System.err.println("Could not record match " + m.id + ": " + e);
+            }
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package io.github.steven_liu.rage.server;
+
+import io.github.steven_liu.rage.Background;
+import io.github.steven_liu.rage.Replay;
+import io.github.steven_liu.rage.net.BitWriter;
+import io.github.steven_liu.rage.net.SnapshotCodec;
+
+import java.nio.ByteBuffer;
+
+/**
+ * UDP packet layout shared by the server and the load generator. Every packet starts
+ * with a type byte; all multi-byte values are big-endian.
+ */
+final class Protocol {
+
+    static final int DEFAULT_PORT = 7777;
+    static final int MAX_PACKET_SIZE = 512;
+
+    /**
+     * Client to server: token(int), optionally followed by playerId(long). The token lets
+     * many clients share one socket; the player id is what results are rated under, and
+     * defaults to the token. Nothing proves a client owns the id it sends, so ratings
+     * aren't trustworthy yet; the server only ignores a join claiming an id that has
+     * already played a rated match from another host. Resend while waiting for WELCOME:
+     * a join not heard again for {@link MatchServer#JOIN_TIMEOUT_NANOS} leaves the
+     * matchmaking queue.
+     */
+    static final byte JOIN = 1;
+    /** Server to client: token(int), matchId(int), slot(byte), backgroundType(byte). */
+    static final byte WELCOME = 2;
+    /**
+     * Client to server: matchId(int), slot(byte), move(byte, -127..127), flags(byte), ackTick(int).
+     * Ignored unless it comes from the address that was welcomed into that slot; so is LEAVE.
+     */
+    static final byte INPUT = 3;
+    /** Server to client: matchId(int), slot(byte), then a {@link SnapshotCodec} snapshot. */
+    static final byte STATE = 4;
+    /** Client to server: matchId(int), slot(byte). Only the slot's own client can end the match. */
+    static final byte LEAVE = 5;
+    /**
+     * Spectator to server: matchId(int). Subscribes to the match's frames; resend at
+     * least every {@link SpectatorFanOut#TIMEOUT_NANOS} to stay subscribed.
+     */
+    static final byte SPECTATE = 6;
+    /** Server to spectator: matchId(int), then a full {@link SnapshotCodec} snapshot. */
+    static final byte FRAME = 7;
+
+    static final int INPUT_FLAG_JUMP = 1;
+
+    private Protocol() {}
+
+    /** INPUT's move byte is encoded as a replay stores it, so both turn a move into the same value. */
+    static float decodeMove(byte move) {
+        return Replay.decodeMove(move);
+    }
+
+    static byte encodeMove(float move) {
+        return Replay.encodeMove(move);
+    }
+
+    static void writeWelcome(ByteBuffer out, int token, int matchId, int slot, Background.Type type) {
+        out.clear();
+        out.put(WELCOME).putInt(token).putInt(matchId).put((byte) slot).put((byte) type.ordinal());
+        out.flip();
+    }
+
+    /**
+     * @param current quantized state at {@code tick}
+     * @param baseline quantized state at {@code baseTick} that the client acknowledged, or null
+     */
+    static void writeState(ByteBuffer out, BitWriter bits, int matchId, int slot, int tick, Background.Type type,
+                           int[] current, int baseTick, int[] baseline) {
+        out.clear();
+        out.put(STATE).putInt(matchId).put((byte) slot);
+        SnapshotCodec.write(bits.begin(out), tick, type, current, baseTick, baseline);
+        bits.flush();
+        out.flip();
+    }
+
+    /** A spectator frame: the whole state, so it never depends on an earlier frame having arrived. */
+    static void writeFrame(ByteBuffer out, BitWriter bits, int matchId, int tick, Background.Type type, int[] current) {
+        out.clear();
+        out.put(FRAME).putInt(matchId);
+        SnapshotCodec.write(bits.begin(out), tick, type, current, tick, null);
+        bits.flush();
+        out.flip();
+    }
+}
@@ -0,0 +1,126 @@
+package io.github.steven_liu.rage.server;
+
+import io.github.steven_liu.rage.Replay;
+
+import java.util.Arrays;
+
+/**
+ * Elo ratings kept up to date one {@link MatchLedger.Record} at a time, and rebuilt
+ * from scratch by replaying the whole ledger in order.
+ * <p>
+ * Players are an open-addressing table of primitive arrays, so a rebuild over
+ * millions of records does no boxing. Not thread-safe; the server updates it under
+ * the ledger's lock.
+ */
+public final class Ratings {
+
+    public static final float INITIAL = 1500f;
+    // Bigger steps while a player's rating is still settling
+    private static final float K_NEW = 40f;
+    private static final float K = 20f;
+    private static final int SETTLED_GAMES = 30;
+
+    private static final float MAX_LOAD = 0.6f;
+
+    private long[] ids = new long[1024];
+    private boolean[] used = new boolean[1024];
+    private float[] ratings = new float[1024];
+    private int[] games = new int[1024];
+    private int players;
+
+    /**
+     * Apply one finished match. Both players start at {@link #INITIAL} the first time they
+     * are seen. A match against oneself is ignored: it would only let a player farm rating.
+     */
+    public void apply(MatchLedger.Record r) {
+        if (r.player1 == r.player2) return;
+        // Grow first, so the second lookup can't move the first player's slot
+        if (players + 2 > ids.length * MAX_LOAD) grow();
+        int a = slot(r.player1);
+        int b = slot(r.player2);
+        float ra = ratings[a], rb = ratings[b];
+        float expectedA = (float) (1 / (1 + Math.pow(10, (rb - ra) / 400.0)));
+        float scoreA = r.winner == 1 ? 1f : r.winner == Replay.DRAW ? 0.5f : 0f;
+        ratings[a] = ra + k(a) * (scoreA - expectedA);
+        ratings[b] = rb + k(b) * (expectedA - scoreA);
+        games[a]++;
+        games[b]++;
+    }
+
+    /** Forget everything and replay every record in the ledger. */
+    public void rebuild(MatchLedger ledger) {
+        Arrays.fill(used, false);
+        players = 0;
+        ledger.forEach((index, record) -> apply(record));
+    }
+
+    /** A player's rating, or {@link #INITIAL} if they have no recorded matches. */
+    public float rating(long player) {
+        int i = find(player);
+        return i < 0 ? INITIAL : ratings[i];
+    }
+
+    public int games(long player) {
+        int i = find(player);
+        return i < 0 ? 0 : games[i];
+    }
+
+    /** Players with at least one recorded match. */
+    public int playerCount() {
+        return players;
+    }
+
+    private float k(int slot) {
+        return games[slot] < SETTLED_GAMES ? K_NEW : K;
+    }
+
+    private int find(long id) {
+        int mask = ids.length - 1;
+        for (int i = hash(id) & mask; used[i]; i = (i + 1) & mask) {
+            if (ids[i] == id) return i;
+        }
+        return -1;
+    }
+
+    private int slot(long id) {
+        int mask = ids.length - 1;
+        int i = hash(id) & mask;
+        for (; used[i]; i = (i + 1) & mask) {
+            if (ids[i] == id) return i;
+        }
+        used[i] = true;
+        ids[i] = id;
+        ratings[i] = INITIAL;
+        games[i] = 0;
+        players++;
+        return i;
+    }
+
+    private void grow() {
+        long[] oldIds = ids;
+        boolean[] oldUsed = used;
+        float[] oldRatings = ratings;
+        int[] oldGames = games;
+        int capacity = oldIds.length * 2;
+        ids = new long[capacity];
+        used = new boolean[capacity];
+        ratings = new float[capacity];
+        games = new int[capacity];
+        int mask = capacity - 1;
+        for (int j = 0; j < oldIds.length; j++) {
+            if (!oldUsed[j]) continue;
+            int i = hash(oldIds[j]) & mask;
+            while (used[i]) i = (i + 1) & mask;
+            used[i] = true;
+            ids[i] = oldIds[j];
+            ratings[i] = oldRatings[j];
+            games[i] = oldGames[j];
+        }
+    }
+
+    // Player ids are often sequential; mix the bits so they spread over the table
+    private static int hash(long id) {
+        long h = id * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
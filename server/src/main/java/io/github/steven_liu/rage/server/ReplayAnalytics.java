@@ -0,0 +1,243 @@
+package io.github.steven_liu.rage.server;
+
+import io.github.steven_liu.rage.Background;
+import io.github.steven_liu.rage.Match;
+import io.github.steven_liu.rage.Player;
+import io.github.steven_liu.rage.Replay;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Aggregates a corpus of replay files ({@code *.replay}, one {@link Replay#toBytes}
+ * blob each) without loading it: worker threads take files off a shared counter, map
+ * each one, re-simulate it and add it into their own fixed-size {@link Aggregate}. The
+ * workers' aggregates are merged once at the end, so memory stays at one replay and
+ * one aggregate per thread however big the corpus is.
+ * <p>
+ * Writes {@code summary.properties} (matches, time grounded, jumps per minute, results
+ * per {@link Background.Type}) and {@code heatmap.pgm}, a greyscale image of where
+ * fighters spent their time in the 800x480 arena, to the output directory.
+ * <p>
+ * Options: {@code --dir DIR} of replays (default {@code replays}), {@code --out DIR}
+ * (default {@code analytics}), {@code --threads N[,N...]} (default: all cores; a list
+ * runs once per count to show scaling), {@code --generate N} to first record N
+ * synthetic matches of {@code --length} seconds (default 60) into the replay directory.
+ */
+public class ReplayAnalytics {
+
+    // Heatmap cells, in world units
+    private static final int CELL = 10;
+    private static final int HEAT_W = (int) (Match.WORLD_WIDTH / CELL);
+    private static final int HEAT_H = (int) (Match.WORLD_HEIGHT / CELL);
+
+    private static final int TYPES = Background.Type.values().length;
+
+    /** Everything the summary is built from. One per worker, merged at the end. */
+    static final class Aggregate {
+        final long[] heat = new long[HEAT_W * HEAT_H];
+        // Per background type: matches, wins for player 1, for player 2, draws
+        final long[] matches = new long[TYPES];
+        final long[][] results = new long[TYPES][3];
+        long ticks;
+        long playerTicks, groundedTicks;
+        long jumps;
+        long malformed;
+
+        void add(Aggregate other) {
+            for (int i = 0; i < heat.length; i++) heat[i] += other.heat[i];
+            for (int t = 0; t < TYPES; t++) {
+                matches[t] += other.matches[t];
+                for (int r = 0; r < 3; r++) results[t][r] += other.results[t][r];
+            }
+            ticks += other.ticks;
+            playerTicks += other.playerTicks;
+            groundedTicks += other.groundedTicks;
+            jumps += other.jumps;
+            malformed += other.malformed;
+        }
+
+        long totalMatches() {
+            long n = 0;
+            for (long m : matches) n += m;
+            return n;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        File dir = new File(ServerLauncher.stringArg(args, "--dir", "replays"));
+        File out = new File(ServerLauncher.stringArg(args, "--out", "analytics"));
+        String threadList = ServerLauncher.stringArg(args, "--threads",
+            Integer.toString(Runtime.getRuntime().availableProcessors()));
+        int generate = ServerLauncher.intArg(args, "--generate", 0);
+        int length = ServerLauncher.intArg(args, "--length", 60);
+
+        if (generate > 0) generate(dir, generate, length * TickScheduler.TICK_RATE);
+
+        File[] files = dir.listFiles((d, name) -> name.endsWith(".replay"));
+        if (files == null || files.length == 0) {
+            System.err.println("No .replay files in " + dir.getPath() + "; try --generate 2000");
+            System.exit(1);
+        }
+        Arrays.sort(files);
+        System.out.printf("%d replays in %s%n", files.length, dir.getPath());
+
+        // Warm up the JIT first, or the first thread count looks slow
+        run(Arrays.copyOf(files, Math.min(files.length, 200)), 1);
+
+        Aggregate total = null;
+        double baseline = 0;
+        for (String count : threadList.split(",")) {
+            int threads = Integer.parseInt(count.trim());
+            long start = System.nanoTime();
+            total = run(files, threads);
+            double seconds = (System.nanoTime() - start) / 1e9;
+            double perSecond = total.totalMatches() / seconds;
+            if (baseline == 0) baseline = perSecond / threads;
+            System.out.printf("%3d threads  %8.0f matches/s  %6.1f M ticks/s  %5.2fx per-thread baseline%n",
+                threads, perSecond, total.ticks / seconds / 1e6, perSecond / baseline);
+        }
+
+        if (!out.isDirectory() && !out.mkdirs()) throw new IOException("Can't create " + out);
+        writeSummary(new File(out, "summary.properties"), total);
+        writeHeatmap(new File(out, "heatmap.pgm"), total);
+        System.out.println("Wrote " + new File(out, "summary.properties").getPath() + " and heatmap.pgm");
+    }
+
+    /** Analyse every file on {@code threads} workers and return the merged aggregate. */
+    static Aggregate run(File[] files, int threads) throws InterruptedException {
+        AtomicInteger next = new AtomicInteger();
+        Aggregate[] parts = new Aggregate[threads];
+        Thread[] workers = new Thread[threads];
+        for (int w = 0; w < threads; w++) {
+            int worker = w;
+            workers[w] = new Thread(() -> {
+                // Allocated here, in the worker's own memory, so workers' counters never share a cache line
+                Aggregate part = new Aggregate();
+                Replay replay = new Replay();
+                int i;
+                while ((i = next.getAndIncrement()) < files.length) analyse(files[i], replay, part);
+                parts[worker] = part;
+            }, "replay-analytics-" + w);
+            workers[w].start();
+        }
+        Aggregate total = new Aggregate();
+        for (int w = 0; w < threads; w++) {
+            workers[w].join();
+            total.add(parts[w]);
+        }
+        return total;
+    }
+
+    private static void analyse(File file, Replay replay, Aggregate into) {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            MappedByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (Replay.read(data, replay) == null) {
+                into.malformed++;
+                return;
+            }
+        } catch (IOException e) {
+            into.malformed++;
+            return;
+        }
+
+        Match match = new Match(Replay.backgroundFor(replay.seed));
+        long[] heat = into.heat;
+        int jumps = 0, grounded = 0;
+        for (int t = 0; t < replay.ticks; t++) {
+            replay.applyInputs(t, match);
+            Player p1 = match.player1, p2 = match.player2;
+            boolean wasGrounded1 = p1.grounded, wasGrounded2 = p2.grounded;
+            match.step(Replay.TICK_DELTA);
+            // The ground is flat, so leaving it always means a jump
+            if (wasGrounded1 && !p1.grounded) jumps++;
+            if (wasGrounded2 && !p2.grounded) jumps++;
+            if (p1.grounded) grounded++;
+            if (p2.grounded) grounded++;
+            heat[cell(p1)]++;
+            heat[cell(p2)]++;
+        }
+        into.jumps += jumps;
+        into.groundedTicks += grounded;
+        into.playerTicks += 2L * replay.ticks;
+        int type = match.backgroundType.ordinal();
+        into.matches[type]++;
+        int winner = Replay.winnerOf(match);
+        into.results[type][winner == Replay.DRAW ? 2 : winner - 1]++;
+        into.ticks += replay.ticks;
+    }
+
+    private static int cell(Player p) {
+        int cx = Math.min(HEAT_W - 1, Math.max(0, (int) (p.x / CELL)));
+        int cy = Math.min(HEAT_H - 1, Math.max(0, (int) (p.y / CELL)));
+        return cy * HEAT_W + cx;
+    }
+
+    private static void writeSummary(File file, Aggregate a) throws IOException {
+        StringBuilder s = new StringBuilder();
+        s.append("# ReplayAnalytics summary\n");
+        s.append("matches=").append(a.totalMatches()).append('\n');
+        s.append("malformed=").append(a.malformed).append('\n');
+        s.append("ticks=").append(a.ticks).append('\n');
+        s.append("groundedPercent=").append(format(100.0 * a.groundedTicks / Math.max(1, a.playerTicks))).append('\n');
+        double playerMinutes = a.playerTicks / (double) TickScheduler.TICK_RATE / 60.0;
+        s.append("jumpsPerPlayerMinute=").append(format(a.jumps / Math.max(1e-9, playerMinutes))).append('\n');
+        for (Background.Type type : Background.Type.values()) {
+            int t = type.ordinal();
+            String key = type.name().toLowerCase(Locale.ROOT);
+            long n = Math.max(1, a.matches[t]);
+            s.append(key).append(".matches=").append(a.matches[t]).append('\n');
+            s.append(key).append(".player1WinPercent=").append(format(100.0 * a.results[t][0] / n)).append('\n');
+            s.append(key).append(".player2WinPercent=").append(format(100.0 * a.results[t][1] / n)).append('\n');
+            s.append(key).append(".drawPercent=").append(format(100.0 * a.results[t][2] / n)).append('\n');
+        }
+        try (OutputStream os = new FileOutputStream(file)) {
+            os.write(s.toString().getBytes(StandardCharsets.ISO_8859_1));
+        }
+    }
+
+    /** Binary PGM, top row first; log-scaled so brief visits still show against the ground line. */
+    private static void writeHeatmap(File file, Aggregate a) throws IOException {
+        long max = 1;
+        for (long h : a.heat) max = Math.max(max, h);
+        double scale = 255 / Math.log1p(max);
+        byte[] header = ("P5\n" + HEAT_W + " " + HEAT_H + "\n255\n").getBytes(StandardCharsets.ISO_8859_1);
+        byte[] pixels = new byte[HEAT_W * HEAT_H];
+        for (int y = 0; y < HEAT_H; y++) {
+            for (int x = 0; x < HEAT_W; x++) {
+                long h = a.heat[y * HEAT_W + x];
+                pixels[(HEAT_H - 1 - y) * HEAT_W + x] = (byte) Math.round(Math.log1p(h) * scale);
+            }
+        }
+        try (OutputStream os = new FileOutputStream(file)) {
+            os.write(header);
+            os.write(pixels);
+        }
+    }
+
+    private static void generate(File dir, int count, int ticks) throws IOException {
+        if (!dir.isDirectory() && !dir.mkdirs()) throw new IOException("Can't create " + dir);
+        Random random = new Random(5);
+        for (int i = 0; i < count; i++) {
+            Replay replay = ReplayBenchmark.record(random, random.nextLong(), ticks);
+            try (OutputStream os = new FileOutputStream(new File(dir, String.format(Locale.ROOT, "%06d.replay", i)))) {
+                os.write(replay.toBytes());
+            }
+        }
+        System.out.printf("Recorded %d matches into %s%n", count, dir.getPath());
+    }
+
+    private static String format(double value) {
+        return String.format(Locale.ROOT, "%.2f", value);
+    }
+}
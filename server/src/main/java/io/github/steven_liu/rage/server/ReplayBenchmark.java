@@ -0,0 +1,99 @@
+package io.github.steven_liu.rage.server;
+
+import io.github.steven_liu.rage.Match;
+import io.github.steven_liu.rage.Replay;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Feeds a {@link ReplayVerifier} a backlog of recorded matches, some with doctored
+ * results, and reports verification throughput. Every verdict is checked against
+ * whether that replay was doctored.
+ * <p>
+ * Options: {@code --replays N} submissions (default 20000), {@code --distinct N}
+ * different recordings they cycle through (default 256), {@code --length N} match
+ * length in seconds (default 60), {@code --threads N} workers (default: all cores),
+ * {@code --queue N} queue capacity (default 1024), {@code --cheat-percent N} share of
+ * doctored recordings (default 10).
+ */
+public class ReplayBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int replays = ServerLauncher.intArg(args, "--replays", 20_000);
+        int distinct = ServerLauncher.intArg(args, "--distinct", 256);
+        int length = ServerLauncher.intArg(args, "--length", 60);
+        int threads = ServerLauncher.intArg(args, "--threads", Runtime.getRuntime().availableProcessors());
+        int queue = ServerLauncher.intArg(args, "--queue", 1024);
+        int cheatPercent = ServerLauncher.intArg(args, "--cheat-percent", 10);
+
+        Random random = new Random(11);
+        byte[][] recordings = new byte[distinct][];
+        boolean[] doctored = new boolean[distinct];
+        for (int i = 0; i < distinct; i++) {
+            Replay replay = record(random, random.nextLong(), length * TickScheduler.TICK_RATE);
+            if (random.nextInt(100) < cheatPercent) {
+                doctored[i] = true;
+                // Either claim a bigger health lead or just claim the win
+                if (random.nextBoolean()) replay.health2 -= 25;
+                else replay.winner = replay.winner == 1 ? 2 : 1;
+            }
+            recordings[i] = replay.toBytes();
+        }
+
+        AtomicLong wrong = new AtomicLong();
+        AtomicLong rejected = new AtomicLong();
+        ReplayVerifier verifier = new ReplayVerifier(threads, queue, (id, verdict) -> {
+            boolean cheat = doctored[(Integer) id];
+            if (verdict != ReplayVerifier.Verdict.VALID) rejected.incrementAndGet();
+            if (cheat == (verdict == ReplayVerifier.Verdict.VALID)) wrong.incrementAndGet();
+        });
+
+        System.out.printf("%d replays of %d s (%d distinct, %d%% doctored) on %d threads, queue %d%n",
+            replays, length, distinct, cheatPercent, threads, queue);
+        long heapBefore = usedHeap();
+        long start = System.nanoTime();
+        for (int i = 0; i < replays; i++) verifier.submit(i % distinct, recordings[i % distinct]);
+        verifier.shutdown(10, TimeUnit.MINUTES);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        long ticks = verifier.ticksSimulated.sum();
+
+        System.out.println();
+        System.out.printf("verified                %d in %.2f s%n", verifier.verified.sum(), seconds);
+        System.out.printf("throughput              %.0f matches/s (%.0f per thread)%n",
+            verifier.verified.sum() / seconds, verifier.verified.sum() / seconds / threads);
+        System.out.printf("simulated ticks         %.1f M/s, %.0fx real time per thread%n",
+            ticks / seconds / 1e6, ticks / seconds / threads / TickScheduler.TICK_RATE);
+        System.out.printf("rejected                %d%n", rejected.get());
+        System.out.printf("wrong verdicts          %d%n", wrong.get());
+        System.out.printf("heap after (approx.)    %d KB over baseline%n", (usedHeap() - heapBefore) / 1024);
+    }
+
+    /** Play a match with wandering sticks and the odd jump, and claim its honest result. */
+    static Replay record(Random random, long seed, int ticks) {
+        Replay replay = new Replay();
+        replay.seed = seed;
+        replay.ticks = ticks;
+        replay.inputs = new byte[ticks * Replay.BYTES_PER_TICK];
+        Match match = new Match(Replay.backgroundFor(seed));
+        float move1 = 0, move2 = 0;
+        for (int t = 0; t < ticks; t++) {
+            move1 = Math.max(-1f, Math.min(1f, move1 + (random.nextFloat() - 0.5f) * 0.2f));
+            move2 = Math.max(-1f, Math.min(1f, move2 + (random.nextFloat() - 0.5f) * 0.2f));
+            // Quantize first so the recording plays back exactly what was simulated
+            match.input1.set(Replay.decodeMove(Replay.encodeMove(move1)), random.nextInt(40) == 0);
+            match.input2.set(Replay.decodeMove(Replay.encodeMove(move2)), random.nextInt(40) == 0);
+            replay.record(t, match.input1, match.input2);
+            match.step(Replay.TICK_DELTA);
+        }
+        replay.claim(match);
+        return replay;
+    }
+
+    private static long usedHeap() {
+        Runtime rt = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) System.gc();
+        return rt.totalMemory() - rt.freeMemory();
+    }
+}
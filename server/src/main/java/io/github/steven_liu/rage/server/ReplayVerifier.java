@@ -0,0 +1,137 @@
+package io.github.steven_liu.rage.server;
+
+import io.github.steven_liu.rage.Match;
+import io.github.steven_liu.rage.Replay;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Re-simulates submitted {@link Replay}s and checks the result they claim, so
+ * leaderboard entries don't have to trust the client. Replays run flat out, not at
+ * the tick rate, on a fixed set of worker threads.
+ * <p>
+ * Memory is bounded: submissions wait in a queue of fixed capacity ({@link #submit}
+ * blocks when it's full), and each worker decodes into the same {@link Replay} every
+ * time, so a worker never holds more than one {@link Replay#MAX_TICKS} input buffer.
+ */
+public final class ReplayVerifier {
+
+    public enum Verdict {
+        /** The replay reproduces the claimed health and winner. */
+        VALID,
+        /** Replaying gives different final health than claimed. */
+        HEALTH_MISMATCH,
+        /** Health matches but the claimed winner doesn't. */
+        WINNER_MISMATCH,
+        /** Not a replay this version can read, or too long. */
+        MALFORMED
+    }
+
+    /** Called on a worker thread once a submission is verified. */
+    public interface Listener {
+        void onVerified(Object submission, Verdict verdict);
+    }
+
+    // Health is stored as a float on both sides; anything past rounding noise is a different result
+    private static final float HEALTH_TOLERANCE = 0.01f;
+
+    private static final class Submission {
+        final Object id;
+        final byte[] data;
+
+        Submission(Object id, byte[] data) {
+            this.id = id;
+            this.data = data;
+        }
+    }
+
+    // Tells a worker to exit
+    private static final Submission STOP = new Submission(null, null);
+
+    private final BlockingQueue<Submission> queue;
+    private final Thread[] workers;
+    private final Listener listener;
+
+    final LongAdder verified = new LongAdder();
+    final LongAdder ticksSimulated = new LongAdder();
+
+    /**
+     * @param threads worker threads; one per core to use
+     * @param queueCapacity submissions that may wait before {@link #submit} blocks
+     */
+    public ReplayVerifier(int threads, int queueCapacity, Listener listener) {
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.listener = listener;
+        workers = new Thread[threads];
+        AtomicInteger threadId = new AtomicInteger();
+        for (int i = 0; i < threads; i++) {
+            workers[i] = new Thread(this::work, "replay-verify-" + threadId.getAndIncrement());
+            workers[i].setDaemon(true);
+            workers[i].start();
+        }
+    }
+
+    /**
+     * Queue a serialized replay for verification, waiting for room if the queue is full.
+     * @param id handed back to the listener with the verdict
+     */
+    public void submit(Object id, byte[] replay) throws InterruptedException {
+        queue.put(new Submission(id, replay));
+    }
+
+    /** Finish everything already submitted, then stop the workers. */
+    public void shutdown(long timeout, TimeUnit unit) throws InterruptedException {
+        for (int i = 0; i < workers.length; i++) queue.put(STOP);
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        for (Thread worker : workers) {
+            worker.join(Math.max(1, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime())));
+        }
+    }
+
+    private void work() {
+        Replay replay = new Replay();
+        try {
+            while (true) {
+                Submission s = queue.take();
+                if (s == STOP) return;
+                Verdict verdict;
+                try {
+                    verdict = verify(s.data, replay);
+                } catch (RuntimeException e) {
+                    verdict = Verdict.MALFORMED;
+                }
+                verified.increment();
+                listener.onVerified(s.id, verdict);
+            }
+        } catch (InterruptedException e) {
+            // Shutting down
+        }
+    }
+
+    private Verdict verify(byte[] data, Replay replay) {
+        if (Replay.fromBytes(data, replay) == null) return Verdict.MALFORMED;
+        Match match = play(replay);
+        ticksSimulated.add(replay.ticks);
+
+        // Written as "not within" so a NaN claim, which compares false to everything, is a mismatch too
+        if (!(Math.abs(match.player1.health - replay.health1) <= HEALTH_TOLERANCE)
+            || !(Math.abs(match.player2.health - replay.health2) <= HEALTH_TOLERANCE)) {
+            return Verdict.HEALTH_MISMATCH;
+        }
+        return Replay.winnerOf(match) == replay.winner ? Verdict.VALID : Verdict.WINNER_MISMATCH;
+    }
+
+    /** Run a replay's inputs from its seed and return the finished match. */
+    static Match play(Replay replay) {
+        Match match = new Match(Replay.backgroundFor(replay.seed));
+        for (int t = 0; t < replay.ticks; t++) {
+            replay.applyInputs(t, match);
+            match.step(Replay.TICK_DELTA);
+        }
+        return match;
+    }
+}
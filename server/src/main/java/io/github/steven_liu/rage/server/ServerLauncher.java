@@ -0,0 +1,72 @@
+package io.github.steven_liu.rage.server;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Launches the headless match server.
+ * <p>
+ * Options: {@code --port N} (default 7777), {@code --threads N} (default: all cores),
+ * {@code --max-matches N} (default 65536), {@code --fan-out-threads N} spectator senders
+ * (default: all cores), {@code --spectator-delay N} in milliseconds (default 2000),
+ * {@code --max-spectators N} (default 65536), {@code --ledger FILE} to record finished
+ * matches and rate players (off by default).
+ */
+public class ServerLauncher {
+
+    private static final long REPORT_INTERVAL_SECONDS = 10;
+
+    public static void main(String[] args) throws Exception {
+        int port = intArg(args, "--port", Protocol.DEFAULT_PORT);
+        int threads = intArg(args, "--threads", Runtime.getRuntime().availableProcessors());
+        int maxMatches = intArg(args, "--max-matches", 65536);
+        int fanOutThreads = intArg(args, "--fan-out-threads", threads);
+        int spectatorDelay = intArg(args, "--spectator-delay", 2000);
+        int maxSpectators = intArg(args, "--max-spectators", 65536);
+
+        String ledgerPath = stringArg(args, "--ledger", null);
+
+        MatchServer server = new MatchServer(port, threads, maxMatches, fanOutThreads, spectatorDelay, maxSpectators);
+        MatchLedger ledger = null;
+        if (ledgerPath != null) {
+            ledger = new MatchLedger(new File(ledgerPath));
+            server.setLedger(ledger);
+            System.out.println("Ledger " + ledgerPath + ": " + ledger.size() + " matches, "
+                + server.ratedPlayers() + " rated players");
+        }
+        server.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(server::stop));
+        System.out.println("Match server listening on UDP " + server.port() + " with " + threads + " tick threads");
+
+        TickStats previous = server.stats();
+        while (true) {
+            TimeUnit.SECONDS.sleep(REPORT_INTERVAL_SECONDS);
+            if (ledger != null) ledger.sync();
+            TickStats current = server.stats();
+            TickStats interval = current.since(previous);
+            previous = current;
+            System.out.printf("matches=%d  spectators=%d  tick jitter p50=%.2fms p99=%.2fms  cpu/match-tick=%.1fus%n",
+                server.activeMatches(),
+                server.spectators().spectatorCount(),
+                interval.jitterPercentile(0.50) / 1e6,
+                interval.jitterPercentile(0.99) / 1e6,
+                interval.cpuNanosPerMatchTick() / 1e3);
+        }
+    }
+
+    /** @return the string following {@code name} in args, or the default. */
+    static String stringArg(String[] args, String name, String defaultValue) {
+        for (int i = 0; i < args.length - 1; i++) {
+            if (args[i].equals(name)) return args[i + 1];
+        }
+        return defaultValue;
+    }
+
+    /** @return the integer following {@code name} in args, or the default. */
+    static int intArg(String[] args, String name, int defaultValue) {
+        for (int i = 0; i < args.length - 1; i++) {
+            if (args[i].equals(name)) return Integer.parseInt(args[i + 1]);
+        }
+        return defaultValue;
+    }
+}
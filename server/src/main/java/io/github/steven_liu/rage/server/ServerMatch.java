@@ -0,0 +1,83 @@
+package io.github.steven_liu.rage.server;
+
+import io.github.steven_liu.rage.Background;
+import io.github.steven_liu.rage.Match;
+import io.github.steven_liu.rage.net.SnapshotHistory;
+
+import java.net.SocketAddress;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+/**
+ * One match hosted by the server: the shared {@link Match} simulation plus the two
+ * client addresses and their latest inputs. Kept small (a few hundred bytes) so a
+ * single process can hold tens of thousands of them.
+ */
+final class ServerMatch {
+
+    private static final AtomicIntegerFieldUpdater<ServerMatch> PENDING_JUMPS =
+        AtomicIntegerFieldUpdater.newUpdater(ServerMatch.class, "pendingJumps");
+
+    final int id;
+    final Match match;
+    final SocketAddress[] clients = new SocketAddress[2];
+    final long[] players = new long[2];
+    int tick;
+
+    // Quantized states recently sent, so each client's update can be a delta against what it acknowledged
+    static final int HISTORY = 32;
+    final SnapshotHistory history = new SnapshotHistory(HISTORY);
+
+    // Written by the receive thread, read by the tick thread
+    private volatile float move1, move2;
+    private volatile int pendingJumps;  // bit per slot, latched until the next step
+    private volatile int ack1 = -1, ack2 = -1;
+    volatile long lastHeardNanos;
+    volatile boolean closed;
+
+    // Created by the receive thread when the first spectator subscribes
+    volatile SpectatorFeed spectators;
+
+    ServerMatch(int id, Background.Type type, SocketAddress client1, long player1, SocketAddress client2, long player2,
+                long now) {
+        this.id = id;
+        this.match = new Match(type);
+        clients[0] = client1;
+        clients[1] = client2;
+        players[0] = player1;
+        players[1] = player2;
+        lastHeardNanos = now;
+    }
+
+    /** Newest tick the client in this slot has confirmed receiving, or -1. */
+    int ack(int slot) {
+        return slot == 0 ? ack1 : ack2;
+    }
+
+    /** Only called from the receive thread. Out-of-order acks never move the baseline backwards. */
+    void setInput(int slot, float move, boolean jump, int ackTick, long now) {
+        if (slot == 0) {
+            move1 = move;
+            if (ackTick > ack1) ack1 = ackTick;
+        } else {
+            move2 = move;
+            if (ackTick > ack2) ack2 = ackTick;
+        }
+        if (jump) {
+            int bit = 1 << slot;
+            int jumps;
+            do {
+                jumps = pendingJumps;
+            } while ((jumps & bit) == 0 && !PENDING_JUMPS.compareAndSet(this, jumps, jumps | bit));
+        }
+        lastHeardNanos = now;
+    }
+
+    /** Advance one tick. Only called from the match's tick thread. */
+    void step(float delta) {
+        int jumps = PENDING_JUMPS.getAndSet(this, 0);
+        match.input1.set(move1, (jumps & 1) != 0);
+        match.input2.set(move2, (jumps & 2) != 0);
+        match.step(delta);
+        tick++;
+    }
+}
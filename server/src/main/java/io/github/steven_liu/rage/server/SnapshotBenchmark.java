@@ -0,0 +1,146 @@
+package io.github.steven_liu.rage.server;
+
+import io.github.steven_liu.rage.Background;
+import io.github.steven_liu.rage.Match;
+import io.github.steven_liu.rage.MatchState;
+import io.github.steven_liu.rage.net.BitReader;
+import io.github.steven_liu.rage.net.BitWriter;
+import io.github.steven_liu.rage.net.BufferPool;
+import io.github.steven_liu.rage.net.SnapshotCodec;
+import io.github.steven_liu.rage.net.SnapshotHistory;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Measures {@link SnapshotCodec} encode and decode throughput and reports how many
+ * bytes a tick costs, for an idle match and for one where both players keep moving.
+ * Every decoded snapshot is checked against what was encoded.
+ * <p>
+ * Options: {@code --ticks N} recorded ticks per scenario (default 100000),
+ * {@code --rounds N} timed passes over them (default 20), {@code --ack-lag N} how many
+ * ticks behind the acknowledged baseline is (default 3).
+ */
+public class SnapshotBenchmark {
+
+    public static void main(String[] args) {
+        int ticks = ServerLauncher.intArg(args, "--ticks", 100_000);
+        int rounds = ServerLauncher.intArg(args, "--rounds", 20);
+        int ackLag = ServerLauncher.intArg(args, "--ack-lag", 3);
+
+        System.out.printf("%d ticks, baseline %d ticks behind, %d rounds%n", ticks, ackLag, rounds);
+        System.out.printf("raw MatchState bytes   %d%n", new MatchState().toBytes().length);
+        run("idle", record(ticks, false), ackLag, rounds);
+        run("active", record(ticks, true), ackLag, rounds);
+    }
+
+    /** Simulate a match and keep every tick's quantized state. */
+    private static int[][] record(int ticks, boolean active) {
+        Random random = new Random(7);
+        Match match = new Match(Background.Type.HILLS);
+        int[][] states = new int[ticks][SnapshotCodec.FIELDS];
+        float move1 = 0, move2 = 0;
+        for (int t = 0; t < ticks; t++) {
+            if (active) {
+                if (random.nextInt(20) == 0) move1 = random.nextInt(3) - 1;
+                if (random.nextInt(20) == 0) move2 = random.nextInt(3) - 1;
+                match.input1.set(move1, random.nextInt(40) == 0);
+                match.input2.set(move2, random.nextInt(40) == 0);
+            }
+            match.step(TickScheduler.TICK_DELTA);
+            SnapshotCodec.quantize(match, states[t]);
+        }
+        return states;
+    }
+
+    private static void run(String name, int[][] states, int ackLag, int rounds) {
+        BufferPool pool = new BufferPool(Protocol.MAX_PACKET_SIZE, 4);
+        ByteBuffer packet = pool.acquire();
+        BitWriter writer = new BitWriter();
+        BitReader reader = new BitReader();
+        SnapshotHistory received = new SnapshotHistory(32);
+        int ticks = states.length;
+
+        // Size report and correctness check (not timed)
+        long fullBits = 0, deltaBits = 0;
+        int maxDeltaBytes = 0;
+        int[] bytesHistogram = new int[64];
+        for (int t = 0; t < ticks; t++) {
+            int base = t - ackLag;
+            int[] baseline = base >= 0 ? states[base] : null;
+
+            packet.clear();
+            SnapshotCodec.write(writer.begin(packet), t, Background.Type.HILLS, states[t], base, null);
+            writer.flush();
+            fullBits += writer.bitsWritten();
+
+            packet.clear();
+            SnapshotCodec.write(writer.begin(packet), t, Background.Type.HILLS, states[t], base, baseline);
+            writer.flush();
+            deltaBits += writer.bitsWritten();
+            int bytes = packet.position();
+            maxDeltaBytes = Math.max(maxDeltaBytes, bytes);
+            bytesHistogram[Math.min(63, bytes)]++;
+
+            packet.flip();
+            if (SnapshotCodec.read(reader.begin(packet), received) != t
+                || !Arrays.equals(received.get(t), states[t])) {
+                throw new IllegalStateException("Snapshot " + t + " did not round-trip");
+            }
+        }
+
+        // Timed encode
+        long start = System.nanoTime();
+        for (int r = 0; r < rounds; r++) {
+            for (int t = ackLag; t < ticks; t++) {
+                packet.clear();
+                SnapshotCodec.write(writer.begin(packet), t, Background.Type.HILLS, states[t], t - ackLag, states[t - ackLag]);
+                writer.flush();
+            }
+        }
+        double encodeNanos = (double) (System.nanoTime() - start) / ((long) rounds * (ticks - ackLag));
+
+        // Timed decode: encode everything once, then decode the packets in order
+        byte[][] encoded = new byte[ticks][];
+        for (int t = 0; t < ticks; t++) {
+            packet.clear();
+            SnapshotCodec.write(writer.begin(packet), t, Background.Type.HILLS, states[t], t - 1, t > 0 ? states[t - 1] : null);
+            writer.flush();
+            packet.flip();
+            encoded[t] = new byte[packet.remaining()];
+            packet.get(encoded[t]);
+        }
+        start = System.nanoTime();
+        for (int r = 0; r < rounds; r++) {
+            received.clear();
+            for (int t = 0; t < ticks; t++) {
+                packet.clear();
+                packet.put(encoded[t]).flip();
+                SnapshotCodec.read(reader.begin(packet), received);
+            }
+        }
+        double decodeNanos = (double) (System.nanoTime() - start) / ((long) rounds * ticks);
+        pool.release(packet);
+
+        System.out.println();
+        System.out.printf("[%s]%n", name);
+        System.out.printf("full snapshot          %.1f bytes/tick%n", fullBits / 8.0 / ticks);
+        System.out.printf("delta snapshot         %.1f bytes/tick avg, p50 %d, max %d%n",
+            deltaBits / 8.0 / ticks, percentile(bytesHistogram, ticks, 0.5), maxDeltaBytes);
+        System.out.printf("per client at %d Hz    %.2f KB/s%n",
+            TickScheduler.TICK_RATE, deltaBits / 8.0 / ticks * TickScheduler.TICK_RATE / 1024);
+        System.out.printf("encode                 %.0f ns (%.1f M snapshots/s)%n", encodeNanos, 1e3 / encodeNanos);
+        System.out.printf("decode                 %.0f ns (%.1f M snapshots/s)%n", decodeNanos, 1e3 / decodeNanos);
+    }
+
+    private static int percentile(int[] histogram, int total, double percentile) {
+        long target = (long) Math.ceil(total * percentile);
+        long seen = 0;
+        for (int i = 0; i < histogram.length; i++) {
+            seen += histogram[i];
+            if (seen >= target) return i;
+        }
+        return histogram.length - 1;
+    }
+}
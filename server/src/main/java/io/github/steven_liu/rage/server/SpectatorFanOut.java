@@ -0,0 +1,140 @@
+package io.github.steven_liu.rage.server;
+
+import io.github.steven_liu.rage.net.BitWriter;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Server-wide side of spectating: who is subscribed to what, the thread pool that
+ * sends frames, and the counters the harness reports. Frames go out at
+ * {@link #FRAME_RATE} rather than the tick rate; each one is a full snapshot, so a
+ * spectator that misses some simply shows the next.
+ */
+final class SpectatorFanOut {
+
+    static final int FRAME_RATE = 20;
+    static final int TICKS_PER_FRAME = TickScheduler.TICK_RATE / FRAME_RATE;
+
+    /** Spectators that haven't resent SPECTATE for this long are dropped. */
+    static final long TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(5);
+
+    private final DatagramChannel channel;
+    private final ExecutorService executor;
+    private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    private final ConcurrentHashMap<SocketAddress, SpectatorFeed.Spectator> spectators = new ConcurrentHashMap<>();
+    private final AtomicInteger count = new AtomicInteger();
+    private final int delayFrames;
+    private final int maxSpectators;
+
+    final LongAdder framesSent = new LongAdder();
+    final LongAdder framesSkipped = new LongAdder();
+    final LongAdder sendsDropped = new LongAdder();
+    final LongAdder cpuNanos = new LongAdder();
+
+    /**
+     * @param delayMillis how far behind the match spectators are kept
+     * @param maxSpectators subscriptions beyond this are ignored
+     */
+    SpectatorFanOut(DatagramChannel channel, int threads, int delayMillis, int maxSpectators) {
+        this.channel = channel;
+        this.delayFrames = (int) ((long) delayMillis * FRAME_RATE / 1000);
+        this.maxSpectators = maxSpectators;
+        AtomicInteger threadId = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "fan-out-" + threadId.getAndIncrement());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    void stop() {
+        executor.shutdownNow();
+    }
+
+    int spectatorCount() {
+        return count.get();
+    }
+
+    // ── Receive thread ───────────────────────────────────────────────────
+
+    /** Subscribe {@code from} to a match, or refresh its subscription. */
+    void onSpectate(SocketAddress from, ServerMatch match, long now) {
+        SpectatorFeed.Spectator existing = spectators.get(from);
+        if (existing != null && existing.matchId == match.id && !existing.dropped) {
+            existing.lastHeardNanos = now;
+            return;
+        }
+        if (existing != null) {
+            // Switched matches, or coming back after being dropped
+            existing.dropped = true;
+            remove(existing);
+        }
+        if (count.get() >= maxSpectators) return;
+
+        SpectatorFeed feed = match.spectators;
+        if (feed == null) feed = match.spectators = new SpectatorFeed(this, delayFrames);
+        SpectatorFeed.Spectator s = new SpectatorFeed.Spectator(from, match.id, now);
+        spectators.put(from, s);
+        count.incrementAndGet();
+        feed.add(s);
+    }
+
+    /** {@code from} asked for a match that no longer exists. */
+    void forget(SocketAddress from) {
+        SpectatorFeed.Spectator s = spectators.get(from);
+        if (s != null) {
+            s.dropped = true;
+            remove(s);
+        }
+    }
+
+    /** Forget spectators whose match ended; their feed no longer runs to notice. */
+    void sweep(long now) {
+        for (SpectatorFeed.Spectator s : spectators.values()) {
+            if (now - s.lastHeardNanos > TIMEOUT_NANOS * 2) {
+                s.dropped = true;
+                remove(s);
+            }
+        }
+    }
+
+    // ── Tick and fan-out threads ─────────────────────────────────────────
+
+    /** Called after every tick of a match that has spectators. */
+    void onTick(ServerMatch match, int[] current, BitWriter bits) {
+        if (match.tick % TICKS_PER_FRAME == 0) match.spectators.publish(match, current, bits);
+    }
+
+    void execute(Runnable group) {
+        try {
+            executor.execute(group);
+        } catch (RejectedExecutionException e) {
+            // Shutting down
+        }
+    }
+
+    /** @return false if the socket's send buffer is full, so the frame is skipped for this spectator. */
+    boolean send(ByteBuffer frame, SocketAddress to) throws IOException {
+        return channel.send(frame, to) > 0;
+    }
+
+    void remove(SpectatorFeed.Spectator s) {
+        if (spectators.remove(s.address, s)) count.decrementAndGet();
+    }
+
+    long threadCpuNanos() {
+        return threads.getCurrentThreadCpuTime();
+    }
+}
@@ -0,0 +1,180 @@
+package io.github.steven_liu.rage.server;
+
+import io.github.steven_liu.rage.net.BitWriter;
+
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The spectators of one match. The match's tick thread encodes each frame once into a
+ * ring of direct buffers; the ring is as long as the spectator delay, so the frame
+ * that goes out is the one encoded {@code delay} frames ago. Spectators are split into
+ * groups that the {@link SpectatorFanOut} pool sends to in parallel, each through its
+ * own read-only view of the ring, so a frame is never copied per spectator.
+ * <p>
+ * Nothing a spectator does can hold up the match: a group still sending when the
+ * next frame is due skips that frame, a send that would block is dropped, and a
+ * spectator whose address fails or who stops resubscribing is removed.
+ */
+final class SpectatorFeed {
+
+    /** Spectators per group; one fan-out task sends to a whole group. */
+    static final int GROUP_SIZE = 256;
+
+    // Spare ring slots past the delay, so groups have a few frames' time to finish a send
+    private static final int SLACK = 8;
+
+    /** One subscribed address. */
+    static final class Spectator {
+        final SocketAddress address;
+        final int matchId;
+        volatile long lastHeardNanos;
+        volatile boolean dropped;
+
+        Spectator(SocketAddress address, int matchId, long now) {
+            this.address = address;
+            this.matchId = matchId;
+            this.lastHeardNanos = now;
+        }
+    }
+
+    private final SpectatorFanOut fanOut;
+    private final int delayFrames;
+    private final ByteBuffer[] frames;
+    private final ConcurrentLinkedQueue<Spectator> joining = new ConcurrentLinkedQueue<>();
+    private final ArrayList<Group> groups = new ArrayList<>();  // tick thread only
+    private long published;
+
+    SpectatorFeed(SpectatorFanOut fanOut, int delayFrames) {
+        this.fanOut = fanOut;
+        this.delayFrames = delayFrames;
+        // One allocation for the whole ring; each slot is a slice of it
+        int slots = delayFrames + SLACK;
+        ByteBuffer ring = ByteBuffer.allocateDirect(slots * Protocol.MAX_PACKET_SIZE);
+        frames = new ByteBuffer[slots];
+        for (int i = 0; i < slots; i++) {
+            ring.limit((i + 1) * Protocol.MAX_PACKET_SIZE).position(i * Protocol.MAX_PACKET_SIZE);
+            frames[i] = ring.slice();
+        }
+    }
+
+    /** Safe to call from any thread; the spectator starts receiving with the next frame. */
+    void add(Spectator spectator) {
+        joining.add(spectator);
+    }
+
+    /**
+     * Encode this tick's state and hand the delayed frame to the fan-out pool. Only
+     * called from the match's tick thread.
+     */
+    void publish(ServerMatch m, int[] current, BitWriter bits) {
+        int slot = (int) (published % frames.length);
+        // A group that fell this far behind still owns the slot; leave it alone and lose this frame
+        if (!inUse(slot)) {
+            Protocol.writeFrame(frames[slot], bits, m.id, m.tick, m.match.backgroundType, current);
+        } else {
+            frames[slot].limit(0);
+            fanOut.framesSkipped.increment();
+        }
+        published++;
+
+        Spectator s;
+        while ((s = joining.poll()) != null) smallestGroup().joining.add(s);
+
+        long due = published - 1 - delayFrames;
+        if (due < 0) return;
+        int dueSlot = (int) (due % frames.length);
+        if (frames[dueSlot].limit() == 0) return;
+        for (int i = 0; i < groups.size(); i++) {
+            Group g = groups.get(i);
+            if (g.sending != -1) {
+                // Still busy with an older frame: it skips ahead to a newer one next time
+                fanOut.framesSkipped.increment();
+                continue;
+            }
+            g.sending = dueSlot;
+            fanOut.execute(g);
+        }
+    }
+
+    int spectatorCount() {
+        int count = 0;
+        for (int i = 0; i < groups.size(); i++) count += groups.get(i).size.get();
+        return count;
+    }
+
+    private boolean inUse(int slot) {
+        for (int i = 0; i < groups.size(); i++) {
+            if (groups.get(i).sending == slot) return true;
+        }
+        return false;
+    }
+
+    private Group smallestGroup() {
+        Group best = null;
+        for (int i = 0; i < groups.size(); i++) {
+            Group g = groups.get(i);
+            if (best == null || g.size.get() < best.size.get()) best = g;
+        }
+        if (best == null || best.size.get() >= GROUP_SIZE) {
+            best = new Group();
+            groups.add(best);
+        }
+        best.size.incrementAndGet();
+        return best;
+    }
+
+    /** Up to {@link #GROUP_SIZE} spectators, sent to by one fan-out task per frame. */
+    private final class Group implements Runnable {
+        private final ConcurrentLinkedQueue<Spectator> joining = new ConcurrentLinkedQueue<>();
+        private final ArrayList<Spectator> members = new ArrayList<>(GROUP_SIZE);  // fan-out task only
+        private final ByteBuffer[] views = new ByteBuffer[frames.length];
+
+        // Includes joining spectators; used to balance smallestGroup()
+        final AtomicInteger size = new AtomicInteger();
+        // Ring slot being sent, or -1 when idle. Set by the tick thread, cleared by the task
+        volatile int sending = -1;
+
+        Group() {
+            // Each group has its own position and limit over the shared frames
+            for (int i = 0; i < frames.length; i++) views[i] = frames[i].asReadOnlyBuffer();
+        }
+
+        @Override
+        public void run() {
+            long now = System.nanoTime();
+            long cpuStart = fanOut.threadCpuNanos();
+            Spectator added;
+            while ((added = joining.poll()) != null) members.add(added);
+
+            ByteBuffer frame = views[sending];
+            int length = frames[sending].limit();
+            int sent = 0;
+            for (int i = members.size() - 1; i >= 0; i--) {
+                Spectator s = members.get(i);
+                if (s.dropped || now - s.lastHeardNanos > SpectatorFanOut.TIMEOUT_NANOS) {
+                    members.set(i, members.get(members.size() - 1));
+                    members.remove(members.size() - 1);
+                    size.decrementAndGet();
+                    fanOut.remove(s);
+                    continue;
+                }
+                frame.limit(length).position(0);
+                try {
+                    if (fanOut.send(frame, s.address)) sent++;
+                    else fanOut.sendsDropped.increment();
+                } catch (IOException e) {
+                    // Unreachable or refused; it can subscribe again
+                    s.dropped = true;
+                }
+            }
+            fanOut.framesSent.add(sent);
+            fanOut.cpuNanos.add(fanOut.threadCpuNanos() - cpuStart);
+            sending = -1;
+        }
+    }
+}
@@ -0,0 +1,279 @@
+package io.github.steven_liu.rage.server;
+
+import io.github.steven_liu.rage.net.BitReader;
+import io.github.steven_liu.rage.net.SnapshotCodec;
+import io.github.steven_liu.rage.net.SnapshotHistory;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Starts a {@link MatchServer} in-process, plays a few matches on it and subscribes
+ * thousands of spectators over loopback UDP, each with its own socket. Reports how
+ * many frames reached the spectators, how late they arrived beyond the configured
+ * delay, and what the fan-out cost the server.
+ * <p>
+ * Options: {@code --spectators N} (default 10000), {@code --matches N} watched matches,
+ * spectators spread evenly over them (default 1), {@code --threads N} server tick
+ * threads and {@code --fan-out-threads N} (default: all cores), {@code --receivers N}
+ * spectator receive threads (default 2), {@code --delay N} spectator delay in
+ * milliseconds (default 2000), {@code --warmup N} and {@code --duration N} in seconds
+ * (default 5 and 20). Needs a file descriptor limit above the spectator count.
+ */
+public class SpectatorLoadTest {
+
+    // Histogram of lateness beyond the configured delay, in milliseconds
+    private static final int LATENESS_BUCKETS = 1000;
+    private static final long HEARTBEAT_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    /** One spectator socket. */
+    private static final class Viewer {
+        final DatagramChannel socket;
+        final int matchSlot;
+        long frames;
+
+        Viewer(DatagramChannel socket, int matchSlot) {
+            this.socket = socket;
+            this.matchSlot = matchSlot;
+        }
+    }
+
+    /** A thread receiving for a share of the spectators and resubscribing them every second. */
+    private final class Receiver implements Runnable {
+        final Selector selector = Selector.open();
+        final Viewer[] viewers;
+        final long[] lateness = new long[LATENESS_BUCKETS + 1];
+        volatile boolean measuring;
+
+        Receiver(Viewer[] viewers) throws IOException {
+            this.viewers = viewers;
+            for (Viewer v : viewers) v.socket.register(selector, SelectionKey.OP_READ, v);
+        }
+
+        @Override
+        public void run() {
+            ByteBuffer in = ByteBuffer.allocateDirect(Protocol.MAX_PACKET_SIZE);
+            ByteBuffer out = ByteBuffer.allocateDirect(Protocol.MAX_PACKET_SIZE);
+            BitReader bits = new BitReader();
+            SnapshotHistory history = new SnapshotHistory(1);
+            long nextHeartbeat = 0;
+            while (selector.isOpen()) {
+                try {
+                    long now = System.nanoTime();
+                    if (now >= nextHeartbeat) {
+                        for (Viewer v : viewers) {
+                            out.clear();
+                            out.put(Protocol.SPECTATE).putInt(matchIds[v.matchSlot]).flip();
+                            v.socket.send(out, serverAddress);
+                        }
+                        nextHeartbeat = now + HEARTBEAT_NANOS;
+                    }
+                    selector.select(100);
+                    now = System.nanoTime();
+                    for (SelectionKey key : selector.selectedKeys()) {
+                        Viewer v = (Viewer) key.attachment();
+                        while (true) {
+                            in.clear();
+                            if (v.socket.receive(in) == null) break;
+                            in.flip();
+                            if (in.get() != Protocol.FRAME) continue;
+                            in.getInt();
+                            int tick = SnapshotCodec.read(bits.begin(in), history);
+                            if (tick < 0) {
+                                undecodable.increment();
+                                continue;
+                            }
+                            if (!measuring) continue;
+                            v.frames++;
+                            // When the server stepped this tick, give or take one tick of shard offset
+                            long simulated = matchStart[v.matchSlot] + tick * TickScheduler.TICK_NANOS;
+                            long lateMillis = (now - simulated) / 1_000_000 - delayMillis;
+                            lateness[(int) Math.max(0, Math.min(LATENESS_BUCKETS, lateMillis))]++;
+                        }
+                    }
+                    selector.selectedKeys().clear();
+                } catch (ClosedChannelException | ClosedSelectorException e) {
+                    return;
+                } catch (IOException | RuntimeException e) {
+                    System.err.println("Spectator receive failed: " + e);
+                }
+            }
+        }
+    }
+
+    private final InetSocketAddress serverAddress;
+    private final int delayMillis;
+    private final int[] matchIds;
+    private final long[] matchStart;
+    private final LongAdder undecodable = new LongAdder();
+
+    private SpectatorLoadTest(InetSocketAddress serverAddress, int matches, int delayMillis) {
+        this.serverAddress = serverAddress;
+        this.delayMillis = delayMillis;
+        matchIds = new int[matches];
+        matchStart = new long[matches];
+    }
+
+    public static void main(String[] args) throws Exception {
+        int spectators = ServerLauncher.intArg(args, "--spectators", 10_000);
+        int matches = ServerLauncher.intArg(args, "--matches", 1);
+        int cores = Runtime.getRuntime().availableProcessors();
+        int threads = ServerLauncher.intArg(args, "--threads", cores);
+        int fanOutThreads = ServerLauncher.intArg(args, "--fan-out-threads", cores);
+        int receiverCount = ServerLauncher.intArg(args, "--receivers", 2);
+        int delay = ServerLauncher.intArg(args, "--delay", 2000);
+        int warmup = ServerLauncher.intArg(args, "--warmup", 5);
+        int duration = ServerLauncher.intArg(args, "--duration", 20);
+
+        MatchServer server = new MatchServer(0, threads, Math.max(1024, matches), fanOutThreads, delay, spectators);
+        server.start();
+        InetSocketAddress address = new InetSocketAddress(InetAddress.getLoopbackAddress(), server.port());
+        SpectatorLoadTest test = new SpectatorLoadTest(address, matches, delay);
+
+        DatagramChannel players = DatagramChannel.open();
+        players.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        players.socket().setReceiveBufferSize(1 << 20);
+        int[] slots = test.joinMatches(players, matches);
+
+        Receiver[] receivers = new Receiver[receiverCount];
+        for (int r = 0; r < receiverCount; r++) {
+            int from = (int) ((long) spectators * r / receiverCount);
+            int to = (int) ((long) spectators * (r + 1) / receiverCount);
+            Viewer[] viewers = new Viewer[to - from];
+            for (int i = 0; i < viewers.length; i++) {
+                DatagramChannel socket = DatagramChannel.open();
+                socket.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+                socket.configureBlocking(false);
+                viewers[i] = new Viewer(socket, (from + i) % matches);
+            }
+            receivers[r] = test.new Receiver(viewers);
+            Thread t = new Thread(receivers[r], "spectator-receive-" + r);
+            t.setDaemon(true);
+            t.start();
+        }
+
+        System.out.printf("%d spectators on %d matches, %d ms delay; warming up for %ds...%n",
+            spectators, matches, delay, warmup);
+        test.play(players, slots, TimeUnit.SECONDS.toNanos(warmup));
+
+        System.out.printf("%d subscribed%n", server.spectators().spectatorCount());
+        SpectatorFanOut fanOut = server.spectators();
+        long sentBefore = fanOut.framesSent.sum();
+        long skippedBefore = fanOut.framesSkipped.sum();
+        long droppedBefore = fanOut.sendsDropped.sum();
+        long cpuBefore = fanOut.cpuNanos.sum();
+        TickStats ticksBefore = server.stats();
+        for (Receiver r : receivers) r.measuring = true;
+        long start = System.nanoTime();
+        test.play(players, slots, TimeUnit.SECONDS.toNanos(duration));
+        for (Receiver r : receivers) r.measuring = false;
+        double seconds = (System.nanoTime() - start) / 1e9;
+        TickStats ticks = server.stats().since(ticksBefore);
+        long sent = fanOut.framesSent.sum() - sentBefore;
+        long skipped = fanOut.framesSkipped.sum() - skippedBefore;
+        long dropped = fanOut.sendsDropped.sum() - droppedBefore;
+        long cpu = fanOut.cpuNanos.sum() - cpuBefore;
+        int subscribed = fanOut.spectatorCount();
+        server.stop();
+
+        double expectedPerViewer = seconds * SpectatorFanOut.FRAME_RATE;
+        long received = 0;
+        int keptUp = 0;
+        long[] lateness = new long[LATENESS_BUCKETS + 1];
+        for (Receiver r : receivers) {
+            r.selector.close();
+            for (Viewer v : r.viewers) {
+                received += v.frames;
+                if (v.frames >= expectedPerViewer * 0.95) keptUp++;
+                v.socket.close();
+            }
+            for (int i = 0; i <= LATENESS_BUCKETS; i++) lateness[i] += r.lateness[i];
+        }
+
+        System.out.println();
+        System.out.printf("spectators subscribed   %d of %d%n", subscribed, spectators);
+        System.out.printf("frames sent             %.0f/s (expected %.0f/s)%n",
+            sent / seconds, (double) spectators * SpectatorFanOut.FRAME_RATE);
+        System.out.printf("frames received         %.0f/s, %.1f %% of expected%n",
+            received / seconds, 100.0 * received / (expectedPerViewer * spectators));
+        System.out.printf("spectators >= 95%% frames %.1f %%%n", 100.0 * keptUp / spectators);
+        System.out.printf("late beyond delay p50   %d ms%n", percentile(lateness, received, 0.50));
+        System.out.printf("late beyond delay p99   %d ms%n", percentile(lateness, received, 0.99));
+        System.out.printf("group frames skipped    %d%n", skipped);
+        System.out.printf("sends dropped (full)    %d%n", dropped);
+        System.out.printf("fan-out cpu per send    %.2f us%n", sent == 0 ? 0 : cpu / 1e3 / sent);
+        System.out.printf("fan-out cores busy      %.2f%n", cpu / 1e9 / seconds);
+        System.out.printf("tick jitter p99         %.2f ms%n", ticks.jitterPercentile(0.99) / 1e6);
+        System.out.printf("undecodable frames      %d%n", test.undecodable.sum());
+    }
+
+    /** Pair up two players per match and remember when each match started. */
+    private int[] joinMatches(DatagramChannel players, int matches) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(Protocol.MAX_PACKET_SIZE);
+        int[] slots = new int[matches * 2];
+        for (int token = 0; token < matches * 2; token++) {
+            buffer.clear();
+            buffer.put(Protocol.JOIN).putInt(token).flip();
+            players.send(buffer, serverAddress);
+        }
+        int welcomed = 0;
+        while (welcomed < matches * 2) {
+            buffer.clear();
+            players.receive(buffer);
+            buffer.flip();
+            if (buffer.get() != Protocol.WELCOME) continue;
+            int token = buffer.getInt();
+            int matchId = buffer.getInt();
+            slots[token] = buffer.get();
+            matchIds[token / 2] = matchId;
+            matchStart[token / 2] = System.nanoTime();
+            welcomed++;
+        }
+        players.configureBlocking(false);
+        return slots;
+    }
+
+    /** Both players of every match send input at the tick rate; their state updates are discarded. */
+    private void play(DatagramChannel players, int[] slots, long durationNanos) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(Protocol.MAX_PACKET_SIZE);
+        Random random = new Random(3);
+        float[] move = new float[slots.length];
+        long end = System.nanoTime() + durationNanos;
+        for (long next = System.nanoTime(); System.nanoTime() < end; next += TickScheduler.TICK_NANOS) {
+            for (int token = 0; token < slots.length; token++) {
+                move[token] = Math.max(-1f, Math.min(1f, move[token] + (random.nextFloat() - 0.5f) * 0.4f));
+                buffer.clear();
+                buffer.put(Protocol.INPUT).putInt(matchIds[token / 2]).put((byte) slots[token])
+                    .put(Protocol.encodeMove(move[token])).put((byte) (random.nextInt(50) == 0 ? Protocol.INPUT_FLAG_JUMP : 0))
+                    .putInt(-1).flip();
+                players.send(buffer, serverAddress);
+            }
+            do {
+                buffer.clear();
+            } while (players.receive(buffer) != null);
+            long sleep = next + TickScheduler.TICK_NANOS - System.nanoTime();
+            if (sleep > 0) LockSupport.parkNanos(sleep);
+        }
+    }
+
+    private static int percentile(long[] histogram, long total, double percentile) {
+        long target = (long) Math.ceil(total * percentile);
+        long seen = 0;
+        for (int i = 0; i < histogram.length; i++) {
+            seen += histogram[i];
+            if (seen >= target) return i;
+        }
+        return histogram.length - 1;
+    }
+}
@@ -0,0 +1,148 @@
+package io.github.steven_liu.rage.server;
+
+import io.github.steven_liu.rage.net.BitWriter;
+import io.github.steven_liu.rage.net.BufferPool;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Steps every hosted match at a fixed rate on a small pool of threads. Matches are
+ * split into shards; each shard is one repeating task that steps all of its matches
+ * back to back, so thousands of matches cost a handful of scheduled tasks rather
+ * than a thread (or timer) each. Shards are staggered across the tick period to
+ * spread the load evenly.
+ */
+final class TickScheduler {
+
+    static final int TICK_RATE = 60;
+    static final long TICK_NANOS = 1_000_000_000L / TICK_RATE;
+    static final float TICK_DELTA = 1f / TICK_RATE;
+
+    // Matches that stop sending input for this long are dropped
+    static final long TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+    /** Called on a tick thread after a match steps, and when it is removed. */
+    interface Listener {
+        /**
+         * @param scratch a direct buffer owned by the match's shard, free to overwrite
+         * @param bits a bit writer owned by the match's shard
+         */
+        void onTick(ServerMatch match, ByteBuffer scratch, BitWriter bits);
+
+        void onRemoved(ServerMatch match);
+    }
+
+    private final ScheduledExecutorService executor;
+    private final Shard[] shards;
+    private final Listener listener;
+    private final BufferPool buffers;
+    private final AtomicInteger nextShard = new AtomicInteger();
+
+    TickScheduler(int threads, int shardsPerThread, BufferPool buffers, Listener listener) {
+        this.listener = listener;
+        this.buffers = buffers;
+        AtomicInteger threadId = new AtomicInteger();
+        executor = Executors.newScheduledThreadPool(threads, r -> {
+            Thread t = new Thread(r, "tick-" + threadId.getAndIncrement());
+            t.setDaemon(true);
+            return t;
+        });
+        shards = new Shard[threads * shardsPerThread];
+        for (int i = 0; i < shards.length; i++) shards[i] = new Shard();
+    }
+
+    void start() {
+        long now = System.nanoTime();
+        for (int i = 0; i < shards.length; i++) {
+            long offset = TICK_NANOS * i / shards.length;
+            shards[i].expectedStart = now + offset;
+            executor.scheduleAtFixedRate(shards[i], offset, TICK_NANOS, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    void stop() {
+        executor.shutdownNow();
+        try {
+            executor.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /** Hand a new match to the shard with the fewest matches. Safe to call from any thread. */
+    void add(ServerMatch match) {
+        // Start the scan at a rotating shard so ties don't all land on shard 0
+        int start = nextShard.getAndIncrement();
+        Shard best = null;
+        for (int i = 0; i < shards.length; i++) {
+            Shard s = shards[Math.floorMod(start + i, shards.length)];
+            if (best == null || s.size.get() < best.size.get()) best = s;
+        }
+        best.size.incrementAndGet();
+        best.pending.add(match);
+    }
+
+    /** Merged counters of every shard since start. */
+    TickStats stats() {
+        TickStats total = new TickStats();
+        for (Shard s : shards) total.add(s.stats);
+        return total;
+    }
+
+    int matchCount() {
+        int count = 0;
+        for (Shard s : shards) count += s.size.get();
+        return count;
+    }
+
+    private final class Shard implements Runnable {
+        private final ArrayList<ServerMatch> matches = new ArrayList<>();
+        private final ConcurrentLinkedQueue<ServerMatch> pending = new ConcurrentLinkedQueue<>();
+        private final TickStats stats = new TickStats();
+        private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        private final BitWriter bits = new BitWriter();
+        private ByteBuffer scratch;
+
+        // Includes pending matches; used to balance add()
+        final AtomicInteger size = new AtomicInteger();
+        long expectedStart;
+
+        @Override
+        public void run() {
+            long start = System.nanoTime();
+            long jitter = Math.max(0, start - expectedStart);
+            expectedStart += TICK_NANOS;
+            long cpuStart = threads.getCurrentThreadCpuTime();
+
+            // Tasks can run on any pool thread, so the buffer belongs to the shard, not the thread
+            if (scratch == null) scratch = buffers.acquire();
+
+            ServerMatch added;
+            while ((added = pending.poll()) != null) matches.add(added);
+
+            for (int i = matches.size() - 1; i >= 0; i--) {
+                ServerMatch m = matches.get(i);
+                if (m.closed || start - m.lastHeardNanos > TIMEOUT_NANOS) {
+                    // Swap-remove; order doesn't matter
+                    matches.set(i, matches.get(matches.size() - 1));
+                    matches.remove(matches.size() - 1);
+                    size.decrementAndGet();
+                    listener.onRemoved(m);
+                    continue;
+                }
+                m.step(TICK_DELTA);
+                listener.onTick(m, scratch, bits);
+            }
+
+            stats.recordTick(jitter, matches.size(), threads.getCurrentThreadCpuTime() - cpuStart);
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package io.github.steven_liu.rage.server;
+
+/**
+ * Counters for one tick thread's shard: how late each tick started and how much CPU
+ * it used. Written only by the shard, read by reporters without locking — totals are
+ * cumulative, so a reader that sees a slightly stale value just reports it next time.
+ */
+final class TickStats {
+
+    static final long BUCKET_NANOS = 50_000;  // 50 µs per jitter bucket
+    static final int BUCKETS = 400;           // up to 20 ms, the last bucket holds everything later
+
+    final long[] jitterBuckets = new long[BUCKETS];
+    long ticks;
+    long matchTicks;
+    long cpuNanos;
+    long maxJitterNanos;
+
+    void recordTick(long jitterNanos, int matches, long cpu) {
+        int bucket = (int) Math.min(BUCKETS - 1, jitterNanos / BUCKET_NANOS);
+        jitterBuckets[bucket]++;
+        if (jitterNanos > maxJitterNanos) maxJitterNanos = jitterNanos;
+        ticks++;
+        matchTicks += matches;
+        cpuNanos += cpu;
+    }
+
+    /** Add another shard's counters into this one. */
+    void add(TickStats other) {
+        for (int i = 0; i < BUCKETS; i++) jitterBuckets[i] += other.jitterBuckets[i];
+        ticks += other.ticks;
+        matchTicks += other.matchTicks;
+        cpuNanos += other.cpuNanos;
+        maxJitterNanos = Math.max(maxJitterNanos, other.maxJitterNanos);
+    }
+
+    /** Counters accumulated since {@code earlier} was taken. The maximum is rounded up to its bucket. */
+    TickStats since(TickStats earlier) {
+        TickStats delta = new TickStats();
+        for (int i = 0; i < BUCKETS; i++) delta.jitterBuckets[i] = jitterBuckets[i] - earlier.jitterBuckets[i];
+        delta.ticks = ticks - earlier.ticks;
+        delta.matchTicks = matchTicks - earlier.matchTicks;
+        delta.cpuNanos = cpuNanos - earlier.cpuNanos;
+        for (int i = BUCKETS - 1; i >= 0; i--) {
+            if (delta.jitterBuckets[i] > 0) {
+                delta.maxJitterNanos = i == BUCKETS - 1 ? maxJitterNanos : (i + 1) * BUCKET_NANOS;
+                break;
+            }
+        }
+        return delta;
+    }
+
+    /** @return the upper bound, in nanoseconds, of the bucket holding the given percentile (0..1) of ticks. */
+    long jitterPercentile(double percentile) {
+        long target = (long) Math.ceil(ticks * percentile);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += jitterBuckets[i];
+            if (seen >= target && seen > 0) return (i + 1) * BUCKET_NANOS;
+        }
+        return maxJitterNanos;
+    }
+
+    double cpuNanosPerMatchTick() {
+        return matchTicks == 0 ? 0 : (double) cpuNanos / matchTicks;
+    }
+}
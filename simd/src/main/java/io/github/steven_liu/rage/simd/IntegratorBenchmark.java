@@ -0,0 +1,145 @@
+package io.github.steven_liu.rage.simd;
+
+import io.github.steven_liu.rage.BatchIntegrator;
+import io.github.steven_liu.rage.Bodies;
+import io.github.steven_liu.rage.Match;
+import io.github.steven_liu.rage.Player;
+import io.github.steven_liu.rage.ScalarBatchIntegrator;
+
+import java.util.Random;
+
+/**
+ * Times {@link ScalarBatchIntegrator} against {@link VectorBatchIntegrator} for crowds of
+ * 1k to 100k bodies, after checking that both match {@link Player#update} bit for bit.
+ * Exits with status 1 if any body differs.
+ * <p>
+ * Bodies start scattered: some on the ground, some in the air, some past the stage
+ * edges, so every branch is taken. Each timed run steps them {@code --steps} times from
+ * that start, long enough for many to land, and is repeated {@code --rounds} times;
+ * the fastest run counts.
+ * <p>
+ * Options: {@code --sizes 1000,10000,100000}, {@code --steps N} (default 60),
+ * {@code --rounds N} (default 200).
+ */
+public class IntegratorBenchmark {
+
+    private static final float DELTA = 1f / 60f;
+    private static final float STAGE_WIDTH = Match.WORLD_WIDTH * 5;
+
+    public static void main(String[] args) {
+        String[] sizes = stringArg(args, "--sizes", "1000,10000,100000").split(",");
+        int steps = intArg(args, "--steps", 60);
+        int rounds = intArg(args, "--rounds", 200);
+
+        BatchIntegrator scalar = new ScalarBatchIntegrator();
+        BatchIntegrator vector = new VectorBatchIntegrator();
+        System.out.printf("best available: %s, %d steps of %d rounds%n", BatchIntegrator.best().name(), steps, rounds);
+
+        for (String size : sizes) {
+            if (!matches(Integer.parseInt(size.trim()), steps * 10, scalar, vector)) System.exit(1);
+        }
+        System.out.printf("%-10s %14s %14s %10s%n", "bodies", "scalar ns/body", "vector ns/body", "speedup");
+        for (String size : sizes) {
+            int n = Integer.parseInt(size.trim());
+            Bodies start = scatter(n);
+            Bodies work = new Bodies(n);
+            double s = time(scalar, start, work, steps, rounds);
+            double v = time(vector, start, work, steps, rounds);
+            System.out.printf("%-10d %14.3f %14.3f %9.2fx%n", n, s, v, s / v);
+        }
+    }
+
+    /** Step players one by one and the same bodies through both integrators, comparing every step. */
+    private static boolean matches(int n, int steps, BatchIntegrator scalar, BatchIntegrator vector) {
+        Bodies start = scatter(n);
+        Player[] players = new Player[n];
+        for (int i = 0; i < n; i++) {
+            players[i] = new Player(0, 0, 0, null);
+            start.get(i, players[i]);
+        }
+        Bodies a = new Bodies(n), b = new Bodies(n);
+        copy(start, a);
+        copy(start, b);
+        Player check = new Player(0, 0, 0, null);
+        for (int step = 0; step < steps; step++) {
+            for (Player p : players) p.update(DELTA, Match.GROUND_Y, 0, STAGE_WIDTH);
+            scalar.integrate(a, DELTA, Match.GROUND_Y, 0, STAGE_WIDTH);
+            vector.integrate(b, DELTA, Match.GROUND_Y, 0, STAGE_WIDTH);
+            for (int i = 0; i < n; i++) {
+                Player p = players[i];
+                if (!same(a, i, p)) return mismatch(scalar, n, step, i);
+                b.get(i, check);
+                if (!same(a, i, check)) return mismatch(vector, n, step, i);
+            }
+        }
+        System.out.printf("%d bodies: identical to Player.update over %d steps%n", n, steps);
+        return true;
+    }
+
+    private static boolean same(Bodies b, int i, Player p) {
+        return Float.floatToRawIntBits(b.x[i]) == Float.floatToRawIntBits(p.x)
+            && Float.floatToRawIntBits(b.y[i]) == Float.floatToRawIntBits(p.y)
+            && Float.floatToRawIntBits(b.vx[i]) == Float.floatToRawIntBits(p.vx)
+            && Float.floatToRawIntBits(b.vy[i]) == Float.floatToRawIntBits(p.vy)
+            && b.grounded[i] == p.grounded;
+    }
+
+    private static boolean mismatch(BatchIntegrator integrator, int n, int step, int i) {
+        System.out.printf("%s differs from Player.update: %d bodies, step %d, body %d%n", integrator.name(), n, step, i);
+        return false;
+    }
+
+    /** @return the fastest run's nanoseconds per body per step */
+    private static double time(BatchIntegrator integrator, Bodies start, Bodies work, int steps, int rounds) {
+        long best = Long.MAX_VALUE;
+        for (int r = 0; r < rounds; r++) {
+            copy(start, work);
+            long t0 = System.nanoTime();
+            for (int s = 0; s < steps; s++) integrator.integrate(work, DELTA, Match.GROUND_Y, 0, STAGE_WIDTH);
+            best = Math.min(best, System.nanoTime() - t0);
+        }
+        return best / (double) steps / start.count;
+    }
+
+    private static Bodies scatter(int n) {
+        Random random = new Random(7);
+        Bodies b = new Bodies(n);
+        b.count = n;
+        for (int i = 0; i < n; i++) {
+            float r = 20f + random.nextFloat() * 40f;
+            b.radius[i] = r;
+            b.x[i] = -100f + random.nextFloat() * (STAGE_WIDTH + 200f);
+            b.vx[i] = (random.nextFloat() * 2f - 1f) * Player.MOVE_SPEED;
+            b.grounded[i] = random.nextBoolean();
+            if (b.grounded[i]) {
+                b.y[i] = Match.GROUND_Y + r;
+            } else {
+                b.y[i] = Match.GROUND_Y + r + random.nextFloat() * 400f;
+                b.vy[i] = (random.nextFloat() * 2f - 1f) * Player.JUMP_VELOCITY;
+            }
+        }
+        return b;
+    }
+
+    private static void copy(Bodies from, Bodies to) {
+        int n = from.count;
+        System.arraycopy(from.x, 0, to.x, 0, n);
+        System.arraycopy(from.y, 0, to.y, 0, n);
+        System.arraycopy(from.vx, 0, to.vx, 0, n);
+        System.arraycopy(from.vy, 0, to.vy, 0, n);
+        System.arraycopy(from.radius, 0, to.radius, 0, n);
+        System.arraycopy(from.grounded, 0, to.grounded, 0, n);
+        to.count = n;
+    }
+
+    private static String stringArg(String[] args, String name, String fallback) {
+        for (int i = 0; i < args.length - 1; i++) {
+            if (args[i].equals(name)) return args[i + 1];
+        }
+        return fallback;
+    }
+
+    private static int intArg(String[] args, String name, int fallback) {
+        return Integer.parseInt(stringArg(args, name, Integer.toString(fallback)));
+    }
+}
@@ -0,0 +1,63 @@
+package io.github.steven_liu.rage.simd;
+
+import io.github.steven_liu.rage.BatchIntegrator;
+import io.github.steven_liu.rage.Bodies;
+import io.github.steven_liu.rage.Player;
+import io.github.steven_liu.rage.ScalarBatchIntegrator;
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * {@link BatchIntegrator} that steps as many bodies at once as the CPU has float lanes.
+ * The gravity, ground and edge branches of {@link Player#update} become masked blends,
+ * applied in the same order and with the same single-rounding operations (no fused
+ * multiply-add), so the results match the scalar path bit for bit. The last few
+ * bodies that don't fill a vector go through {@link ScalarBatchIntegrator}.
+ * <p>
+ * Found by {@link BatchIntegrator#best()} when this module is on the classpath and the
+ * JVM runs with {@code --add-modules jdk.incubator.vector}.
+ */
+public class VectorBatchIntegrator implements BatchIntegrator {
+
+    private static final VectorSpecies<Float> SPECIES = FloatVector.SPECIES_PREFERRED;
+
+    @Override
+    public void integrate(Bodies b, float delta, float groundY, float minX, float maxX) {
+        float[] x = b.x, y = b.y, vx = b.vx, vy = b.vy, radius = b.radius;
+        boolean[] grounded = b.grounded;
+        float fall = Player.GRAVITY * delta;
+        FloatVector maxXs = FloatVector.broadcast(SPECIES, maxX);
+
+        int upper = SPECIES.loopBound(b.count);
+        int i = 0;
+        for (; i < upper; i += SPECIES.length()) {
+            FloatVector r = FloatVector.fromArray(SPECIES, radius, i);
+            VectorMask<Float> airborne = VectorMask.fromArray(SPECIES, grounded, i).not();
+            FloatVector vyi = FloatVector.fromArray(SPECIES, vy, i).add(fall, airborne);
+
+            FloatVector xi = FloatVector.fromArray(SPECIES, x, i).add(FloatVector.fromArray(SPECIES, vx, i).mul(delta));
+            FloatVector yi = FloatVector.fromArray(SPECIES, y, i).add(vyi.mul(delta));
+
+            VectorMask<Float> onGround = yi.sub(r).compare(VectorOperators.LE, groundY);
+            yi = yi.blend(r.add(groundY), onGround);
+            vyi = vyi.blend(0f, onGround);
+
+            // Left edge first, then the right edge sees the clamped x, as in Player.update
+            xi = xi.blend(r.add(minX), xi.sub(r).compare(VectorOperators.LT, minX));
+            xi = xi.blend(maxXs.sub(r), xi.add(r).compare(VectorOperators.GT, maxX));
+
+            xi.intoArray(x, i);
+            yi.intoArray(y, i);
+            vyi.intoArray(vy, i);
+            onGround.intoArray(grounded, i);
+        }
+        ScalarBatchIntegrator.integrate(b, i, b.count, delta, groundY, minX, maxX);
+    }
+
+    @Override
+    public String name() {
+        return "vector x" + SPECIES.length();
+    }
+}